@@ -0,0 +1,200 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Burkhard-Keller tree over the keys of a search tree, for finding the
+ * keys within a small edit distance of a misspelled one. Every child hangs
+ * off its parent by its Levenshtein distance to the parent, so by the
+ * triangle inequality a search for keys within distance k of a query only
+ * descends into children whose distance is within k of the query's
+ * distance to the parent, leaving most of the tree unvisited for small k.
+ */
+public class BKTree {
+    private static final int INITIAL_CHILDREN = 2;
+
+    private Node root;
+    private int size; // number of keys
+
+    /**
+     * Key of the tree with its children, in the order they were added
+     */
+    private static class Node {
+        final String key;
+        int[] distances = new int[INITIAL_CHILDREN]; // distance of each child to key
+        Node[] children = new Node[INITIAL_CHILDREN];
+        int count; // number of children
+
+        /**
+         * A constructor that initializes a leaf.
+         *
+         * @param key Key of the node
+         */
+        Node(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Return the child at a distance
+         *
+         * @param distance Distance of the child to this node
+         * @return The child, null if there is none
+         */
+        Node child(int distance) {
+            for (int i = 0; i < this.count; i++) {
+                if (this.distances[i] == distance) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Add a child at a distance that has none yet
+         *
+         * @param distance Distance of the child to this node
+         * @param child    New child
+         */
+        void addChild(int distance, Node child) {
+            if (this.count == this.children.length) {
+                this.distances = Arrays.copyOf(this.distances, this.count * 2);
+                this.children = Arrays.copyOf(this.children, this.count * 2);
+            }
+            this.distances[this.count] = distance;
+            this.children[this.count++] = child;
+        }
+    }
+
+    /**
+     * Build a tree of keys
+     *
+     * @param keys Keys to add
+     * @return The tree
+     */
+    public static BKTree of(Iterator<String> keys) {
+        BKTree tree = new BKTree();
+        while (keys.hasNext()) {
+            tree.add(keys.next());
+        }
+        return tree;
+    }
+
+    /**
+     * Add a key
+     *
+     * @param key Key to add
+     * @return True if the key was added, false if it was already there
+     * @throws NullPointerException If key is null
+     */
+    public boolean add(String key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        if (this.root == null) {
+            this.root = new Node(key);
+            this.size++;
+            return true;
+        }
+        Node cur = this.root;
+        while (true) {
+            int distance = distance(key, cur.key);
+            if (distance == 0) {
+                return false;
+            }
+            Node child = cur.child(distance);
+            if (child == null) {
+                cur.addChild(distance, new Node(key));
+                this.size++;
+                return true;
+            }
+            cur = child;
+        }
+    }
+
+    /**
+     * Return the number of keys
+     *
+     * @return The number of keys
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Return the keys within 'maxDistance' edits of a query, closest first
+     * and in key order among equally close keys
+     *
+     * @param query       Key to look for
+     * @param maxDistance Largest number of insertions, deletions and
+     *                    substitutions allowed
+     * @return The matching keys
+     * @throws IllegalArgumentException If maxDistance is negative
+     */
+    public List<String> search(String query, int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException();
+        }
+        List<List<String>> byDistance = new ArrayList<>(); // matches at each distance
+        for (int d = 0; d <= maxDistance; d++) {
+            byDistance.add(new ArrayList<>());
+        }
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        if (this.root != null) {
+            pending.push(this.root);
+        }
+        while (!pending.isEmpty()) {
+            Node cur = pending.pop();
+            int distance = distance(query, cur.key);
+            if (distance <= maxDistance) {
+                byDistance.get(distance).add(cur.key);
+            }
+            for (int i = 0; i < cur.count; i++) {
+                if (Math.abs(cur.distances[i] - distance) <= maxDistance) {
+                    pending.push(cur.children[i]);
+                }
+            }
+        }
+        List<String> matches = new ArrayList<>();
+        for (List<String> keys : byDistance) {
+            Collections.sort(keys);
+            matches.addAll(keys);
+        }
+        return matches;
+    }
+
+    /**
+     * Return the Levenshtein distance between two strings
+     *
+     * @param a First string
+     * @param b Second string
+     * @return The smallest number of insertions, deletions and
+     *         substitutions turning a into b
+     */
+    static int distance(String a, String b) {
+        if (a.length() < b.length()) {
+            String tmp = a;
+            a = b;
+            b = tmp;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BKTreeTester {
+    BKTree myTree;
+    List<String> myKeys;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        myKeys = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int n = 4 + random.nextInt(6); n > 0; n--) {
+                key.append((char) ('a' + random.nextInt(6)));
+            }
+            myKeys.add(key.toString());
+        }
+        myTree = new BKTree();
+        for (String key : myKeys) {
+            myTree.add(key);
+        }
+    }
+
+    @org.junit.Test
+    public void distance() {
+        assertEquals(0, BKTree.distance("renner", "renner"));
+        assertEquals(1, BKTree.distance("jeremy-renner", "jeremey-renner"));
+        assertEquals(3, BKTree.distance("kitten", "sitting"));
+        assertEquals(3, BKTree.distance("sitting", "kitten"));
+        assertEquals(4, BKTree.distance("", "abcd"));
+    }
+
+    @org.junit.Test
+    public void add() {
+        assertEquals(myKeys.stream().distinct().count(), myTree.size());
+        assertFalse(myTree.add(myKeys.get(0)));
+        assertTrue(myTree.add("zzzz"));
+    }
+
+    @org.junit.Test
+    public void search() {
+        for (String query : new String[] {"abcde", "fffff", "abab", "cadefabc", "x"}) {
+            for (int k = 0; k <= 2; k++) {
+                int maxDistance = k;
+                List<String> expected = new ArrayList<>();
+                for (String key : myKeys) {
+                    if (BKTree.distance(query, key) <= maxDistance && !expected.contains(key)) {
+                        expected.add(key);
+                    }
+                }
+                expected.sort(Comparator.comparingInt((String key) -> BKTree.distance(query, key))
+                        .thenComparing(Comparator.naturalOrder()));
+                assertEquals(expected, myTree.search(query, maxDistance));
+            }
+        }
+        assertEquals(Collections.emptyList(), new BKTree().search("abc", 2));
+    }
+
+    @org.junit.Test (expected = IllegalArgumentException.class)
+    public void searchNegativeDistance() throws IllegalArgumentException {
+        myTree.search("abc", -1);
+    }
+}
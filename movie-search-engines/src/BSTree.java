@@ -6,12 +6,19 @@ import java.util.*;
  * @author Gino Angelici
  * @since  ${11/7/22}
  */
-public class BSTree<T extends Comparable<? super T>> implements Iterable {
+public class BSTree<T extends Comparable<? super T>> implements Iterable, SearchIndex<T> {
 
     /* * * * * BST Instance Variables * * * * */
 
     private int nelems; // number of elements stored
     private BSTNode root; // reference to root node
+    private int modCount; // number of structural changes, checked by iterators
+    private int version; // number of changes to keys, postings or data lists
+    private final DocumentDictionary<T> documents; // ids of the documents in postings
+    private final boolean balanced; // whether inserts keep the tree AVL-balanced
+    // scratch path for balanced inserts, AVL trees of 2^31 keys are < 46 high
+    private final Object[] path = new Object[64];
+    private final boolean[] pathLeft = new boolean[64];
 
     /* * * * * BST Node Inner Class * * * * */
 
@@ -24,9 +31,11 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
     protected class BSTNode {
 
         T key;
-        LinkedList<T> dataList;
+        LinkedList<T> dataList; // related info, null until the first item
+        PostingList postings; // ids of related documents, null until the first one
         BSTNode left;
         BSTNode right;
+        int height; // height of the subtree rooted here, only kept in balanced mode
 
         /**
          * A constructor that initializes the BSTNode instance variables.
@@ -45,8 +54,9 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
 
         /**
          * A constructor that initializes BSTNode variables. Note: This constructor is
-         * used when you want to add a key with no related information yet. In this
-         * case, you must create an empty LinkedList for the node.
+         * used when you want to add a key with no related information yet. The
+         * LinkedList is only created once data is added, since index keys only
+         * ever get postings.
          *
          * @param left  Left child
          * @param right Right child
@@ -54,7 +64,6 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
          */
         public BSTNode(BSTNode left, BSTNode right, T key) {
             this.key = key;
-            this.dataList = new LinkedList<>();
             this.left = left;
             this.right = right;
         }
@@ -89,10 +98,60 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
         /**
          * Return the linked list of the node
          *
-         * @return The linked list of the node
+         * @return The linked list of the node, a new empty one if the node
+         *         has no data yet
          */
         public LinkedList<T> getDataList() {
-            return this.dataList;
+            return this.dataList == null ? new LinkedList<>() : this.dataList;
+        }
+
+        /**
+         * Return true if the node has no related info
+         *
+         * @return Whether the linked list of the node is missing or empty
+         */
+        boolean hasNoData() {
+            return this.dataList == null || this.dataList.isEmpty();
+        }
+
+        /**
+         * Return the posting list of the node
+         *
+         * @return The posting list of the node, null if it has no postings
+         */
+        public PostingList getPostings() {
+            return this.postings;
+        }
+
+        /**
+         * Add a document id to the posting list of the node
+         *
+         * @param id Document id to be added
+         * @return True if the id was added, false if it was already present
+         */
+        public boolean addPosting(int id) {
+            if (this.postings == null) {
+                this.postings = new PostingList();
+            }
+            if (!this.postings.add(id)) {
+                return false;
+            }
+            BSTree.this.version++;
+            return true;
+        }
+
+        /**
+         * Remove a document id from the posting list of the node
+         *
+         * @param id Document id to be removed
+         * @return True if the id was removed, false if it was not present
+         */
+        public boolean removePosting(int id) {
+            if (this.postings == null || !this.postings.remove(id)) {
+                return false;
+            }
+            BSTree.this.version++;
+            return true;
         }
 
         /**
@@ -120,6 +179,7 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
          */
         public void setDataList(LinkedList<T> newData) {
             this.dataList = newData;
+            BSTree.this.version++;
         }
 
         /**
@@ -128,7 +188,11 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
          * @param data New data to be appended
          */
         public void addNewInfo(T data) {
+            if (this.dataList == null) {
+                this.dataList = new LinkedList<>();
+            }
             this.dataList.add(data);
+            BSTree.this.version++;
         }
 
         /**
@@ -139,7 +203,11 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
          * @return True if data was found, false otherwise
          */
         public boolean removeInfo(T data) {
-            return this.dataList.remove(data);
+            if (this.dataList == null || !this.dataList.remove(data)) {
+                return false;
+            }
+            BSTree.this.version++;
+            return true;
         }
     }
 
@@ -149,8 +217,145 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
      * 0-arg constructor that initializes root to null and nelems to 0
      */
     public BSTree() {
+        this(false);
+    }
+
+    /**
+     * Constructor that initializes an empty tree. A balanced tree rebalances
+     * itself (AVL) on every insert so its height stays O(log n) no matter in
+     * which order the keys arrive, e.g. when loading an alphabetically sorted
+     * catalog.
+     *
+     * @param balanced Whether the tree keeps itself balanced
+     */
+    public BSTree(boolean balanced) {
+        this(balanced, new DocumentDictionary<>());
+    }
+
+    /**
+     * Constructor that initializes an empty tree whose posting lists hold
+     * ids of the given document dictionary
+     *
+     * @param balanced  Whether the tree keeps itself balanced
+     * @param documents Dictionary of the documents in the posting lists
+     * @throws NullPointerException If documents is null
+     */
+    public BSTree(boolean balanced, DocumentDictionary<T> documents) {
+        if (documents == null) {
+            throw new NullPointerException();
+        }
         this.root = null;
         this.nelems = 0;
+        this.balanced = balanced;
+        this.documents = documents;
+    }
+
+    /**
+     * Build a balanced tree from keys in strictly increasing order and their
+     * posting lists, in O(n) time. The result is perfectly balanced.
+     *
+     * @param groups    Keys with their posting lists, in increasing key order
+     * @param size      Number of groups
+     * @param documents Dictionary of the documents in the posting lists
+     * @return The loaded tree
+     * @throws IllegalArgumentException If the keys are not strictly
+     *         increasing or there are fewer than 'size' groups
+     */
+    public static <T extends Comparable<? super T>> BSTree<T> fromSorted(
+            Iterator<? extends Map.Entry<T, PostingList>> groups, int size,
+            DocumentDictionary<T> documents) {
+        BSTree<T> tree = new BSTree<>(true, documents);
+        tree.bulkLoad(groups, size);
+        return tree;
+    }
+
+    /**
+     * Load an empty tree from keys in strictly increasing order and their
+     * posting lists, in O(n) time. The result is perfectly balanced. The
+     * posting ids must belong to this tree's document dictionary.
+     *
+     * @param groups Keys with their posting lists, in increasing key order
+     * @param size   Number of groups
+     * @throws IllegalStateException    If the tree is not empty
+     * @throws IllegalArgumentException If the keys are not strictly
+     *         increasing or there are fewer than 'size' groups
+     */
+    public void bulkLoad(Iterator<? extends Map.Entry<T, PostingList>> groups, int size) {
+        if (this.nelems != 0) {
+            throw new IllegalStateException();
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.root = bulkLoadHelper(groups, size, new Object[1]);
+        this.nelems = size;
+        this.modCount++;
+        this.version++;
+    }
+
+    /**
+     * Helper method that builds a perfectly balanced subtree from the next
+     * 'size' groups, creating nodes in key order
+     *
+     * @param groups  Keys with their posting lists, in increasing key order
+     * @param size    Number of groups in the subtree
+     * @param lastKey Holds the last key consumed, to check the order
+     * @return Root of the subtree, null if size is 0
+     */
+    @SuppressWarnings("unchecked")
+    private BSTNode bulkLoadHelper(Iterator<? extends Map.Entry<T, PostingList>> groups,
+            int size, Object[] lastKey) {
+        if (size == 0) {
+            return null;
+        }
+        BSTNode left = bulkLoadHelper(groups, (size - 1) / 2, lastKey);
+        if (!groups.hasNext()) {
+            throw new IllegalArgumentException();
+        }
+        Map.Entry<T, PostingList> group = groups.next();
+        T key = group.getKey();
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        if (lastKey[0] != null && key.compareTo((T) lastKey[0]) <= 0) {
+            throw new IllegalArgumentException();
+        }
+        lastKey[0] = key;
+        BSTNode node = new BSTNode(left, null, key);
+        node.postings = group.getValue();
+        node.setright(bulkLoadHelper(groups, size - 1 - (size - 1) / 2, lastKey));
+        updateHeight(node);
+        return node;
+    }
+
+    /**
+     * Return the dictionary that maps the document ids in this tree's
+     * posting lists back to documents
+     *
+     * @return The document dictionary
+     */
+    public DocumentDictionary<T> getDocuments() {
+        return this.documents;
+    }
+
+    /**
+     * Return a number that changes whenever a key is inserted or a node
+     * gains or loses data or postings, so that results computed from the
+     * tree can tell they are stale
+     *
+     * @return The version of the tree's contents
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Return whether this tree keeps itself balanced on insert
+     *
+     * @return True if the tree is self-balancing, false otherwise
+     */
+    public boolean isBalanced() {
+        return this.balanced;
     }
 
     /**
@@ -184,16 +389,118 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
         if (key == null) {
             throw new NullPointerException();
         }
-        if (this.findKey(key)) {
-            return false;
+        int oldSize = this.nelems;
+        findOrCreateNode(key);
+        return this.nelems != oldSize;
+    }
+
+    /**
+     * Append 'data' to the LinkedList of the node whose key is 'key', inserting
+     * the key first if it is not in the tree yet. Unlike insert followed by
+     * insertData, this walks down the tree only once.
+     *
+     * @param key  Target key
+     * @param data To be added to key's LinkedList
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException If either key or data is null
+     */
+    public boolean upsertData(T key, T data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
         }
-        if (this.getRoot() == null) {
-            this.root = new BSTNode(null, null, key);
-            this.nelems++;
-            return true;
+        int oldSize = this.nelems;
+        findOrCreateNode(key).addNewInfo(data);
+        return this.nelems != oldSize;
+    }
+
+    /**
+     * Add 'data' to the posting list of the node whose key is 'key',
+     * inserting the key first if it is not in the tree yet. The data is
+     * interned in the tree's document dictionary and stored as its id, so
+     * each document is kept at most once per key.
+     *
+     * @param key  Target key
+     * @param data Document to be added to key's posting list
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException If either key or data is null
+     */
+    public boolean insertPosting(T key, T data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
         }
-        this.nelems++;
-        return addHelper(this.getRoot(), key);
+        int oldSize = this.nelems;
+        findOrCreateNode(key).addPosting(this.documents.intern(data));
+        return this.nelems != oldSize;
+    }
+
+    /**
+     * Add a document id to the posting list of the node whose key is 'key',
+     * inserting the key first if it is not in the tree yet. For callers
+     * that intern their documents in a dictionary of their own, such as
+     * TermIndex.
+     *
+     * @param key Target key
+     * @param id  Id of the document to be added to key's posting list
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException     If key is null
+     * @throws IllegalArgumentException If id is negative
+     */
+    public boolean insertPostingId(T key, int id) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative document id " + id);
+        }
+        int oldSize = this.nelems;
+        findOrCreateNode(key).addPosting(id);
+        return this.nelems != oldSize;
+    }
+
+    /**
+     * Return the posting list of the node with key value 'key'
+     *
+     * @param key Target key
+     * @return Posting list of the key, null if the key is not found or has
+     *         no postings
+     * @throws NullPointerException If key is null
+     */
+    public PostingList findPostings(T key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        BSTNode node = findNodeHelper(this.getRoot(), key);
+        return node == null ? null : node.getPostings();
+    }
+
+    /**
+     * Compress the posting list of every node. Meant to be called once the
+     * tree is built; lists that get more postings later are decompressed
+     * again on their first insert.
+     *
+     * @return Number of posting lists that were compressed
+     */
+    public int compressPostings() {
+        int compressedLists = 0;
+        Iterator<BSTNode> nodes = entryIterator();
+        while (nodes.hasNext()) {
+            PostingList postings = nodes.next().getPostings();
+            if (postings != null && postings.compress()) {
+                compressedLists++;
+            }
+        }
+        return compressedLists;
+    }
+
+    /**
+     * Return an immutable copy of the tree laid out in an array, for
+     * indexes that are only read once built. Later changes to this tree do
+     * not affect the copy.
+     *
+     * @return The frozen copy
+     */
+    public FrozenBSTree<T> freeze() {
+        return new FrozenBSTree<>(this);
     }
 
     /**
@@ -222,17 +529,87 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
         if (key == null||data == null) {
             throw new NullPointerException();
         }
-        if (!this.findKey(key)) {
+        BSTNode node = findNodeHelper(this.getRoot(), key);
+        if (node == null) {
             throw new IllegalArgumentException();
         }
-        findNodeHelper(this.getRoot(), key).dataList.add(data);
+        node.addNewInfo(data);
+    }
+
+    /**
+     * Remove a key and everything stored under it
+     *
+     * @param key Key to be removed
+     * @return True if the key was removed, false if it was not in the tree
+     * @throws NullPointerException If key is null
+     */
+    public boolean remove(T key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        boolean removed = this.balanced ? balancedRemoveHelper(key) : removeHelper(key);
+        if (removed) {
+            this.nelems--;
+            this.modCount++;
+            this.version++;
+        }
+        return removed;
+    }
+
+    /**
+     * Remove 'data' from the posting list of 'key', removing the key as
+     * well once it has neither postings nor data left
+     *
+     * @param key  Target key
+     * @param data Document to be removed from key's posting list
+     * @return True if the document was removed, false if it was not there
+     * @throws NullPointerException If either key or data is null
+     */
+    public boolean removePosting(T key, T data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        BSTNode node = findNodeHelper(this.getRoot(), key);
+        int id = this.documents.find(data);
+        if (node == null || id < 0 || !node.removePosting(id)) {
+            return false;
+        }
+        if (node.getPostings().isEmpty() && node.hasNoData()) {
+            remove(key);
+        }
+        return true;
+    }
+
+    /**
+     * Remove 'data' from the LinkedList of 'key', removing the key as well
+     * once it has neither data nor postings left
+     *
+     * @param key  Target key
+     * @param data Data to be removed from key's LinkedList
+     * @return True if the data was removed, false if it was not there
+     * @throws NullPointerException If either key or data is null
+     */
+    public boolean removeData(T key, T data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        BSTNode node = findNodeHelper(this.getRoot(), key);
+        if (node == null || !node.removeInfo(data)) {
+            return false;
+        }
+        PostingList postings = node.getPostings();
+        if (node.hasNoData() && (postings == null || postings.isEmpty())) {
+            remove(key);
+        }
+        return true;
     }
 
     /**
      * Return the LinkedList of the node with key value 'key'
      *
      * @param key Target key
-     * @return LinkedList of the node whose key value is 'key'
+     * @return LinkedList of the node whose key value is 'key', empty and
+     *         detached from the node if the key has no data yet
      * @throws NullPointerException     If key is null
      * @throws IllegalArgumentException If key is not found in the BST
      */
@@ -240,10 +617,85 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
         if (key == null) {
              throw new NullPointerException();
         }
-        if (!this.findKey(key)) {
+        LinkedList<T> dataList = lookup(key);
+        if (dataList == null) {
             throw new IllegalArgumentException();
         }
-        return findNodeHelper(this.getRoot(), key).getDataList();
+        return dataList;
+    }
+
+    /**
+     * Return the LinkedList of the node with key value 'key', or null if the
+     * key is not in the tree. Replaces a findKey and findDataList pair with a
+     * single walk down the tree.
+     *
+     * @param key Target key
+     * @return LinkedList of the node whose key value is 'key', empty if the
+     *         key has no data yet, null if not found
+     * @throws NullPointerException If key is null
+     */
+    public LinkedList<T> lookup(T key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        BSTNode node = findNodeHelper(this.getRoot(), key);
+        return node == null ? null : node.getDataList();
+    }
+
+    /**
+     * Return the smallest key in the tree that is at least 'key'
+     *
+     * @param key Lower bound
+     * @return The smallest key >= key, null if there is none
+     * @throws NullPointerException If key is null
+     */
+    public T ceiling(T key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        T found = null;
+        BSTNode cur = this.root;
+        while (cur != null) {
+            int value = key.compareTo(cur.key);
+            if (value == 0) {
+                return cur.key;
+            }
+            if (value < 0) {
+                found = cur.key;
+                cur = cur.left;
+            } else {
+                cur = cur.right;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Return the largest key in the tree that is at most 'key'
+     *
+     * @param key Upper bound
+     * @return The largest key <= key, null if there is none
+     * @throws NullPointerException If key is null
+     */
+    public T floor(T key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        T found = null;
+        BSTNode cur = this.root;
+        while (cur != null) {
+            int value = key.compareTo(cur.key);
+            if (value == 0) {
+                return cur.key;
+            }
+            if (value > 0) {
+                found = cur.key;
+                cur = cur.right;
+            } else {
+                cur = cur.left;
+            }
+        }
+        return found;
     }
 
     /**
@@ -255,26 +707,39 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
         if (this.getSize() == 0) {
             return -1;
         }
+        if (this.balanced) {
+            return this.root.height;
+        }
         return findHeightHelper(root);
     }
 
     /**
-     * Helper for the findHeight method
+     * Helper for the findHeight method, for trees that do not store their
+     * heights. Counts the levels of the tree breadth first with a queue
+     * holding one level at a time, so degenerate trees cannot overflow the
+     * call stack, and the nodes are only read, so readers may share the
+     * tree meanwhile.
      *
      * @param root Root node
      * @return The height of the tree, -1 if BST is empty
      */
     private int findHeightHelper(BSTNode root) {
-        if (root == null) {
-            return -1;
-        }
-        int leftHeight = findHeightHelper(root.left);
-        int rightHeight = findHeightHelper(root.right);
-        if (leftHeight>rightHeight) {
-            return 1 + leftHeight;
+        int height = -1;
+        ArrayDeque<BSTNode> level = new ArrayDeque<>();
+        level.add(root);
+        while (!level.isEmpty()) {
+            height++;
+            for (int i = level.size(); i > 0; i--) {
+                BSTNode node = level.poll();
+                if (node.left != null) {
+                    level.add(node.left);
+                }
+                if (node.right != null) {
+                    level.add(node.right);
+                }
+            }
         }
-        else
-            return 1 + rightHeight;
+        return height;
     }
 
     /**
@@ -285,14 +750,7 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
      * @return whether of the node whose key value is 'key'
      */
     private boolean containsHelper(BSTNode currRoot, T toFind){
-        if (currRoot == null) {
-            return false;
-        }
-        if (toFind.compareTo(currRoot.getKey()) < 0) {
-            return containsHelper(currRoot.getLeft(), toFind);
-        } else if (toFind.compareTo(currRoot.getKey()) > 0) {
-            return containsHelper(currRoot.getRight(), toFind);
-        } else return true;
+        return findNodeHelper(currRoot, toFind) != null;
     }
 
     /**
@@ -300,14 +758,42 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
      *
      * @param currRoot root of current BST
      * @param toFind key of Node to locate
-     * @return Node whose key is toFind
+     * @return Node whose key is toFind, null if not found
      */
     private BSTNode findNodeHelper(BSTNode currRoot, T toFind){
-        if (toFind.compareTo(currRoot.getKey()) < 0) {
-            return findNodeHelper(currRoot.getLeft(), toFind);
-        } else if (toFind.compareTo(currRoot.getKey()) > 0) {
-            return findNodeHelper(currRoot.getRight(), toFind);
-        } else return currRoot;
+        BSTNode cur = currRoot;
+        while (cur != null) {
+            int value = toFind.compareTo(cur.key);
+            if (value < 0) {
+                cur = cur.left;
+            } else if (value > 0) {
+                cur = cur.right;
+            } else {
+                return cur;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the node whose key is 'key', inserting a new node with an empty
+     * LinkedList if there is none yet
+     *
+     * @param key Target key
+     * @return Node whose key is 'key'
+     */
+    private BSTNode findOrCreateNode(T key) {
+        if (this.balanced) {
+            return balancedAddHelper(key);
+        }
+        if (this.root == null) {
+            this.root = new BSTNode(null, null, key);
+            this.nelems++;
+            this.modCount++;
+            this.version++;
+            return this.root;
+        }
+        return addHelper(this.root, key);
     }
 
     /**
@@ -315,62 +801,369 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
      *
      * @param currRoot current root
      * @param toAdd key to add
-     * @return true if insertion is successful and false otherwise
+     * @return Node whose key is toAdd, either existing or newly inserted
+     */
+    private BSTNode addHelper(BSTNode currRoot, T toAdd){
+        BSTNode cur = currRoot;
+        while (true) {
+            int value = toAdd.compareTo(cur.key);
+            if (value == 0) {
+                return cur;
+            }
+            BSTNode next = value < 0 ? cur.left : cur.right;
+            if (next == null) {
+                next = new BSTNode(null, null, toAdd);
+                if (value < 0) {
+                    cur.setleft(next);
+                } else {
+                    cur.setright(next);
+                }
+                this.nelems++;
+                this.modCount++;
+                this.version++;
+                return next;
+            }
+            cur = next;
+        }
+    }
+
+    /**
+     * Helper method to insert a key into a balanced BST. Remembers the path
+     * taken from the root and rebalances every node on it on the way back up.
+     *
+     * @param toAdd key to add
+     * @return Node whose key is toAdd, either existing or newly inserted
+     */
+    @SuppressWarnings("unchecked")
+    private BSTNode balancedAddHelper(T toAdd) {
+        int depth = 0;
+        BSTNode cur = this.root;
+        while (cur != null) {
+            int value = toAdd.compareTo(cur.key);
+            if (value == 0) {
+                return cur;
+            }
+            this.path[depth] = cur;
+            this.pathLeft[depth++] = value < 0;
+            cur = value < 0 ? cur.left : cur.right;
+        }
+        BSTNode added = new BSTNode(null, null, toAdd);
+        this.nelems++;
+        this.modCount++;
+        this.version++;
+        BSTNode child = added;
+        for (int i = depth - 1; i >= 0; i--) {
+            BSTNode parent = (BSTNode) this.path[i];
+            this.path[i] = null;
+            if (this.pathLeft[i]) {
+                parent.setleft(child);
+            } else {
+                parent.setright(child);
+            }
+            child = rebalance(parent);
+        }
+        this.root = child;
+        return added;
+    }
+
+    /**
+     * Helper method to remove a key from an unbalanced BST. A node with two
+     * children takes over the contents of its successor, which is unlinked
+     * instead.
+     *
+     * @param toRemove key to remove
+     * @return true if the key was found and removed
      */
-    private boolean addHelper(BSTNode currRoot, T toAdd){
-        int value = toAdd.compareTo(currRoot.getKey());
-        if (value == 0) {
+    private boolean removeHelper(T toRemove) {
+        BSTNode parent = null;
+        BSTNode cur = this.root;
+        while (cur != null) {
+            int value = toRemove.compareTo(cur.key);
+            if (value == 0) {
+                break;
+            }
+            parent = cur;
+            cur = value < 0 ? cur.left : cur.right;
+        }
+        if (cur == null) {
             return false;
         }
-        if (value < 0) {
-            if (currRoot.getLeft() == null) {
-                currRoot.setleft(new BSTNode(null, null, toAdd));
+        if (cur.left != null && cur.right != null) {
+            BSTNode successorParent = cur;
+            BSTNode successor = cur.right;
+            while (successor.left != null) {
+                successorParent = successor;
+                successor = successor.left;
+            }
+            moveContents(successor, cur);
+            if (successorParent == cur) {
+                successorParent.setright(successor.right);
             } else {
-                addHelper(currRoot.getLeft(), toAdd);
+                successorParent.setleft(successor.right);
             }
+            return true;
+        }
+        BSTNode child = cur.left != null ? cur.left : cur.right;
+        if (parent == null) {
+            this.root = child;
+        } else if (parent.left == cur) {
+            parent.setleft(child);
         } else {
-            if (currRoot.getRight() == null) {
-                currRoot.setright(new BSTNode(null, null, toAdd));
+            parent.setright(child);
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to remove a key from a balanced BST. Remembers the path
+     * taken from the root, down to the successor for a node with two
+     * children, and rebalances every node on it on the way back up.
+     *
+     * @param toRemove key to remove
+     * @return true if the key was found and removed
+     */
+    @SuppressWarnings("unchecked")
+    private boolean balancedRemoveHelper(T toRemove) {
+        int depth = 0;
+        BSTNode cur = this.root;
+        while (cur != null) {
+            int value = toRemove.compareTo(cur.key);
+            if (value == 0) {
+                break;
+            }
+            this.path[depth] = cur;
+            this.pathLeft[depth++] = value < 0;
+            cur = value < 0 ? cur.left : cur.right;
+        }
+        if (cur == null) {
+            Arrays.fill(this.path, 0, depth, null);
+            return false;
+        }
+        BSTNode unlinked = cur;
+        if (cur.left != null && cur.right != null) {
+            this.path[depth] = cur;
+            this.pathLeft[depth++] = false;
+            unlinked = cur.right;
+            while (unlinked.left != null) {
+                this.path[depth] = unlinked;
+                this.pathLeft[depth++] = true;
+                unlinked = unlinked.left;
+            }
+            moveContents(unlinked, cur);
+        }
+        BSTNode child = unlinked.left != null ? unlinked.left : unlinked.right;
+        for (int i = depth - 1; i >= 0; i--) {
+            BSTNode parent = (BSTNode) this.path[i];
+            this.path[i] = null;
+            if (this.pathLeft[i]) {
+                parent.setleft(child);
             } else {
-                addHelper(currRoot.getRight(), toAdd);
+                parent.setright(child);
             }
+            child = rebalance(parent);
         }
+        this.root = child;
         return true;
     }
 
-    /* * * * * BST Iterator * * * * */
+    /**
+     * Move the key, data and postings of a node into another one
+     *
+     * @param from Node whose contents are moved
+     * @param to   Node that takes them over
+     */
+    private void moveContents(BSTNode from, BSTNode to) {
+        to.key = from.key;
+        to.dataList = from.dataList;
+        to.postings = from.postings;
+    }
 
     /**
-     * Binary Search Tree Iterator inner class implementation.
+     * Return the height of a node in a balanced tree
      *
-     * @author Gino Angelici
-     * @since ${11/7/22}
+     * @param node Node, may be null
+     * @return The height of the node, -1 if node is null
+     */
+    private int heightOf(BSTNode node) {
+        return node == null ? -1 : node.height;
+    }
+
+    /**
+     * Recompute the height of a node from its children
+     *
+     * @param node Node to update
+     */
+    private void updateHeight(BSTNode node) {
+        node.height = 1 + Math.max(heightOf(node.getLeft()), heightOf(node.getRight()));
+    }
+
+    /**
+     * Rotate the subtree rooted at node to the left
+     *
+     * @param node Root of the subtree
+     * @return New root of the subtree
      */
-    public class BSTree_Iterator implements Iterator<T> {
-        Stack<T> leftPath;
+    private BSTNode rotateLeft(BSTNode node) {
+        BSTNode newRoot = node.getRight();
+        node.setright(newRoot.getLeft());
+        newRoot.setleft(node);
+        updateHeight(node);
+        updateHeight(newRoot);
+        return newRoot;
+    }
+
+    /**
+     * Rotate the subtree rooted at node to the right
+     *
+     * @param node Root of the subtree
+     * @return New root of the subtree
+     */
+    private BSTNode rotateRight(BSTNode node) {
+        BSTNode newRoot = node.getLeft();
+        node.setleft(newRoot.getRight());
+        newRoot.setright(node);
+        updateHeight(node);
+        updateHeight(newRoot);
+        return newRoot;
+    }
+
+    /**
+     * Restore the AVL property at node, assuming both subtrees are balanced
+     *
+     * @param node Root of the subtree
+     * @return New root of the subtree
+     */
+    private BSTNode rebalance(BSTNode node) {
+        updateHeight(node);
+        int balance = heightOf(node.getLeft()) - heightOf(node.getRight());
+        if (balance > 1) {
+            if (heightOf(node.getLeft().getLeft()) < heightOf(node.getLeft().getRight())) {
+                node.setleft(rotateLeft(node.getLeft()));
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (heightOf(node.getRight().getRight()) < heightOf(node.getRight().getLeft())) {
+                node.setright(rotateRight(node.getRight()));
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    /* * * * * BST Iterator * * * * */
+
+    /**
+     * In-order walk shared by the BST iterators. Keeps the nodes on the path
+     * to the next node on an array-backed stack, so each step costs amortized
+     * O(1) without looking keys up again.
+     */
+    protected abstract class InOrderIterator {
+        ArrayDeque<BSTNode> leftPath;
+        int expectedModCount;
+        T to; // keys from this one on are not visited, null for no bound
+
+        /**
+         * Initializes a stack with the leftPath of the root
+         */
+        InOrderIterator() {
+            leftPath = new ArrayDeque<>();
+            expectedModCount = modCount;
+            pushLeftPath(getRoot());
+        }
 
         /**
-         * Initializes a Stack with the leftPath of the root
+         * Initializes a stack with the path to the first key that is at
+         * least 'from', so that only keys in [from, to) are visited
+         *
+         * @param from Smallest key visited, null for no bound
+         * @param to   Keys from this one on are not visited, null for no bound
          */
-        public BSTree_Iterator() {
-            leftPath = new Stack<>();
+        InOrderIterator(T from, T to) {
+            leftPath = new ArrayDeque<>();
+            expectedModCount = modCount;
+            this.to = to;
+            if (from == null) {
+                pushLeftPath(getRoot());
+                return;
+            }
+            // keep the nodes whose left subtree may still hold keys >= from
             BSTNode cur = getRoot();
             while (cur != null) {
-                leftPath.push(cur.getKey());
+                if (cur.key.compareTo(from) >= 0) {
+                    leftPath.push(cur);
+                    cur = cur.getLeft();
+                } else {
+                    cur = cur.getRight();
+                }
+            }
+        }
+
+        /**
+         * Push cur and all of its left descendants onto the stack
+         *
+         * @param cur Node to start from, may be null
+         */
+        private void pushLeftPath(BSTNode cur) {
+            while (cur != null) {
+                leftPath.push(cur);
                 cur = cur.getLeft();
             }
         }
 
         /**
-         * Checks if the Stack is empty or not
+         * Checks if there is a next node below the upper bound
          *
-         * @return whether Stack is empty
+         * @return whether there is a next node
          */
         public boolean hasNext() {
-            if (leftPath.isEmpty()) {
-                return false;
+            return !leftPath.isEmpty() && (to == null || leftPath.peek().key.compareTo(to) < 0);
+        }
+
+        /**
+         * Returns next node of BST
+         *
+         * @return next node in the BST
+         * @throws NoSuchElementException if there is no next node
+         * @throws ConcurrentModificationException if a key was inserted into
+         *         the BST since this iterator was created
+         */
+        BSTNode nextNode() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
-            return true;
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BSTNode cur = leftPath.pop();
+            pushLeftPath(cur.getRight());
+            return cur;
+        }
+    }
+
+    /**
+     * Binary Search Tree Iterator inner class implementation.
+     *
+     * @author Gino Angelici
+     * @since ${11/7/22}
+     */
+    public class BSTree_Iterator extends InOrderIterator implements Iterator<T> {
+
+        /**
+         * Iterator over every key
+         */
+        BSTree_Iterator() {
+            super();
+        }
+
+        /**
+         * Iterator over the keys in [from, to)
+         *
+         * @param from Smallest key visited, null for no bound
+         * @param to   Keys from this one on are not visited, null for no bound
+         */
+        BSTree_Iterator(T from, T to) {
+            super(from, to);
         }
 
         /**
@@ -378,18 +1171,45 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
          *
          * @return next item in the BST
          * @throws NoSuchElementException if there is no next item
+         * @throws ConcurrentModificationException if the BST was modified
          */
         public T next() {
-            if (!this.hasNext()) {
-                throw new NoSuchElementException();
-            }
-            BSTNode cur = findNodeHelper(getRoot(), leftPath.peek()).getRight();
-            T to_return = leftPath.pop();
-            while (cur != null) {
-                leftPath.push(cur.getKey());
-                cur = cur.getLeft();
-            }
-            return to_return;
+            return nextNode().getKey();
+        }
+    }
+
+    /**
+     * Binary Search Tree entry iterator, returning every node so that both
+     * its key and its data list can be read without another lookup.
+     */
+    public class BSTree_EntryIterator extends InOrderIterator implements Iterator<BSTNode> {
+
+        /**
+         * Iterator over every node
+         */
+        BSTree_EntryIterator() {
+            super();
+        }
+
+        /**
+         * Iterator over the nodes with keys in [from, to)
+         *
+         * @param from Smallest key visited, null for no bound
+         * @param to   Keys from this one on are not visited, null for no bound
+         */
+        BSTree_EntryIterator(T from, T to) {
+            super(from, to);
+        }
+
+        /**
+         * Returns next node of BST
+         *
+         * @return next node in the BST
+         * @throws NoSuchElementException if there is no next node
+         * @throws ConcurrentModificationException if the BST was modified
+         */
+        public BSTNode next() {
+            return nextNode();
         }
     }
 
@@ -402,4 +1222,38 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
     public Iterator<T> iterator() {
         return new BSTree_Iterator();
     }
+
+    /**
+     * Return an iterator over the nodes of the BST in key order
+     *
+     * @return Iterator over key and data list entries
+     */
+    public Iterator<BSTNode> entryIterator() {
+        return new BSTree_EntryIterator();
+    }
+
+    /**
+     * Return an iterator over the keys in [from, to), in key order. Only
+     * visits the O(log n + k) nodes on the way to and inside the range.
+     *
+     * @param from Smallest key returned, null for no bound
+     * @param to   Keys from this one on are not returned, null for no bound
+     * @return Iterator over the keys in the range
+     */
+    public Iterator<T> iterator(T from, T to) {
+        return new BSTree_Iterator(from, to);
+    }
+
+    /**
+     * Return an iterator over the nodes with keys in [from, to), in key
+     * order. Only visits the O(log n + k) nodes on the way to and inside
+     * the range.
+     *
+     * @param from Smallest key returned, null for no bound
+     * @param to   Keys from this one on are not returned, null for no bound
+     * @return Iterator over key and data list entries in the range
+     */
+    public Iterator<BSTNode> entryIterator(T from, T to) {
+        return new BSTree_EntryIterator(from, to);
+    }
 }
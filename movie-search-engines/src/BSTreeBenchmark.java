@@ -0,0 +1,1206 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Benchmarks for BSTree and the search engine built on it. There is no JMH
+ * in this project, so every measurement is warmed up a few rounds before
+ * being timed with nanoTime.
+ * Run with the name of a benchmark as the first argument, e.g.
+ * "java BSTreeBenchmark traversal".
+ */
+public class BSTreeBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int TIMED_ROUNDS = 10;
+
+    // keeps the JIT from discarding benchmarked work
+    private static long sink;
+
+    /**
+     * Time a task, returning the average nanoseconds per timed round
+     *
+     * @param task Task to be timed
+     * @return Average nanoseconds per round
+     */
+    static double time(Runnable task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMED_ROUNDS; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / (double) TIMED_ROUNDS;
+    }
+
+    /**
+     * Print a single benchmark result
+     *
+     * @param label Name of the measurement
+     * @param nanos Nanoseconds per round
+     * @param ops   Operations per round
+     */
+    static void report(String label, double nanos, int ops) {
+        System.out.printf("%-40s %10.1f ns/op %10.2f ms/round%n",
+                label, nanos / ops, nanos / 1e6);
+    }
+
+    /**
+     * Return n distinct keys, either sorted or shuffled
+     *
+     * @param n      Number of keys
+     * @param sorted Whether the keys come in sorted order
+     * @return The keys
+     */
+    static List<String> keys(int n, boolean sorted) {
+        List<String> keys = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            keys.add(String.format("actor-%08d", i));
+        }
+        if (!sorted) {
+            Collections.shuffle(keys, new Random(42));
+        }
+        return keys;
+    }
+
+    /**
+     * Recursive lookup as BSTree did it before its traversals became loops,
+     * comparing twice per level
+     *
+     * @param node  Current root
+     * @param toFind Key to locate
+     * @return Whether the key is in the subtree
+     */
+    static boolean recursiveContains(BSTree<String>.BSTNode node, String toFind) {
+        if (node == null) {
+            return false;
+        }
+        if (toFind.compareTo(node.getKey()) < 0) {
+            return recursiveContains(node.getLeft(), toFind);
+        } else if (toFind.compareTo(node.getKey()) > 0) {
+            return recursiveContains(node.getRight(), toFind);
+        } else return true;
+    }
+
+    /**
+     * Recursive height as BSTree did it before its traversals became loops
+     *
+     * @param node Current root
+     * @return Height of the subtree, -1 if empty
+     */
+    static int recursiveHeight(BSTree<String>.BSTNode node) {
+        if (node == null) {
+            return -1;
+        }
+        return 1 + Math.max(recursiveHeight(node.getLeft()), recursiveHeight(node.getRight()));
+    }
+
+    /**
+     * Compare the iterative lookups and height of BSTree with the recursive
+     * versions on random and sorted key workloads. Sorted keys build a
+     * degenerate tree, so that workload is kept small enough for recursion
+     * to survive it.
+     */
+    static void traversal() {
+        String[] workloads = {"random", "sorted"};
+        int[] sizes = {200000, 5000};
+        for (int w = 0; w < workloads.length; w++) {
+            List<String> keys = keys(sizes[w], w == 1);
+            BSTree<String> tree = new BSTree<>();
+            for (String key : keys) {
+                tree.insert(key);
+            }
+            String name = workloads[w] + " n=" + keys.size();
+            report("findKey iterative " + name, time(() -> {
+                for (String key : keys) {
+                    sink += tree.findKey(key) ? 1 : 0;
+                }
+            }), keys.size());
+            report("findKey recursive " + name, time(() -> {
+                for (String key : keys) {
+                    sink += recursiveContains(tree.getRoot(), key) ? 1 : 0;
+                }
+            }), keys.size());
+            report("findHeight iterative " + name, time(() -> sink += tree.findHeight()), 1);
+            report("findHeight recursive " + name,
+                    time(() -> sink += recursiveHeight(tree.getRoot())), 1);
+        }
+    }
+
+    /**
+     * Write a synthetic catalog made of 'copies' renamed copies of a movie
+     * data file. Every copy keeps the first actor of each movie, so popular
+     * actors get dense posting lists, and spreads the rest of the cast over
+     * 97 variants, which gives a long tail of sparse lists.
+     *
+     * @param source Movie data file to scale up
+     * @param copies Number of copies of every record
+     * @return The generated file, deleted when the JVM exits
+     * @throws IOException If a file cannot be read or written
+     */
+    static File scaledCatalog(String source, int copies) throws IOException {
+        List<String> lines = Files.readAllLines(new File(source).toPath());
+        File target = File.createTempFile("moviedata", ".txt");
+        target.deleteOnExit();
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(target))) {
+            for (int copy = 0; copy < copies; copy++) {
+                for (int i = 0; i + 4 < lines.size(); i += 5) {
+                    out.write(lines.get(i).trim() + "-" + copy);
+                    out.newLine();
+                    String[] cast = lines.get(i + 1).split(" ");
+                    for (int j = 0; j < cast.length; j++) {
+                        out.write(j == 0 ? cast[j] : " " + cast[j] + "-" + copy % 97);
+                    }
+                    out.newLine();
+                    out.write(lines.get(i + 2));
+                    out.newLine();
+                    out.write(lines.get(i + 3));
+                    out.newLine();
+                    out.write("-");
+                    out.newLine();
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Report the posting bytes of a tree as plain int arrays and compressed
+     *
+     * @param name Name of the tree
+     * @param tree Built tree
+     */
+    static void postingBytes(String name, BSTree<String> tree) {
+        long postings = 0;
+        long arrayBytes = 0;
+        long compressedBytes = 0;
+        Iterator<BSTree<String>.BSTNode> nodes = tree.entryIterator();
+        while (nodes.hasNext()) {
+            PostingList list = nodes.next().getPostings();
+            postings += list.size();
+            arrayBytes += 16 + 4 * list.size();
+            compressedBytes += list.sizeInBytes();
+        }
+        System.out.printf("%-8s keys=%8d postings=%10d int[] %6.2f B/posting"
+                        + "  compressed %6.2f B/posting%n", name, tree.getSize(), postings,
+                arrayBytes / (double) postings, compressedBytes / (double) postings);
+    }
+
+    /**
+     * Compare the heap taken by the posting lists as plain int arrays and
+     * compressed, on the bundled movie data scaled up synthetically
+     *
+     * @param source Movie data file to scale up
+     * @throws IOException If a file cannot be read or written
+     */
+    static void postingMemory(String source) throws IOException {
+        for (int copies : new int[] {1000, 10000, 50000}) {
+            File catalog = scaledCatalog(source, copies);
+            BSTree<String> movieTree = new BSTree<>(true);
+            BSTree<String> studioTree = new BSTree<>(true);
+            BSTree<String> ratingTree = new BSTree<>(true);
+            SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree, catalog.getPath());
+            System.out.println("copies=" + copies + " movies=" + movieTree.getDocuments().size());
+            postingBytes("actors", movieTree);
+            postingBytes("studios", studioTree);
+            catalog.delete();
+        }
+    }
+
+    /**
+     * Parse a movie data file the way populateSearchTrees used to, with a
+     * Scanner and regex splits
+     *
+     * @param file File to parse
+     * @return Number of records read
+     * @throws IOException If the file cannot be read
+     */
+    static long scannerParse(File file) throws IOException {
+        long records = 0;
+        try (Scanner scanner = new Scanner(file)) {
+            while (scanner.hasNextLine()) {
+                sink += scanner.nextLine().trim().length();
+                sink += scanner.nextLine().split(" ").length;
+                sink += scanner.nextLine().split(" ").length;
+                sink += scanner.nextLine().trim().length();
+                scanner.nextLine();
+                records++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Parse a movie data file with MovieRecordReader
+     *
+     * @param file File to parse
+     * @return Number of records read
+     * @throws IOException If the file cannot be read
+     */
+    static long readerParse(File file) throws IOException {
+        long records = 0;
+        try (MovieRecordReader reader = MovieRecordReader.open(file.getPath())) {
+            MovieRecord record;
+            while ((record = reader.next()) != null) {
+                sink += record.getTitle().length() + record.getCast().length
+                        + record.getStudios().length + record.getRating().length();
+                records++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Parse a movie data file with MappedMovieReader
+     *
+     * @param file File to parse
+     * @return Number of records read
+     * @throws IOException If the file cannot be read
+     */
+    static long mappedParse(File file) throws IOException {
+        long records = 0;
+        try (MappedMovieReader reader = MappedMovieReader.open(file.getPath())) {
+            MovieRecord record;
+            while ((record = reader.next()) != null) {
+                sink += record.getTitle().length() + record.getCast().length
+                        + record.getStudios().length + record.getRating().length();
+                records++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Interface for a parser that is benchmarked on a whole file
+     */
+    interface FileParser {
+        long parse(File file) throws IOException;
+    }
+
+    /**
+     * Report the best throughput of three parses of a file
+     *
+     * @param label  Name of the parser
+     * @param file   File to parse
+     * @param parser Parser to time
+     * @throws IOException If the file cannot be read
+     */
+    static void throughput(String label, File file, FileParser parser) throws IOException {
+        long best = Long.MAX_VALUE;
+        long records = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            records = parser.parse(file);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-24s %10d records %8.1f MB/s%n", label, records,
+                file.length() / 1e6 / (best / 1e9));
+    }
+
+    /**
+     * Compare the parsing throughput of the old Scanner loop, of
+     * MovieRecordReader and of MappedMovieReader on a generated file of
+     * about 'megabytes' MB
+     *
+     * @param source    Movie data file to scale up
+     * @param megabytes Size of the generated file
+     * @throws IOException If a file cannot be read or written
+     */
+    static void loader(String source, int megabytes) throws IOException {
+        int copies = (int) Math.max(1, megabytes * 1e6 / new File(source).length());
+        File catalog = scaledCatalog(source, copies);
+        System.out.printf("file of %.1f MB%n", catalog.length() / 1e6);
+        throughput("Scanner + split", catalog, BSTreeBenchmark::scannerParse);
+        throughput("MovieRecordReader", catalog, BSTreeBenchmark::readerParse);
+        throughput("MappedMovieReader", catalog, BSTreeBenchmark::mappedParse);
+        catalog.delete();
+    }
+
+    /**
+     * Interface for a loader that is benchmarked on a whole file
+     */
+    interface TreeLoader {
+        boolean load(BSTree<String> movieTree, BSTree<String> studioTree,
+                BSTree<String> ratingTree, String fileName);
+    }
+
+    /**
+     * Return the best time of three loads of a file, in seconds
+     *
+     * @param file   File to load
+     * @param loader Loader to time
+     * @return Seconds taken by the fastest load
+     */
+    static double loadSeconds(File file, TreeLoader loader) {
+        return loadSeconds(file, loader, false);
+    }
+
+    /**
+     * Return the best time of three loads of a file, in seconds
+     *
+     * @param file        File to load
+     * @param loader      Loader to time
+     * @param shareTitles Whether the movie and studio trees share one
+     *                    dictionary of titles
+     * @return Seconds taken by the fastest load
+     */
+    static double loadSeconds(File file, TreeLoader loader, boolean shareTitles) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            DocumentDictionary<String> titles = new DocumentDictionary<>();
+            BSTree<String> movieTree = shareTitles ? new BSTree<>(true, titles) : new BSTree<>(true);
+            BSTree<String> studioTree = shareTitles ? new BSTree<>(true, titles) : new BSTree<>(true);
+            long start = System.nanoTime();
+            loader.load(movieTree, studioTree, new BSTree<>(true), file.getPath());
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e9;
+    }
+
+    /**
+     * Compare a sequential mapped load with parallel builds on 1, 2, 4, 8
+     * and 16 threads, on a generated file of about 'megabytes' MB
+     *
+     * @param source    Movie data file to scale up
+     * @param megabytes Size of the generated file
+     * @throws IOException If a file cannot be read or written
+     */
+    static void parallel(String source, int megabytes) throws IOException {
+        int copies = (int) Math.max(1, megabytes * 1e6 / new File(source).length());
+        File catalog = scaledCatalog(source, copies);
+        System.out.printf("file of %.1f MB, %d cores%n", catalog.length() / 1e6,
+                Runtime.getRuntime().availableProcessors());
+        double sequential = loadSeconds(catalog, (movies, studios, ratings, name) ->
+                SearchEngine.populateSearchTrees(movies, studios, ratings, name, true));
+        System.out.printf("%-12s %8.2f s%n", "sequential", sequential);
+        for (int threads : new int[] {1, 2, 4, 8, 16}) {
+            double seconds = loadSeconds(catalog, (movies, studios, ratings, name) ->
+                    ParallelIndexBuilder.populateSearchTrees(movies, studios, ratings, name, threads));
+            System.out.printf("%-12s %8.2f s %6.2fx%n", threads + " threads", seconds,
+                    sequential / seconds);
+        }
+        catalog.delete();
+    }
+
+    /**
+     * Compare loading the trees one insert at a time with sorting the
+     * postings and bulk-loading them, on a generated file of about
+     * 'megabytes' MB
+     *
+     * @param source    Movie data file to scale up
+     * @param megabytes Size of the generated file
+     * @throws IOException If a file cannot be read or written
+     */
+    static void bulkLoad(String source, int megabytes) throws IOException {
+        int copies = (int) Math.max(1, megabytes * 1e6 / new File(source).length());
+        File catalog = scaledCatalog(source, copies);
+        System.out.printf("file of %.1f MB%n", catalog.length() / 1e6);
+        double inserted = loadSeconds(catalog, SearchEngine::populateSearchTrees);
+        System.out.printf("%-12s %8.2f s%n", "inserts", inserted);
+        double sorted = loadSeconds(catalog, SortedIndexBuilder::populateSearchTrees);
+        System.out.printf("%-12s %8.2f s %6.2fx%n", "bulk load", sorted, inserted / sorted);
+        catalog.delete();
+    }
+
+    /**
+     * Compare parsing a generated file of about 'megabytes' MB with opening
+     * a snapshot of the trees built from it, into trees with a dictionary
+     * each and into movie and studio trees sharing one, as the snapshot's
+     * trees do
+     *
+     * @param source    Movie data file to scale up
+     * @param megabytes Size of the generated file
+     * @throws IOException If a file cannot be read or written
+     */
+    static void snapshot(String source, int megabytes) throws IOException {
+        int copies = (int) Math.max(1, megabytes * 1e6 / new File(source).length());
+        File catalog = scaledCatalog(source, copies);
+        File snapshot = File.createTempFile("catalog", ".idx");
+        DocumentDictionary<String> titles = new DocumentDictionary<>();
+        BSTree<String> movieTree = new BSTree<>(true, titles);
+        BSTree<String> studioTree = new BSTree<>(true, titles);
+        BSTree<String> ratingTree = new BSTree<>(true);
+        SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree, catalog.getPath());
+        IndexSnapshot.write(movieTree, studioTree, ratingTree, snapshot.getPath());
+        System.out.printf("file of %.1f MB, snapshot of %.1f MB%n", catalog.length() / 1e6,
+                snapshot.length() / 1e6);
+        double parsed = loadSeconds(catalog, SearchEngine::populateSearchTrees);
+        System.out.printf("%-12s %8.3f s%n", "text load", parsed);
+        TreeLoader open = (movies, studios, ratings, name) -> {
+            try {
+                IndexSnapshot.open(movies, studios, ratings, name);
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        double opened = loadSeconds(snapshot, open);
+        System.out.printf("%-12s %8.3f s %6.2fx%n", "snapshot", opened, parsed / opened);
+        double shared = loadSeconds(snapshot, open, true);
+        System.out.printf("%-12s %8.3f s %6.2fx%n", "shared", shared, parsed / shared);
+        catalog.delete();
+        snapshot.delete();
+    }
+
+    /**
+     * Return a mix of server requests: one, two and three term queries on
+     * keys picked at random from the movie and studio trees
+     *
+     * @param movieTree  BST of actors
+     * @param studioTree BST of studios
+     * @param n          Number of requests
+     * @return The requests
+     */
+    static List<String> requests(BSTree<String> movieTree, BSTree<String> studioTree, int n) {
+        List<String> actors = new ArrayList<>();
+        movieTree.iterator().forEachRemaining(actors::add);
+        List<String> studios = new ArrayList<>();
+        studioTree.iterator().forEachRemaining(studios::add);
+        Random random = new Random(42);
+        List<String> requests = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            boolean studio = random.nextInt(4) == 0;
+            List<String> keys = studio ? studios : actors;
+            StringBuilder request = new StringBuilder(studio ? "1" : "0");
+            for (int terms = 1 + random.nextInt(3); terms > 0; terms--) {
+                request.append(' ').append(keys.get(random.nextInt(keys.size())));
+            }
+            requests.add(request.toString());
+        }
+        return requests;
+    }
+
+    /**
+     * Load generator for QueryServer. Starts a server on the trees of a
+     * data file and has 'clients' connections send requests back to back
+     * for 'seconds' seconds, then reports throughput and latency
+     * percentiles.
+     *
+     * @param dataFile Movie data file or snapshot
+     * @param clients  Number of concurrent connections
+     * @param seconds  Duration of the timed run
+     * @throws IOException If the trees cannot be loaded or the server fails
+     */
+    static void server(String dataFile, int clients, int seconds) throws IOException {
+        DocumentDictionary<String> titles = new DocumentDictionary<>(); // as QueryServer.main
+        BSTree<String> movieTree = new BSTree<>(true, titles);
+        BSTree<String> studioTree = new BSTree<>(true, titles);
+        BSTree<String> ratingTree = new BSTree<>(true);
+        if (!SearchEngine.loadSearchTrees(movieTree, studioTree, ratingTree, dataFile)) {
+            throw new IOException("cannot load " + dataFile);
+        }
+        List<String> requests = requests(movieTree, studioTree, 10000);
+        try (QueryServer server = new QueryServer(movieTree, studioTree, ratingTree)) {
+            int port = server.listen(0);
+            // warm up, then time
+            runClients(port, clients, requests, Math.max(1, seconds / 5));
+            long start = System.nanoTime();
+            long[] latencies = runClients(port, clients, requests, seconds);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(latencies);
+            System.out.printf("%d clients, %d requests in %.1f s: %.0f requests/s%n",
+                    clients, latencies.length, elapsed, latencies.length / elapsed);
+            System.out.printf("p50 %8.1f us   p99 %8.1f us   max %8.1f us%n",
+                    latencies[latencies.length / 2] / 1e3,
+                    latencies[(int) (latencies.length * 0.99)] / 1e3,
+                    latencies[latencies.length - 1] / 1e3);
+        }
+    }
+
+    /**
+     * Have 'clients' connections send requests for 'seconds' seconds
+     *
+     * @param port     Port of the server
+     * @param clients  Number of concurrent connections
+     * @param requests Requests, sent in turn by every connection
+     * @param seconds  Duration of the run
+     * @return The latency of every request, in nanoseconds
+     * @throws IOException If a connection fails
+     */
+    static long[] runClients(int port, int clients, List<String> requests, int seconds)
+            throws IOException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int first = c * requests.size() / clients;
+            results.add(pool.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                    socket.setTcpNoDelay(true);
+                    PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                            socket.getOutputStream(), StandardCharsets.UTF_8));
+                    BufferedReader in = new BufferedReader(new InputStreamReader(
+                            socket.getInputStream(), StandardCharsets.UTF_8));
+                    for (int i = first; System.nanoTime() < deadline; i++) {
+                        long start = System.nanoTime();
+                        out.println(requests.get(i % requests.size()));
+                        out.flush();
+                        String line;
+                        while ((line = in.readLine()) != null && !line.isEmpty()) {
+                            sink += line.length();
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+        long[] all = new long[0];
+        try {
+            for (Future<long[]> result : results) {
+                long[] latencies = result.get();
+                int offset = all.length;
+                all = Arrays.copyOf(all, offset + latencies.length);
+                System.arraycopy(latencies, 0, all, offset, latencies.length);
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+        return all;
+    }
+
+    /**
+     * Compare printing a large result with taking its first page from a
+     * QueryResult
+     */
+    static void results() {
+        BSTree<String> tree = new BSTree<>(true);
+        for (String key : keys(200000, false)) {
+            tree.insertPosting("all", key);
+            if (key.hashCode() % 2 == 0) {
+                tree.insertPosting("half", key);
+            }
+        }
+        tree.compressPostings();
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        report("searchMyQuery, all documents", time(() ->
+                SearchEngine.searchMyQuery(tree, "all half", discard)), 1);
+        report("query, first 10 of each list", time(() -> {
+            QueryResult result = SearchEngine.query(tree, "all half");
+            sink += result.getIntersectionDocuments(0, 10).size();
+            for (int i = 0; i < result.getTermCount(); i++) {
+                sink += result.getResidualDocuments(i, 0, 10).size();
+            }
+        }), 1);
+        report("query, counts only", time(() ->
+                sink += SearchEngine.query(tree, "all half").getTotalCount()), 1);
+    }
+
+    /**
+     * Compare printing every document of a popular multi-key query with
+     * printing its 10 best ranked documents
+     */
+    static void ranked() {
+        BSTree<String> tree = new BSTree<>(true);
+        for (String key : keys(200000, false)) {
+            tree.insertPosting("popular", key);
+            int hash = key.hashCode() & Integer.MAX_VALUE;
+            if (hash % 3 == 0) {
+                tree.insertPosting("frequent", key);
+            }
+            if (hash % 500 == 0) {
+                tree.insertPosting("rare", key);
+            }
+        }
+        tree.compressPostings();
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        String query = "popular frequent rare";
+        report("searchMyQuery, all documents", time(() ->
+                SearchEngine.searchMyQuery(tree, query, discard)), 1);
+        for (int top : new int[] {10, 1000}) {
+            report("searchMyQuery, top " + top + " ranked", time(() ->
+                    SearchEngine.searchMyQuery(tree, query, discard, top)), 1);
+        }
+    }
+
+    /**
+     * Compare answering a skewed query mix with and without a QueryCache.
+     * Nine in ten queries come from the 20 actors with the most movies in
+     * a scaled-up catalog, the rest are random.
+     *
+     * @param source Movie data file to scale up
+     * @throws IOException If the catalog cannot be written or loaded
+     */
+    static void cache(String source) throws IOException {
+        BSTree<String> movieTree = new BSTree<>(true);
+        BSTree<String> studioTree = new BSTree<>(true);
+        BSTree<String> ratingTree = new BSTree<>(true);
+        if (!SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree,
+                scaledCatalog(source, 200).getPath())) {
+            throw new IOException("cannot load " + source);
+        }
+        List<String> actors = new ArrayList<>();
+        movieTree.iterator().forEachRemaining(actors::add);
+        List<String> hot = new ArrayList<>(actors);
+        hot.sort((a, b) -> movieTree.findPostings(b).size() - movieTree.findPostings(a).size());
+        hot = hot.subList(0, 20);
+        Random random = new Random(42);
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            List<String> keys = random.nextInt(10) < 9 ? hot : actors;
+            String query = keys.get(random.nextInt(keys.size()));
+            if (random.nextBoolean()) {
+                query += " " + keys.get(random.nextInt(keys.size()));
+            }
+            queries.add(query);
+        }
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        report("searchMyQuery, no cache", time(() -> {
+            for (String query : queries) {
+                SearchEngine.searchMyQuery(movieTree, query, discard);
+            }
+        }), queries.size());
+        QueryCache cache = new QueryCache(movieTree);
+        report("QueryCache, 1024 results", time(() -> {
+            for (String query : queries) {
+                SearchEngine.print(cache.query(query), discard);
+            }
+        }), queries.size());
+        System.out.println(cache);
+    }
+
+    /**
+     * Compare lookups per second of reader threads while one writer
+     * ingests movies, on a ConcurrentBSTree and on a BSTree guarded by a
+     * read-write lock. The writer inserts one movie per millisecond.
+     *
+     * @param readers Number of reader threads
+     * @param seconds Duration of each run
+     * @throws IOException If a thread fails
+     */
+    static void concurrent(int readers, int seconds) throws IOException {
+        List<String> actors = keys(20000, false);
+        ConcurrentBSTree<String> concurrent = new ConcurrentBSTree<>();
+        BSTree<String> locked = new BSTree<>(true);
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        for (int i = 0; i < 100000; i++) {
+            List<String> cast = Arrays.asList(actors.get(i % actors.size()),
+                    actors.get((i * 31) % actors.size()));
+            concurrent.insertPostings("movie-" + i, cast);
+            SearchEngine.makeTreeHelper(locked, cast.toArray(new String[0]), "movie-" + i);
+        }
+        runReaders("ConcurrentBSTree", readers, seconds, actors,
+                key -> concurrent.findPostings(key),
+                i -> concurrent.insertPostings("new-" + i, Arrays.asList(actors.get(i % actors.size()))));
+        runReaders("BSTree, read-write lock", readers, seconds, actors, key -> {
+            lock.readLock().lock();
+            try {
+                return locked.findPostings(key);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }, i -> {
+            lock.writeLock().lock();
+            try {
+                locked.insertPosting(actors.get(i % actors.size()), "new-" + i);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Run reader threads looking up random keys while a writer inserts,
+     * then report the lookups per second
+     *
+     * @param label   Name of the run
+     * @param readers Number of reader threads
+     * @param seconds Duration of the run
+     * @param keys    Keys to look up
+     * @param lookup  Lookup of one key
+     * @param insert  Insert of the i-th new movie
+     * @throws IOException If a thread fails
+     */
+    static void runReaders(String label, int readers, int seconds, List<String> keys,
+            Function<String, PostingList> lookup,
+            IntConsumer insert) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(readers + 1);
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        try {
+            Future<Integer> writer = pool.submit(() -> {
+                int inserted = 0;
+                while (System.nanoTime() < end) {
+                    insert.accept(inserted++);
+                    Thread.sleep(1);
+                }
+                return inserted;
+            });
+            List<Future<Long>> lookups = new ArrayList<>();
+            for (int r = 0; r < readers; r++) {
+                lookups.add(pool.submit(() -> {
+                    Random random = new Random();
+                    long done = 0;
+                    while (System.nanoTime() < end) {
+                        PostingList postings = lookup.apply(keys.get(random.nextInt(keys.size())));
+                        sink += postings == null ? 0 : postings.size();
+                        done++;
+                    }
+                    return done;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> done : lookups) {
+                total += done.get();
+            }
+            System.out.printf("%-28s %10.0f lookups/s, %d inserts%n", label,
+                    total / (double) seconds, writer.get());
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Compare rebuilding the trees of a scaled-up catalog with applying a
+     * change file of 1000 added, modified and removed movies to them
+     *
+     * @param source Movie data file to scale up
+     * @param copies Number of copies of every record
+     * @throws IOException If a file cannot be read or written
+     */
+    static void updates(String source, int copies) throws IOException {
+        File catalog = scaledCatalog(source, copies);
+        List<String> titles = new ArrayList<>();
+        List<String> records = Files.readAllLines(catalog.toPath());
+        for (int i = 0; i + 4 < records.size(); i += 5) {
+            titles.add(records.get(i));
+        }
+        int movies = titles.size();
+        Random random = new Random(42);
+        List<String> changes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int kind = random.nextInt(3);
+            if (kind == 0) {
+                changes.addAll(Arrays.asList("add new-movie-" + i, "new-actor-" + i % 50
+                        + " robert-downey-jr", "marvel", "PG13", "-"));
+            } else {
+                String title = titles.remove(random.nextInt(titles.size()));
+                changes.addAll(kind == 1 ? Arrays.asList("remove " + title, "-")
+                        : Arrays.asList("modify " + title, "tom-holland new-actor-" + i % 50,
+                        "sony", "PG", "-"));
+            }
+        }
+        File changeFile = File.createTempFile("changes", ".txt");
+        changeFile.deleteOnExit();
+        Files.write(changeFile.toPath(), changes);
+        CatalogUpdater updater = new CatalogUpdater(new BSTree<>(true), new BSTree<>(true),
+                new BSTree<>(true));
+        long start = System.nanoTime();
+        updater.populate(catalog.getPath());
+        System.out.printf("rebuild %d movies               %10.1f ms%n", movies,
+                (System.nanoTime() - start) / 1e6);
+        start = System.nanoTime();
+        int applied = updater.apply(changeFile.getPath());
+        System.out.printf("apply %d changes in place       %10.1f ms%n", applied,
+                (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Compare durable ingest into a DurableIndex by one thread, which
+     * forces the log once per movie, with several threads, whose movies
+     * share forces through group commit
+     *
+     * @param threads Number of ingesting threads in the second run
+     * @throws IOException If the index cannot be written
+     */
+    static void wal(int threads) throws IOException {
+        for (int t : new int[] {1, threads}) {
+            File dir = Files.createTempDirectory("wal").toFile();
+            File snapshotFile = new File(dir, "index.snapshot");
+            File logFile = new File(dir, "index.log");
+            int movies = 2000 * t;
+            ExecutorService pool = Executors.newFixedThreadPool(t);
+            try (DurableIndex index = DurableIndex.open(snapshotFile.getPath(), logFile.getPath())) {
+                long start = System.nanoTime();
+                List<Future<?>> ingests = new ArrayList<>();
+                for (int first = 0; first < t; first++) {
+                    int from = first;
+                    ingests.add(pool.submit(() -> {
+                        for (int i = from; i < movies; i += t) {
+                            index.add(new MovieRecord("movie-" + i, new String[] {"actor-" + i % 5000,
+                                    "actor-" + i * 7 % 5000}, new String[] {"studio-" + i % 50}, "PG"));
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> ingest : ingests) {
+                    ingest.get();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%2d thread(s): %6d movies %10.0f movies/s, log %d KB%n", t,
+                        movies, movies / seconds, logFile.length() >> 10);
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException(e);
+            } finally {
+                pool.shutdownNow();
+                snapshotFile.delete();
+                logFile.delete();
+                dir.delete();
+            }
+        }
+    }
+
+    /**
+     * Compare lookups in a balanced BSTree with lookups in its frozen array
+     * layout at several sizes. The tree is built from shuffled keys, so its
+     * nodes are scattered over the heap as they are after loading a file.
+     *
+     * @param sizes Numbers of keys
+     */
+    static void frozen(int[] sizes) {
+        int lookups = 1 << 20;
+        for (int n : sizes) {
+            List<String> keys = keys(n, false);
+            BSTree<String> tree = new BSTree<>(true);
+            for (String key : keys) {
+                tree.insert(key);
+            }
+            FrozenBSTree<String> frozen = tree.freeze();
+            keys = null;
+            Random random = new Random(42);
+            String[] queries = new String[lookups];
+            for (int i = 0; i < lookups; i++) {
+                queries[i] = String.format("actor-%08d", random.nextInt(n));
+            }
+            report("BSTree.findKey, " + n + " keys", time(() -> {
+                for (String query : queries) {
+                    sink += tree.findKey(query) ? 1 : 0;
+                }
+            }), lookups);
+            report("FrozenBSTree.findKey, " + n + " keys", time(() -> {
+                for (String query : queries) {
+                    sink += frozen.findKey(query) ? 1 : 0;
+                }
+            }), lookups);
+        }
+    }
+
+    /**
+     * Compare building and looking up a balanced BSTree with a HashIndex
+     * at several sizes, with one posting per key
+     *
+     * @param sizes Numbers of keys
+     */
+    static void hashIndex(int[] sizes) {
+        int lookups = 1 << 20;
+        for (int n : sizes) {
+            List<String> keys = keys(n, false);
+            List<SearchIndex<String>> indexes = Arrays.asList(new BSTree<>(true), new HashIndex<>());
+            Random random = new Random(42);
+            String[] queries = new String[lookups];
+            for (int i = 0; i < lookups; i++) {
+                queries[i] = String.format("actor-%08d", random.nextInt(n));
+            }
+            for (SearchIndex<String> index : indexes) {
+                String name = index.getClass().getSimpleName();
+                long start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    index.insertPosting(keys.get(i), "movie-" + i);
+                }
+                index.compressPostings();
+                report(name + " build, " + n + " keys", System.nanoTime() - start, n);
+                report(name + ".findPostings, " + n + " keys", time(() -> {
+                    for (String query : queries) {
+                        sink += index.findPostings(query).size();
+                    }
+                }), lookups);
+            }
+        }
+    }
+
+    /**
+     * Compare intersecting multi-term queries pairwise in query order with
+     * PostingList.intersectAll. Queries of 2, 5 and 10 terms start with
+     * very common actors and mix in rare ones.
+     */
+    static void intersection() {
+        int movies = 500000;
+        Random random = new Random(42);
+        PostingList[] common = new PostingList[10]; // in half the movies
+        PostingList[] rare = new PostingList[10]; // in 1 of 1000 movies
+        for (int a = 0; a < 10; a++) {
+            common[a] = new PostingList();
+            rare[a] = new PostingList();
+        }
+        for (int id = 0; id < movies; id++) {
+            for (int a = 0; a < 10; a++) {
+                if (random.nextInt(2) == 0) {
+                    common[a].add(id);
+                }
+                if (random.nextInt(1000) == 0) {
+                    rare[a].add(id);
+                }
+            }
+        }
+        for (int a = 0; a < 10; a++) {
+            common[a].compress();
+            rare[a].compress();
+        }
+        for (int terms : new int[] {2, 5, 10}) {
+            PostingList[] query = new PostingList[terms];
+            for (int i = 0; i < terms; i++) {
+                // common actors first, one rare actor last
+                query[i] = i < terms - 1 ? common[i] : rare[i];
+            }
+            report(terms + " terms, pairwise in query order", time(() -> {
+                PostingList related = query[0];
+                for (int i = 1; i < query.length; i++) {
+                    related = PostingList.intersect(related, query[i]);
+                }
+                sink += related.size();
+            }), 1);
+            report(terms + " terms, intersectAll", time(() ->
+                    sink += PostingList.intersectAll(query).size()), 1);
+        }
+    }
+
+    /**
+     * Compare prefix searches through a range iterator with a full
+     * iteration that checks every key, on prefixes matching 1, 100 and
+     * 10000 of a million keys
+     */
+    static void prefix() {
+        BSTree<String> tree = new BSTree<>(true);
+        int id = 0;
+        for (String key : keys(1000000, false)) {
+            tree.insertPosting(key, "movie-" + id++ % 50000);
+        }
+        tree.compressPostings();
+        for (String prefix : new String[] {"actor-00012345", "actor-000123", "actor-0001"}) {
+            report("range, " + prefix + "*", time(() ->
+                    sink += SearchEngine.findPrefixPostings(tree, prefix).size()), 1);
+            report("full iteration, " + prefix + "*", time(() -> {
+                List<PostingList> lists = new ArrayList<>();
+                Iterator<BSTree<String>.BSTNode> nodes = tree.entryIterator();
+                while (nodes.hasNext()) {
+                    BSTree<String>.BSTNode node = nodes.next();
+                    if (node.getKey().startsWith(prefix)) {
+                        lists.add(node.getPostings());
+                    }
+                }
+                sink += PostingList.unionAll(lists).size();
+            }), 1);
+        }
+    }
+
+    /**
+     * Return the heap in use after collecting garbage
+     *
+     * @return Used heap in bytes
+     */
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Compare the heap taken by the three search trees with String keys
+     * and documents against TermIndexes sharing one TermDictionary, on the
+     * bundled movie data scaled up synthetically, and the cost of a lookup
+     * in each
+     *
+     * @param source Movie data file to scale up
+     * @param copies Number of copies of the movie data
+     * @throws IOException If a file cannot be read or written
+     */
+    static void terms(String source, int copies) throws IOException {
+        File catalog = scaledCatalog(source, copies);
+        long base = usedHeap();
+        long start = System.nanoTime();
+        List<SearchIndex<String>> trees = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            trees.add(new BSTree<>(true));
+        }
+        SearchEngine.populateSearchTrees(trees.get(0), trees.get(1), trees.get(2), catalog.getPath());
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+        long stringHeap = usedHeap() - base;
+        int movies = trees.get(0).getDocuments().size();
+        List<String> keys = new ArrayList<>();
+        Iterator<String> actorKeys = trees.get(0).iterator();
+        for (int i = 0; i < 1000 && actorKeys.hasNext(); i++) {
+            keys.add(actorKeys.next());
+        }
+        System.out.printf("copies=%d movies=%d actors=%d%n", copies, movies, trees.get(0).getSize());
+        System.out.printf("String trees:   heap %7.1f MB  built in %7.0f ms%n",
+                stringHeap / 1e6, buildMillis);
+        SearchIndex<String> actors = trees.get(0);
+        report("  findPostings", time(() -> keys.forEach(key -> sink += actors.findPostings(key).size())),
+                keys.size());
+        trees.clear();
+
+        base = usedHeap();
+        start = System.nanoTime();
+        TermDictionary dictionary = TermDictionary.ofMovieData(catalog.getPath());
+        for (int t = 0; t < 3; t++) {
+            trees.add(new TermIndex(dictionary));
+        }
+        SearchEngine.populateSearchTrees(trees.get(0), trees.get(1), trees.get(2), catalog.getPath());
+        buildMillis = (System.nanoTime() - start) / 1e6;
+        long termHeap = usedHeap() - base;
+        System.out.printf("TermIndexes:    heap %7.1f MB  built in %7.0f ms"
+                        + "  (dictionary: %d terms, %.1f MB)%n", termHeap / 1e6, buildMillis,
+                dictionary.size(), dictionary.sizeInBytes() / 1e6);
+        SearchIndex<String> termActors = trees.get(0);
+        report("  findPostings", time(() -> keys.forEach(key -> sink += termActors.findPostings(key).size())),
+                keys.size());
+        catalog.delete();
+    }
+
+    /**
+     * Measure fuzzy key search with a BK-tree against scanning every key,
+     * and check that exact queries cost the same with fuzzy search
+     * available, on 100000 actor-like keys
+     */
+    static void fuzzy() {
+        Random random = new Random(42);
+        BSTree<String> tree = new BSTree<>(true);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int n = 5 + random.nextInt(6); n > 0; n--) {
+                name.append((char) ('a' + random.nextInt(26)));
+            }
+            name.append('-');
+            for (int n = 5 + random.nextInt(6); n > 0; n--) {
+                name.append((char) ('a' + random.nextInt(26)));
+            }
+            names.add(name.toString());
+            tree.insertPosting(name.toString(), "movie-" + i);
+        }
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            // drop one letter of an existing name
+            String name = names.get(random.nextInt(names.size()));
+            int typo = random.nextInt(name.length());
+            queries.add(name.substring(0, typo) + name.substring(typo + 1));
+        }
+        long start = System.nanoTime();
+        BKTree keys = BKTree.of(tree.iterator());
+        System.out.printf("BK-tree of %d keys built in %.1f ms%n", keys.size(),
+                (System.nanoTime() - start) / 1e6);
+        // exact keys never touch the BK-tree; warm up query once for both runs
+        time(() -> queries.forEach(query -> sink += SearchEngine.query(tree, query).getTotalCount()));
+        report("exact query, no BK-tree", time(() -> {
+            for (String query : queries) {
+                sink += SearchEngine.query(tree, query).getTotalCount();
+            }
+        }), queries.size());
+        report("exact query, BK-tree given", time(() -> {
+            for (String query : queries) {
+                sink += SearchEngine.query(tree, keys, query).getTotalCount();
+            }
+        }), queries.size());
+        for (int k = 1; k <= 2; k++) {
+            int maxDistance = k;
+            report("fuzzy query ~" + k + ", BK-tree", time(() -> {
+                for (String query : queries) {
+                    sink += SearchEngine.query(tree, keys, query + "~" + maxDistance).getTotalCount();
+                }
+            }), queries.size());
+            report("fuzzy query ~" + k + ", scanning keys", time(() -> {
+                for (String query : queries) {
+                    for (String name : names) {
+                        if (BKTree.distance(query, name) <= maxDistance) {
+                            sink += tree.findPostings(name).size();
+                        }
+                    }
+                }
+            }), queries.size());
+        }
+    }
+
+    /**
+     * Main method that runs the benchmark named by the first argument
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        String benchmark = args.length > 0 ? args[0] : "traversal";
+        String dataFile = args.length > 1 ? args[1] : "moviedata.txt";
+        if (benchmark.equals("traversal")) {
+            traversal();
+        } else if (benchmark.equals("postingMemory")) {
+            postingMemory(dataFile);
+        } else if (benchmark.equals("loader")) {
+            loader(dataFile, args.length > 2 ? Integer.parseInt(args[2]) : 1024);
+        } else if (benchmark.equals("parallel")) {
+            parallel(dataFile, args.length > 2 ? Integer.parseInt(args[2]) : 256);
+        } else if (benchmark.equals("bulkLoad")) {
+            bulkLoad(dataFile, args.length > 2 ? Integer.parseInt(args[2]) : 256);
+        } else if (benchmark.equals("snapshot")) {
+            snapshot(dataFile, args.length > 2 ? Integer.parseInt(args[2]) : 256);
+        } else if (benchmark.equals("server")) {
+            server(dataFile, args.length > 2 ? Integer.parseInt(args[2]) : 8,
+                    args.length > 3 ? Integer.parseInt(args[3]) : 10);
+        } else if (benchmark.equals("results")) {
+            results();
+        } else if (benchmark.equals("ranked")) {
+            ranked();
+        } else if (benchmark.equals("cache")) {
+            cache(dataFile);
+        } else if (benchmark.equals("concurrent")) {
+            concurrent(args.length > 1 ? Integer.parseInt(args[1]) : 4,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 5);
+        } else if (benchmark.equals("updates")) {
+            updates(dataFile, args.length > 2 ? Integer.parseInt(args[2]) : 20000);
+        } else if (benchmark.equals("wal")) {
+            wal(args.length > 1 ? Integer.parseInt(args[1]) : 16);
+        } else if (benchmark.equals("frozen")) {
+            frozen(args.length > 1 ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+                    : new int[] {10000, 1000000, 10000000});
+        } else if (benchmark.equals("hashIndex")) {
+            hashIndex(args.length > 1 ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+                    : new int[] {10000, 1000000});
+        } else if (benchmark.equals("terms")) {
+            terms(dataFile, args.length > 2 ? Integer.parseInt(args[2]) : 50000);
+        } else if (benchmark.equals("intersection")) {
+            intersection();
+        } else if (benchmark.equals("prefix")) {
+            prefix();
+        } else if (benchmark.equals("fuzzy")) {
+            fuzzy();
+        } else {
+            System.out.println("Unknown benchmark " + benchmark);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+}
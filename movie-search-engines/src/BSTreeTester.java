@@ -1,5 +1,14 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
 
 import static org.junit.Assert.*;
 
@@ -148,6 +157,67 @@ public class BSTreeTester {
         assertEquals(-1, myTestTree.findHeight());
     }
 
+    /**
+     * Return the height of a subtree by recursion, as a reference
+     */
+    private static int height(BSTree<Integer>.BSTNode node) {
+        return node == null ? -1 : 1 + Math.max(height(node.getLeft()), height(node.getRight()));
+    }
+
+    @org.junit.Test
+    public void findHeightLeavesTreeIntact() {
+        Random random = new Random(7);
+        BSTree<Integer> myTestTree = new BSTree<>();
+        TreeSet<Integer> keys = new TreeSet<>();
+        for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt(10000);
+            myTestTree.insert(key);
+            keys.add(key);
+        }
+        int expected = height(myTestTree.getRoot());
+        assertEquals(expected, myTestTree.findHeight());
+        assertEquals(expected, myTestTree.findHeight());
+        assertEquals(expected, height(myTestTree.getRoot()));
+        Iterator<Integer> it = myTestTree.iterator();
+        for (Integer key : keys) {
+            assertEquals(key, it.next());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @org.junit.Test
+    public void findHeightWithConcurrentReaders() throws Exception {
+        Random random = new Random(11);
+        BSTree<Integer> myTestTree = new BSTree<>();
+        for (int i = 0; i < 2000; i++) {
+            myTestTree.insert(random.nextInt(10000));
+        }
+        int expected = height(myTestTree.getRoot());
+        List<Thread> readers = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < 4; t++) {
+            int first = t;
+            Thread reader = new Thread(() -> {
+                try {
+                    for (int round = 0; round < 200; round++) {
+                        assertEquals(expected, myTestTree.findHeight());
+                        for (int key = first; key < 10000; key += 97) {
+                            myTestTree.findKey(key);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(Collections.emptyList(), failures);
+    }
+
     @org.junit.Test
     public void iterator() {
         Iterator<Integer> myIntTreeIter = myIntTree.iterator();
@@ -166,6 +236,312 @@ public class BSTreeTester {
         assertEquals(new Integer(3), myTestTreeIter.next());
     }
 
+    @org.junit.Test
+    public void balancedSortedInsert() {
+        int n = 1000000;
+        BSTree<Integer> myTestTree = new BSTree<>(true);
+        for (int i = 0; i < n; i++) {
+            assertTrue(myTestTree.insert(i));
+        }
+        assertEquals(n, myTestTree.getSize());
+        // AVL trees are never more than ~1.44 log2(n + 2) high
+        double bound = 1.4405 * Math.log(n + 2) / Math.log(2);
+        assertTrue(myTestTree.findHeight() <= bound);
+        assertTrue(myTestTree.findKey(0));
+        assertTrue(myTestTree.findKey(n - 1));
+        assertFalse(myTestTree.findKey(n));
+        assertFalse(myTestTree.insert(n / 2));
+        Iterator<Integer> myTestTreeIter = myTestTree.iterator();
+        for (int i = 0; i < n; i++) {
+            assertEquals(Integer.valueOf(i), myTestTreeIter.next());
+        }
+        assertFalse(myTestTreeIter.hasNext());
+    }
+
+    @org.junit.Test
+    public void balancedTree() {
+        BSTree<String> myTestTree = new BSTree<>(true);
+        for (String key : new String[] {"E", "A", "D", "F", "C", "B"}) {
+            myTestTree.insert(key);
+        }
+        assertEquals(2, myTestTree.findHeight());
+        assertEquals("D", myTestTree.getRoot().getKey());
+        myTestTree.insertData("B", "hello");
+        LinkedList<String> expected = new LinkedList<>();
+        expected.add("hello");
+        assertEquals(expected, myTestTree.findDataList("B"));
+        Iterator<String> myTestTreeIter = myTestTree.iterator();
+        assertEquals("A", myTestTreeIter.next());
+        assertEquals("B", myTestTreeIter.next());
+    }
+
+    @org.junit.Test
+    public void degenerateTree() {
+        // sorted inserts degenerate an unbalanced tree into a list
+        int n = 20000;
+        BSTree<Integer> myTestTree = new BSTree<>();
+        for (int i = 0; i < n; i++) {
+            myTestTree.insert(i);
+        }
+        assertEquals(n - 1, myTestTree.findHeight());
+        assertTrue(myTestTree.findKey(n - 1));
+        assertFalse(myTestTree.findKey(n));
+        myTestTree.insertData(n - 1, 7);
+        assertEquals(1, myTestTree.findDataList(n - 1).size());
+    }
+
+    @org.junit.Test
+    public void upsertData() {
+        assertFalse(myIntTree.upsertData(50, 1));
+        assertTrue(myIntTree.upsertData(65, 2));
+        assertFalse(myIntTree.upsertData(65, 3));
+        assertEquals(10, myIntTree.getSize());
+        LinkedList<Integer> expected = new LinkedList<>();
+        expected.add(2);
+        expected.add(3);
+        assertEquals(expected, myIntTree.findDataList(65));
+        BSTree<String> myTestTree = new BSTree<>(true);
+        for (String key : new String[] {"A", "B", "C", "A", "D"}) {
+            myTestTree.upsertData(key, key.toLowerCase());
+        }
+        assertEquals(4, myTestTree.getSize());
+        assertEquals(2, myTestTree.findDataList("A").size());
+        assertEquals(2, myTestTree.findHeight());
+    }
+
+    @org.junit.Test (expected = NullPointerException.class)
+    public void upsertDataNullData() throws NullPointerException {
+        myIntTree.upsertData(50, null);
+    }
+
+    @org.junit.Test
+    public void lookup() {
+        myIntTree.insertData(50, 777);
+        LinkedList<Integer> expected = new LinkedList<>();
+        expected.add(777);
+        assertEquals(expected, myIntTree.lookup(50));
+        assertNull(myIntTree.lookup(77));
+        BSTree<Integer> myTestTree = new BSTree<>();
+        assertNull(myTestTree.lookup(1));
+    }
+
+    @org.junit.Test
+    public void iteratorFullWalk() {
+        int[] expected = {5, 10, 30, 40, 50, 55, 60, 70, 80};
+        Iterator<Integer> myIntTreeIter = myIntTree.iterator();
+        for (int key : expected) {
+            assertTrue(myIntTreeIter.hasNext());
+            assertEquals(Integer.valueOf(key), myIntTreeIter.next());
+        }
+        assertFalse(myIntTreeIter.hasNext());
+        assertFalse(new BSTree<Integer>().iterator().hasNext());
+    }
+
+    @org.junit.Test (expected = NoSuchElementException.class)
+    public void iteratorExhausted() {
+        Iterator<Integer> myTestTreeIter = new BSTree<Integer>().iterator();
+        myTestTreeIter.next();
+    }
+
+    @org.junit.Test (expected = ConcurrentModificationException.class)
+    public void iteratorConcurrentModification() {
+        Iterator<Integer> myIntTreeIter = myIntTree.iterator();
+        myIntTreeIter.next();
+        myIntTree.insert(100);
+        myIntTreeIter.next();
+    }
+
+    @org.junit.Test
+    public void entryIterator() {
+        myStringTree.insertData("A", "a1");
+        myStringTree.insertData("C", "c1");
+        myStringTree.insertData("C", "c2");
+        Iterator<BSTree<String>.BSTNode> myStringTreeIter = myStringTree.entryIterator();
+        BSTree<String>.BSTNode entry = myStringTreeIter.next();
+        assertEquals("A", entry.getKey());
+        assertEquals(1, entry.getDataList().size());
+        assertEquals("B", myStringTreeIter.next().getKey());
+        entry = myStringTreeIter.next();
+        assertEquals("C", entry.getKey());
+        assertEquals("c2", entry.getDataList().getLast());
+        // appending data is not a structural change
+        myStringTree.insertData("E", "e1");
+        assertEquals("D", myStringTreeIter.next().getKey());
+    }
+
+    @org.junit.Test
+    public void insertPosting() {
+        assertFalse(myStringTree.insertPosting("A", "movie-2"));
+        assertTrue(myStringTree.insertPosting("G", "movie-1"));
+        myStringTree.insertPosting("A", "movie-1");
+        myStringTree.insertPosting("A", "movie-2");
+        DocumentDictionary<String> documents = myStringTree.getDocuments();
+        assertEquals(2, documents.size());
+        PostingList postings = myStringTree.findPostings("A");
+        assertEquals(2, postings.size());
+        assertEquals("movie-2", documents.get(postings.get(0)));
+        assertEquals("movie-1", documents.get(postings.get(1)));
+        assertEquals(1, myStringTree.findPostings("G").size());
+        assertNull(myStringTree.findPostings("B"));
+        assertNull(myStringTree.findPostings("Z"));
+    }
+
+    @org.junit.Test (expected = NullPointerException.class)
+    public void insertPostingNullData() throws NullPointerException {
+        myStringTree.insertPosting("A", null);
+    }
+
+    @org.junit.Test
+    public void remove() {
+        assertTrue(myIntTree.remove(50)); // root with two children
+        assertTrue(myIntTree.remove(5)); // leaf
+        assertTrue(myIntTree.remove(10)); // one child
+        assertFalse(myIntTree.remove(10));
+        assertEquals(6, myIntTree.getSize());
+        assertEquals(Integer.valueOf(55), myIntTree.getRoot().getKey());
+        List<Integer> keys = new ArrayList<>();
+        myIntTree.iterator().forEachRemaining(keys::add);
+        assertEquals("[30, 40, 55, 60, 70, 80]", keys.toString());
+        // random inserts and removes keep a balanced tree balanced and in order
+        for (boolean balanced : new boolean[] {false, true}) {
+            BSTree<Integer> tree = new BSTree<>(balanced);
+            TreeSet<Integer> expected = new TreeSet<>();
+            Random random = new Random(42);
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt(2000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key), tree.remove(key));
+                } else {
+                    assertEquals(expected.add(key), tree.insert(key));
+                }
+            }
+            assertEquals(expected.size(), tree.getSize());
+            keys.clear();
+            tree.iterator().forEachRemaining(keys::add);
+            assertEquals(new ArrayList<>(expected), keys);
+            if (balanced) {
+                assertTrue(tree.findHeight() <= 1.44 * Math.log(expected.size() + 2) / Math.log(2));
+            }
+            while (!expected.isEmpty()) {
+                assertTrue(tree.remove(expected.pollFirst()));
+            }
+            assertNull(tree.getRoot());
+        }
+    }
+
+    @org.junit.Test
+    public void removePosting() {
+        myStringTree.insertPosting("A", "movie-1");
+        myStringTree.insertPosting("A", "movie-2");
+        myStringTree.insertPosting("G", "movie-1");
+        int version = myStringTree.getVersion();
+        assertTrue(myStringTree.removePosting("A", "movie-1"));
+        assertNotEquals(version, myStringTree.getVersion());
+        assertFalse(myStringTree.removePosting("A", "movie-1"));
+        assertFalse(myStringTree.removePosting("A", "movie-3"));
+        assertEquals(1, myStringTree.findPostings("A").size());
+        assertTrue(myStringTree.findDataList("G").isEmpty()); // postings only, no data
+        assertFalse(myStringTree.removeData("G", "g1"));
+        // the last posting takes the key with it, unless it still has data
+        assertTrue(myStringTree.removePosting("G", "movie-1"));
+        assertFalse(myStringTree.findKey("G"));
+        myStringTree.insertData("A", "a1");
+        assertTrue(myStringTree.removePosting("A", "movie-2"));
+        assertTrue(myStringTree.findKey("A"));
+        assertTrue(myStringTree.removeData("A", "a1"));
+        assertFalse(myStringTree.findKey("A"));
+        assertEquals(5, myStringTree.getSize());
+    }
+
+    @org.junit.Test (expected = ConcurrentModificationException.class)
+    public void iteratorRemove() {
+        Iterator<String> keys = myStringTree.iterator();
+        keys.next();
+        myStringTree.remove("C");
+        keys.next();
+    }
+
+    @org.junit.Test
+    public void ceilingFloor() {
+        // keys 5 10 30 40 50 55 60 70 80
+        assertEquals(Integer.valueOf(30), myIntTree.ceiling(11));
+        assertEquals(Integer.valueOf(30), myIntTree.ceiling(30));
+        assertEquals(Integer.valueOf(5), myIntTree.ceiling(-1));
+        assertNull(myIntTree.ceiling(81));
+        assertEquals(Integer.valueOf(10), myIntTree.floor(11));
+        assertEquals(Integer.valueOf(55), myIntTree.floor(55));
+        assertEquals(Integer.valueOf(80), myIntTree.floor(1000));
+        assertNull(myIntTree.floor(4));
+        assertNull(new BSTree<Integer>().ceiling(1));
+    }
+
+    @org.junit.Test
+    public void rangeIterator() {
+        List<Integer> keys = new ArrayList<>();
+        myIntTree.iterator(30, 60).forEachRemaining(keys::add);
+        assertEquals("[30, 40, 50, 55]", keys.toString());
+        keys.clear();
+        myIntTree.iterator(31, null).forEachRemaining(keys::add);
+        assertEquals("[40, 50, 55, 60, 70, 80]", keys.toString());
+        keys.clear();
+        myIntTree.iterator(null, 10).forEachRemaining(keys::add);
+        assertEquals("[5]", keys.toString());
+        assertFalse(myIntTree.iterator(56, 60).hasNext());
+        assertFalse(myIntTree.iterator(90, null).hasNext());
+        Iterator<BSTree<String>.BSTNode> nodes = myStringTree.entryIterator("B", "D");
+        assertEquals("B", nodes.next().getKey());
+        assertEquals("C", nodes.next().getKey());
+        assertFalse(nodes.hasNext());
+    }
+
+    @org.junit.Test (expected = NoSuchElementException.class)
+    public void rangeIteratorPastEnd() throws NoSuchElementException {
+        Iterator<Integer> keys = myIntTree.iterator(70, 80);
+        keys.next();
+        keys.next();
+    }
+
+    @org.junit.Test
+    public void fromSorted() {
+        List<Map.Entry<Integer, PostingList>> groups = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            PostingList postings = new PostingList();
+            postings.add(i);
+            groups.add(new AbstractMap.SimpleImmutableEntry<>(i * 2, postings));
+        }
+        BSTree<Integer> tree = BSTree.fromSorted(groups.iterator(), groups.size(),
+                new DocumentDictionary<>());
+        assertEquals(1000, tree.getSize());
+        assertEquals(9, tree.findHeight());
+        Iterator<BSTree<Integer>.BSTNode> nodes = tree.entryIterator();
+        for (int i = 0; i < 1000; i++) {
+            BSTree<Integer>.BSTNode node = nodes.next();
+            assertEquals(Integer.valueOf(i * 2), node.getKey());
+            assertEquals(i, node.getPostings().get(0));
+        }
+        assertFalse(nodes.hasNext());
+        // the loaded tree stays balanced as keys are added
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i * 2 + 1);
+        }
+        assertTrue(tree.findHeight() <= 1.4405 * Math.log(2002) / Math.log(2));
+        assertTrue(tree.findKey(501));
+    }
+
+    @org.junit.Test (expected = IllegalArgumentException.class)
+    public void bulkLoadUnsorted() throws IllegalArgumentException {
+        List<Map.Entry<String, PostingList>> groups = new ArrayList<>();
+        groups.add(new AbstractMap.SimpleImmutableEntry<>("B", new PostingList()));
+        groups.add(new AbstractMap.SimpleImmutableEntry<>("A", new PostingList()));
+        new BSTree<String>(true).bulkLoad(groups.iterator(), groups.size());
+    }
+
+    @org.junit.Test (expected = IllegalStateException.class)
+    public void bulkLoadNotEmpty() throws IllegalStateException {
+        List<Map.Entry<String, PostingList>> groups = new ArrayList<>();
+        myStringTree.bulkLoad(groups.iterator(), 0);
+    }
+
     @org.junit.Test
     public void intersection() {
     }
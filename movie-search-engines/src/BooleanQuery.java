@@ -0,0 +1,522 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Query language over a MovieIndex. A query is made of terms such as
+ * "tom-holland", "actor:tom-holland", "studio:disney" or "rating:PG13"
+ * (terms without a field are actors), combined with AND, OR, NOT and
+ * parentheses. NOT binds tightest, then AND, then OR, and terms written
+ * next to each other are ANDed, e.g.
+ * "studio:marvel (chris-evans OR tom-holland) NOT rating:R".
+ * A parsed query is an operator tree that is evaluated lazily: every node
+ * becomes a cursor over title ids, and only the ids that reach the root
+ * are produced.
+ */
+public abstract class BooleanQuery {
+    static final String AND = "AND";
+    static final String OR = "OR";
+    static final String NOT = "NOT";
+
+    /**
+     * Return a cursor over the ids of the titles matching this query
+     *
+     * @param index Index to search
+     * @return A new cursor positioned before the first id
+     */
+    abstract PostingCursor cursor(MovieIndex index);
+
+    /**
+     * Return an upper bound on the number of titles matching this query,
+     * used to order the operands of AND
+     *
+     * @param index Index to search
+     * @return The bound
+     */
+    abstract long cost(MovieIndex index);
+
+    /**
+     * Return the ids of the titles matching this query
+     *
+     * @param index Index to search
+     * @return The title ids
+     */
+    public PostingList evaluate(MovieIndex index) {
+        PostingList matches = new PostingList();
+        PostingCursor cursor = cursor(index);
+        for (int id = cursor.nextDoc(); id != PostingCursor.NO_MORE_DOCS; id = cursor.nextDoc()) {
+            matches.add(id);
+        }
+        return matches;
+    }
+
+    /**
+     * Parse a query
+     *
+     * @param query Query text
+     * @return The operator tree of the query
+     * @throws IllegalArgumentException If the query is not well formed
+     */
+    public static BooleanQuery parse(String query) {
+        Parser parser = new Parser(query);
+        BooleanQuery parsed = parser.parseOr();
+        if (parser.peek() != null) {
+            throw new IllegalArgumentException("unexpected " + parser.peek() + " in " + query);
+        }
+        return parsed;
+    }
+
+    /**
+     * Recursive descent parser over the tokens of a query
+     */
+    private static class Parser {
+        private final String query;
+        private final List<String> tokens = new ArrayList<>();
+        private int position; // next token
+
+        /**
+         * A constructor that splits a query into words and parentheses.
+         *
+         * @param query Query text
+         */
+        Parser(String query) {
+            this.query = query;
+            int start = -1;
+            for (int i = 0; i <= query.length(); i++) {
+                char c = i < query.length() ? query.charAt(i) : ' ';
+                if (Character.isWhitespace(c) || c == '(' || c == ')') {
+                    if (start >= 0) {
+                        this.tokens.add(query.substring(start, i));
+                        start = -1;
+                    }
+                    if (c == '(' || c == ')') {
+                        this.tokens.add(String.valueOf(c));
+                    }
+                } else if (start < 0) {
+                    start = i;
+                }
+            }
+        }
+
+        /**
+         * Return the next token without consuming it
+         *
+         * @return The token, null at the end of the query
+         */
+        String peek() {
+            return this.position < this.tokens.size() ? this.tokens.get(this.position) : null;
+        }
+
+        /**
+         * Parse operands separated by OR
+         *
+         * @return The parsed query
+         */
+        BooleanQuery parseOr() {
+            List<BooleanQuery> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (OR.equals(peek())) {
+                this.position++;
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+
+        /**
+         * Parse operands separated by AND or written next to each other
+         *
+         * @return The parsed query
+         */
+        BooleanQuery parseAnd() {
+            List<BooleanQuery> operands = new ArrayList<>();
+            operands.add(parseNot());
+            while (peek() != null && !OR.equals(peek()) && !")".equals(peek())) {
+                if (AND.equals(peek())) {
+                    this.position++;
+                }
+                operands.add(parseNot());
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        /**
+         * Parse an operand, possibly negated
+         *
+         * @return The parsed query
+         */
+        BooleanQuery parseNot() {
+            if (NOT.equals(peek())) {
+                this.position++;
+                return new Not(parseNot());
+            }
+            return parseOperand();
+        }
+
+        /**
+         * Parse a term or a parenthesized query
+         *
+         * @return The parsed query
+         */
+        BooleanQuery parseOperand() {
+            String token = peek();
+            if (token == null || token.equals(")") || token.equals(AND) || token.equals(OR)) {
+                throw new IllegalArgumentException((token == null ? "missing term"
+                        : "unexpected " + token) + " in " + this.query);
+            }
+            this.position++;
+            if (token.equals("(")) {
+                BooleanQuery inner = parseOr();
+                if (!")".equals(peek())) {
+                    throw new IllegalArgumentException("missing ) in " + this.query);
+                }
+                this.position++;
+                return inner;
+            }
+            int colon = token.indexOf(':');
+            if (colon < 0) {
+                return new Term(MovieIndex.ACTOR, token);
+            }
+            String field = token.substring(0, colon);
+            String key = token.substring(colon + 1);
+            if (!field.equals(MovieIndex.ACTOR) && !field.equals(MovieIndex.STUDIO)
+                    && !field.equals(MovieIndex.RATING)) {
+                throw new IllegalArgumentException("unknown field " + field + " in " + this.query);
+            }
+            if (key.isEmpty()) {
+                throw new IllegalArgumentException("missing key after " + token + " in " + this.query);
+            }
+            return new Term(field, key);
+        }
+    }
+
+    /**
+     * Titles with a key in one field
+     */
+    static class Term extends BooleanQuery {
+        final String field;
+        final String key;
+
+        /**
+         * A constructor that initializes the term.
+         *
+         * @param field Field name
+         * @param key   Key in the field
+         */
+        Term(String field, String key) {
+            this.field = field;
+            this.key = key;
+        }
+
+        @Override
+        PostingCursor cursor(MovieIndex index) {
+            PostingList postings = index.findPostings(this.field, this.key);
+            return (postings == null ? new PostingList() : postings).cursor();
+        }
+
+        @Override
+        long cost(MovieIndex index) {
+            PostingList postings = index.findPostings(this.field, this.key);
+            return postings == null ? 0 : postings.size();
+        }
+
+        @Override
+        public String toString() {
+            return this.field + ":" + this.key;
+        }
+    }
+
+    /**
+     * Titles matching every operand
+     */
+    static class And extends BooleanQuery {
+        final List<BooleanQuery> operands;
+
+        /**
+         * A constructor that initializes the operands.
+         *
+         * @param operands At least one operand
+         */
+        And(List<BooleanQuery> operands) {
+            this.operands = operands;
+        }
+
+        /**
+         * Return the cursor of this AND: the positive operands cheapest
+         * first, every title if there are none, and the negated operands
+         * as exclusions
+         */
+        @Override
+        PostingCursor cursor(MovieIndex index) {
+            List<BooleanQuery> included = new ArrayList<>();
+            List<PostingCursor> excluded = new ArrayList<>();
+            for (BooleanQuery operand : this.operands) {
+                if (operand instanceof Not) {
+                    excluded.add(((Not) operand).operand.cursor(index));
+                } else {
+                    included.add(operand);
+                }
+            }
+            // cost each operand once, since costs recurse into the operand's own operands
+            long[] costs = new long[included.size()];
+            Integer[] order = new Integer[included.size()];
+            for (int i = 0; i < costs.length; i++) {
+                costs[i] = included.get(i).cost(index);
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> costs[i]));
+            List<PostingCursor> cursors = new ArrayList<>();
+            for (int i : order) {
+                cursors.add(included.get(i).cursor(index));
+            }
+            if (cursors.isEmpty()) {
+                cursors.add(new AllCursor(index.getTitles().size()));
+            }
+            return new AndCursor(cursors, excluded);
+        }
+
+        @Override
+        long cost(MovieIndex index) {
+            long cost = index.getTitles().size();
+            for (BooleanQuery operand : this.operands) {
+                if (!(operand instanceof Not)) {
+                    cost = Math.min(cost, operand.cost(index));
+                }
+            }
+            return cost;
+        }
+
+        @Override
+        public String toString() {
+            return join(this.operands, AND);
+        }
+    }
+
+    /**
+     * Titles matching at least one operand
+     */
+    static class Or extends BooleanQuery {
+        final List<BooleanQuery> operands;
+
+        /**
+         * A constructor that initializes the operands.
+         *
+         * @param operands At least one operand
+         */
+        Or(List<BooleanQuery> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        PostingCursor cursor(MovieIndex index) {
+            List<PostingCursor> cursors = new ArrayList<>();
+            for (BooleanQuery operand : this.operands) {
+                cursors.add(operand.cursor(index));
+            }
+            return new OrCursor(cursors);
+        }
+
+        @Override
+        long cost(MovieIndex index) {
+            long cost = 0;
+            for (BooleanQuery operand : this.operands) {
+                cost += operand.cost(index);
+            }
+            return Math.min(cost, index.getTitles().size());
+        }
+
+        @Override
+        public String toString() {
+            return join(this.operands, OR);
+        }
+    }
+
+    /**
+     * Titles not matching the operand
+     */
+    static class Not extends BooleanQuery {
+        final BooleanQuery operand;
+
+        /**
+         * A constructor that initializes the operand.
+         *
+         * @param operand Negated query
+         */
+        Not(BooleanQuery operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        PostingCursor cursor(MovieIndex index) {
+            List<PostingCursor> all = new ArrayList<>();
+            all.add(new AllCursor(index.getTitles().size()));
+            List<PostingCursor> excluded = new ArrayList<>();
+            excluded.add(this.operand.cursor(index));
+            return new AndCursor(all, excluded);
+        }
+
+        @Override
+        long cost(MovieIndex index) {
+            return index.getTitles().size();
+        }
+
+        @Override
+        public String toString() {
+            return NOT + " " + this.operand;
+        }
+    }
+
+    /**
+     * Return operands joined by an operator, in parentheses
+     *
+     * @param operands Operands
+     * @param operator AND or OR
+     * @return The joined operands
+     */
+    private static String join(List<BooleanQuery> operands, String operator) {
+        StringBuilder joined = new StringBuilder("(");
+        for (int i = 0; i < operands.size(); i++) {
+            if (i > 0) {
+                joined.append(' ').append(operator).append(' ');
+            }
+            joined.append(operands.get(i));
+        }
+        return joined.append(')').toString();
+    }
+
+    /**
+     * Cursor over every title id
+     */
+    private static class AllCursor implements PostingCursor {
+        private final int size; // number of titles
+        private int doc = -1;
+
+        /**
+         * A constructor for the ids 0 to size - 1.
+         *
+         * @param size Number of titles
+         */
+        AllCursor(int size) {
+            this.size = size;
+        }
+
+        public int docId() {
+            return this.doc;
+        }
+
+        public int nextDoc() {
+            return advance(this.doc + 1);
+        }
+
+        public int advance(int target) {
+            if (this.doc < target) {
+                this.doc = target < this.size ? target : NO_MORE_DOCS;
+            }
+            return this.doc;
+        }
+    }
+
+    /**
+     * Cursor over the ids on every included cursor and on no excluded one.
+     * The first included cursor proposes candidates and the others skip
+     * ahead to them, as in PostingList.intersectAll.
+     */
+    private static class AndCursor implements PostingCursor {
+        private final PostingCursor[] included; // cheapest first
+        private final PostingCursor[] excluded;
+        private int doc = -1;
+
+        /**
+         * A constructor that combines cursors.
+         *
+         * @param included At least one cursor, cheapest first
+         * @param excluded Cursors over ids to leave out
+         */
+        AndCursor(List<PostingCursor> included, List<PostingCursor> excluded) {
+            this.included = included.toArray(new PostingCursor[0]);
+            this.excluded = excluded.toArray(new PostingCursor[0]);
+        }
+
+        public int docId() {
+            return this.doc;
+        }
+
+        public int nextDoc() {
+            if (this.doc == NO_MORE_DOCS) {
+                return this.doc;
+            }
+            return this.doc = align(this.included[0].nextDoc());
+        }
+
+        public int advance(int target) {
+            if (this.doc >= target) {
+                return this.doc;
+            }
+            return this.doc = align(this.included[0].advance(target));
+        }
+
+        /**
+         * Return the first matching id from a candidate of the first
+         * included cursor on
+         *
+         * @param id Candidate id
+         * @return The matching id, NO_MORE_DOCS if there is none
+         */
+        private int align(int id) {
+            candidates:
+            while (id != NO_MORE_DOCS) {
+                for (int i = 1; i < this.included.length; i++) {
+                    int found = this.included[i].advance(id);
+                    if (found != id) {
+                        id = found == NO_MORE_DOCS ? found : this.included[0].advance(found);
+                        continue candidates;
+                    }
+                }
+                for (PostingCursor cursor : this.excluded) {
+                    if (cursor.advance(id) == id) {
+                        id = this.included[0].nextDoc();
+                        continue candidates;
+                    }
+                }
+                return id;
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Cursor over the ids on at least one of several cursors
+     */
+    private static class OrCursor implements PostingCursor {
+        private final PostingCursor[] cursors;
+        private int doc = -1;
+
+        /**
+         * A constructor that combines cursors.
+         *
+         * @param cursors Cursors to merge
+         */
+        OrCursor(List<PostingCursor> cursors) {
+            this.cursors = cursors.toArray(new PostingCursor[0]);
+        }
+
+        public int docId() {
+            return this.doc;
+        }
+
+        public int nextDoc() {
+            return this.doc == NO_MORE_DOCS ? this.doc : advance(this.doc + 1);
+        }
+
+        public int advance(int target) {
+            if (this.doc >= target) {
+                return this.doc;
+            }
+            int next = NO_MORE_DOCS;
+            for (PostingCursor cursor : this.cursors) {
+                next = Math.min(next, cursor.advance(target));
+            }
+            return this.doc = next;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+public class BooleanQueryTester {
+    MovieIndex myIndex;
+    List<MovieRecord> myRecords;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        myIndex = new MovieIndex();
+        myRecords = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            MovieRecord record = new MovieRecord("movie-" + i,
+                    new String[] {"actor-" + i % 7, "actor-" + i % 11},
+                    new String[] {"studio-" + i % 5},
+                    i % 3 == 0 ? "PG13" : "R");
+            myIndex.add(record);
+            myRecords.add(record);
+        }
+    }
+
+    /**
+     * Return the ids of the records a predicate holds for
+     */
+    private PostingList matching(Predicate<MovieRecord> predicate) {
+        PostingList expected = new PostingList();
+        for (MovieRecord record : myRecords) {
+            if (predicate.test(record)) {
+                expected.add(myIndex.getTitles().find(record.getTitle()));
+            }
+        }
+        return expected;
+    }
+
+    private static Predicate<MovieRecord> actor(String actor) {
+        return record -> Arrays.asList(record.getCast()).contains(actor);
+    }
+
+    private static Predicate<MovieRecord> studio(String studio) {
+        return record -> Arrays.asList(record.getStudios()).contains(studio);
+    }
+
+    private static Predicate<MovieRecord> rating(String rating) {
+        return record -> record.getRating().equals(rating);
+    }
+
+    @org.junit.Test
+    public void parse() {
+        assertEquals("(actor:a OR (actor:b AND studio:c AND NOT rating:R))",
+                BooleanQuery.parse("a OR b AND studio:c NOT rating:R").toString());
+        assertEquals("((actor:a OR actor:b) AND NOT NOT actor:c)",
+                BooleanQuery.parse("(a OR b) NOT NOT c").toString());
+        assertEquals("actor:a", BooleanQuery.parse(" ((a)) ").toString());
+    }
+
+    @org.junit.Test
+    public void evaluate() {
+        assertEquals(matching(actor("actor-3")), myIndex.search("actor-3"));
+        assertEquals(matching(actor("actor-3").and(studio("studio-2"))),
+                myIndex.search("actor:actor-3 studio:studio-2"));
+        assertEquals(matching(actor("actor-3").or(actor("actor-4")).and(rating("PG13"))),
+                myIndex.search("(actor-3 OR actor-4) AND rating:pg13"));
+        assertEquals(matching(studio("studio-1").and(actor("actor-5").negate())
+                        .and(actor("actor-6").negate())),
+                myIndex.search("studio:studio-1 NOT actor-5 NOT actor-6"));
+        assertEquals(matching(rating("R").negate().or(actor("actor-10"))),
+                myIndex.search("NOT rating:R OR actor-10"));
+        assertEquals(matching(actor("actor-1").and(actor("actor-1")).and(studio("studio-0"))
+                        .and(rating("R"))),
+                myIndex.search("studio:STUDIO-0 AND (actor-1 actor-1) rating:R"));
+        assertTrue(myIndex.search("actor-3 nobody").isEmpty());
+        assertEquals(matching(actor("actor-3")), myIndex.search("actor-3 OR nobody"));
+        assertEquals(500, myIndex.search("NOT nobody").size());
+    }
+
+    @org.junit.Test (expected = IllegalArgumentException.class)
+    public void parseUnbalanced() throws IllegalArgumentException {
+        BooleanQuery.parse("(a OR b");
+    }
+
+    @org.junit.Test (expected = IllegalArgumentException.class)
+    public void parseUnknownField() throws IllegalArgumentException {
+        BooleanQuery.parse("title:a");
+    }
+
+    @org.junit.Test (expected = IllegalArgumentException.class)
+    public void parseDanglingOperator() throws IllegalArgumentException {
+        BooleanQuery.parse("a AND");
+    }
+}
@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Applies catalog changes to the search trees in place, so that a day of
+ * added, modified and removed movies costs milliseconds instead of a full
+ * rebuild. Keeps the record of every movie in the catalog, since removing
+ * a movie means taking its title out of the posting lists of its actors
+ * and studios, and its rating out of those of actors with no other movie
+ * of that rating, which it counts per actor. Keys whose posting lists
+ * empty are removed from the trees. Removed titles keep their document
+ * ids, which a movie added again under the same title reuses.
+ */
+public class CatalogUpdater {
+    private final BSTree<String> movieTree; // actor to titles
+    private final BSTree<String> studioTree; // studio to titles
+    private final BSTree<String> ratingTree; // actor to ratings
+    private final HashMap<String, MovieRecord> movies = new HashMap<>(); // title to record
+    // "actor rating" to the number of the actor's movies with that rating
+    private final HashMap<String, Integer> ratingCounts = new HashMap<>();
+
+    /**
+     * A constructor that updates search trees built by this updater.
+     *
+     * @param movieTree  - BST of actors
+     * @param studioTree - BST of studios
+     * @param ratingTree - BST of ratings
+     */
+    public CatalogUpdater(BSTree<String> movieTree, BSTree<String> studioTree,
+            BSTree<String> ratingTree) {
+        this.movieTree = movieTree;
+        this.studioTree = studioTree;
+        this.ratingTree = ratingTree;
+    }
+
+    /**
+     * Populate the trees from a movie data file as
+     * SearchEngine.populateSearchTrees does, remembering every record.
+     * Malformed records and repeated titles are reported on System.err and
+     * skipped.
+     *
+     * @param fileName - name of the input file
+     * @return false if file not found or unreadable, true otherwise
+     */
+    public boolean populate(String fileName) {
+        try (MovieRecordReader reader = MovieRecordReader.open(fileName)) {
+            while (true) {
+                MovieRecord record;
+                try {
+                    record = reader.next();
+                } catch (MalformedRecordException e) {
+                    System.err.println("Skipping malformed record in " + fileName
+                            + ", " + e.getMessage());
+                    continue;
+                }
+                if (record == null) {
+                    break;
+                }
+                if (!add(record)) {
+                    System.err.println("Skipping repeated movie " + record.getTitle()
+                            + " in " + fileName);
+                }
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        compressPostings();
+        return true;
+    }
+
+    /**
+     * Apply the changes of a change file in order. Malformed changes and
+     * changes that do not fit the catalog, such as removing a movie that
+     * is not in it, are reported on System.err and skipped.
+     *
+     * @param fileName - name of the change file
+     * @return the number of changes applied
+     * @throws IOException if the file cannot be read
+     */
+    public int apply(String fileName) throws IOException {
+        int applied = 0;
+        try (ChangeFileReader reader = ChangeFileReader.open(fileName)) {
+            while (true) {
+                ChangeFileReader.Change change;
+                try {
+                    change = reader.next();
+                } catch (MalformedRecordException e) {
+                    System.err.println("Skipping malformed change in " + fileName
+                            + ", " + e.getMessage());
+                    continue;
+                }
+                if (change == null) {
+                    break;
+                }
+                if (apply(change)) {
+                    applied++;
+                } else {
+                    System.err.println("Skipping " + change.getOperation() + " of "
+                            + change.getTitle() + " in " + fileName + ", which is "
+                            + (this.movies.containsKey(change.getTitle()) ? "already" : "not")
+                            + " in the catalog");
+                }
+            }
+        } finally {
+            compressPostings();
+        }
+        return applied;
+    }
+
+    /**
+     * Apply one change
+     *
+     * @param change Change to apply
+     * @return true if it was applied, false if it does not fit the catalog
+     */
+    public boolean apply(ChangeFileReader.Change change) {
+        switch (change.getOperation()) {
+            case ChangeFileReader.ADD:
+                return add(change.getRecord());
+            case ChangeFileReader.MODIFY:
+                return modify(change.getRecord());
+            default:
+                return remove(change.getTitle());
+        }
+    }
+
+    /**
+     * Add a movie that is not in the catalog yet
+     *
+     * @param record Movie to be added
+     * @return true if it was added, false if its title is already there
+     */
+    public boolean add(MovieRecord record) {
+        if (this.movies.putIfAbsent(record.getTitle(), record) != null) {
+            return false;
+        }
+        SearchEngine.makeTreeHelper(this.movieTree, record.getCast(), record.getTitle());
+        SearchEngine.makeTreeHelper(this.studioTree, record.getStudios(), record.getTitle());
+        SearchEngine.makeTreeHelper(this.ratingTree, record.getCast(), record.getRating());
+        for (String actor : record.getCast()) {
+            this.ratingCounts.merge(actor + ' ' + record.getRating(), 1, Integer::sum);
+        }
+        return true;
+    }
+
+    /**
+     * Replace the record of a movie in the catalog
+     *
+     * @param record New record of the movie
+     * @return true if it was replaced, false if the movie is not there
+     */
+    public boolean modify(MovieRecord record) {
+        if (!remove(record.getTitle())) {
+            return false;
+        }
+        return add(record);
+    }
+
+    /**
+     * Remove a movie from the catalog
+     *
+     * @param title Title of the movie
+     * @return true if it was removed, false if it is not there
+     */
+    public boolean remove(String title) {
+        MovieRecord record = this.movies.remove(title);
+        if (record == null) {
+            return false;
+        }
+        for (String studio : record.getStudios()) {
+            this.studioTree.removePosting(studio, title);
+        }
+        for (String actor : record.getCast()) {
+            this.movieTree.removePosting(actor, title);
+            String actorRating = actor + ' ' + record.getRating();
+            if (this.ratingCounts.merge(actorRating, -1, Integer::sum) == 0) {
+                this.ratingCounts.remove(actorRating);
+                this.ratingTree.removePosting(actor, record.getRating());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of movies in the catalog
+     *
+     * @return The number of movies
+     */
+    public int getMovieCount() {
+        return this.movies.size();
+    }
+
+    /**
+     * Compress the posting lists that changes left uncompressed
+     */
+    private void compressPostings() {
+        this.movieTree.compressPostings();
+        this.studioTree.compressPostings();
+        this.ratingTree.compressPostings();
+    }
+
+    /**
+     * Main method that loads a movie data file, applies a change file to
+     * it and answers a query the way SearchEngine does, e.g.
+     * "java CatalogUpdater moviedata.txt changes.txt 0 tom-holland"
+     *
+     * @param args command line arguments
+     * @throws IOException If the change file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        BSTree<String> movieTree = new BSTree<>(true);
+        BSTree<String> studioTree = new BSTree<>(true);
+        BSTree<String> ratingTree = new BSTree<>(true);
+        CatalogUpdater updater = new CatalogUpdater(movieTree, studioTree, ratingTree);
+        if (!updater.populate(args[0])) {
+            System.err.println("Cannot read " + args[0]);
+            return;
+        }
+        long start = System.nanoTime();
+        int applied = updater.apply(args[1]);
+        System.err.printf("Applied %d changes in %.1f ms%n", applied,
+                (System.nanoTime() - start) / 1e6);
+        if (args.length > 3) {
+            int searchKind = Integer.parseInt(args[2]);
+            String query = String.join(" ", Arrays.copyOfRange(args, 3, args.length));
+            SearchEngine.searchMyQuery(searchKind == 0 ? movieTree
+                    : searchKind == 1 ? studioTree : ratingTree, query);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CatalogUpdaterTester {
+    BSTree<String> movieTree;
+    BSTree<String> studioTree;
+    BSTree<String> ratingTree;
+    CatalogUpdater myUpdater;
+    Map<String, List<String>> myMovies; // title to the lines of its record
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        myMovies = new LinkedHashMap<>();
+        for (int i = 0; i < 300; i++) {
+            myMovies.put("movie-" + i, Arrays.asList("actor-" + i % 7 + " actor-" + i % 11,
+                    "studio-" + i % 5, i % 3 == 0 ? "PG" : "R"));
+        }
+        movieTree = new BSTree<>(true);
+        studioTree = new BSTree<>(true);
+        ratingTree = new BSTree<>(true);
+        myUpdater = new CatalogUpdater(movieTree, studioTree, ratingTree);
+        assertTrue(myUpdater.populate(write(dataLines()).getPath()));
+    }
+
+    /**
+     * Return the lines of a movie data file holding myMovies
+     */
+    private List<String> dataLines() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, List<String>> movie : myMovies.entrySet()) {
+            lines.add(movie.getKey());
+            lines.addAll(movie.getValue());
+            lines.add("-");
+        }
+        return lines;
+    }
+
+    private static File write(List<String> lines) throws Exception {
+        File file = File.createTempFile("catalog", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), lines);
+        return file;
+    }
+
+    @org.junit.Test
+    public void apply() throws Exception {
+        List<String> changes = new ArrayList<>();
+        for (int i = 0; i < 300; i += 3) {
+            changes.addAll(Arrays.asList("remove movie-" + i, "-"));
+            myMovies.remove("movie-" + i); // every PG movie
+        }
+        changes.addAll(Arrays.asList("modify movie-1", "actor-1 new-actor", "studio-9", "R", "-"));
+        myMovies.put("movie-1", Arrays.asList("actor-1 new-actor", "studio-9", "R"));
+        changes.addAll(Arrays.asList("add movie-1000", "actor-0", "studio-0", "G", "-"));
+        myMovies.put("movie-1000", Arrays.asList("actor-0", "studio-0", "G"));
+        changes.addAll(Arrays.asList("add movie-0", "actor-0", "studio-0", "PG", "-"));
+        myMovies.put("movie-0", Arrays.asList("actor-0", "studio-0", "PG"));
+        // not applied
+        changes.addAll(Arrays.asList("add movie-2", "actor-0", "studio-0", "PG", "-"));
+        changes.addAll(Arrays.asList("remove movie-3", "-"));
+        changes.addAll(Arrays.asList("rename movie-4", "-"));
+        changes.addAll(Arrays.asList("modify movie-5", "actor-0", "-"));
+        changes.addAll(Arrays.asList("remove movie-4", "-"));
+        myMovies.remove("movie-4");
+        assertEquals(104, myUpdater.apply(write(changes).getPath()));
+        assertEquals(myMovies.size(), myUpdater.getMovieCount());
+
+        BSTree<String> rebuiltMovieTree = new BSTree<>(true);
+        BSTree<String> rebuiltStudioTree = new BSTree<>(true);
+        BSTree<String> rebuiltRatingTree = new BSTree<>(true);
+        assertTrue(SearchEngine.populateSearchTrees(rebuiltMovieTree, rebuiltStudioTree,
+                rebuiltRatingTree, write(dataLines()).getPath()));
+        assertEquals(TestTrees.sortedContents(rebuiltMovieTree), TestTrees.sortedContents(movieTree));
+        assertEquals(TestTrees.sortedContents(rebuiltStudioTree), TestTrees.sortedContents(studioTree));
+        assertEquals(TestTrees.sortedContents(rebuiltRatingTree), TestTrees.sortedContents(ratingTree));
+        assertEquals(1, studioTree.findPostings("studio-9").size());
+    }
+
+    @org.junit.Test
+    public void removeEverything() {
+        for (int i = 0; i < 300; i++) {
+            assertTrue(myUpdater.remove("movie-" + i));
+        }
+        assertFalse(myUpdater.remove("movie-0"));
+        assertEquals(0, movieTree.getSize());
+        assertEquals(0, studioTree.getSize());
+        assertEquals(0, ratingTree.getSize());
+    }
+}
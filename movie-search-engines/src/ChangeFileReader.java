@@ -0,0 +1,201 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming reader for catalog change files. A change file is appended to
+ * as the catalog changes, one change per entry, in the layout of a movie
+ * data file with the operation in front of the title:
+ *
+ * <pre>
+ * add iron-man-4           modify dolittle          remove sherlock-holmes
+ * robert-downey-jr ...     tom-holland ...          -
+ * marvel                   universal
+ * PG13                     PG
+ * -                        -
+ * </pre>
+ *
+ * A malformed entry is reported with its line number, after which reading
+ * continues with the next entry.
+ */
+public class ChangeFileReader implements Closeable {
+    static final String ADD = "add";
+    static final String MODIFY = "modify";
+    static final String REMOVE = "remove";
+    private static final int FIELDS = 4; // operation and movie, cast, studios, rating
+
+    private final BufferedReader reader;
+    private long lineNumber; // number of lines read so far
+
+    /**
+     * One change to the catalog
+     */
+    public static class Change {
+        private final String operation;
+        private final String title;
+        private final MovieRecord record;
+
+        /**
+         * A constructor that initializes a change.
+         *
+         * @param operation ADD, MODIFY or REMOVE
+         * @param title     Title of the movie
+         * @param record    New record of the movie, null for a removal
+         */
+        Change(String operation, String title, MovieRecord record) {
+            this.operation = operation;
+            this.title = title;
+            this.record = record;
+        }
+
+        /**
+         * Return the operation
+         *
+         * @return ADD, MODIFY or REMOVE
+         */
+        public String getOperation() {
+            return this.operation;
+        }
+
+        /**
+         * Return the title of the movie
+         *
+         * @return The title
+         */
+        public String getTitle() {
+            return this.title;
+        }
+
+        /**
+         * Return the new record of the movie
+         *
+         * @return The record, null for a removal
+         */
+        public MovieRecord getRecord() {
+            return this.record;
+        }
+    }
+
+    /**
+     * A constructor that reads changes from a character stream.
+     *
+     * @param in Stream to read from
+     */
+    public ChangeFileReader(Reader in) {
+        this.reader = new BufferedReader(in);
+        this.lineNumber = 0;
+    }
+
+    /**
+     * Open a change file
+     *
+     * @param fileName Name of the file
+     * @return A reader positioned at the first change
+     * @throws FileNotFoundException If the file cannot be opened
+     */
+    public static ChangeFileReader open(String fileName) throws FileNotFoundException {
+        return new ChangeFileReader(new InputStreamReader(
+                new FileInputStream(fileName), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read the next change. Blank lines between changes are skipped, and
+     * the separator after the last change may be left out.
+     *
+     * @return The next change, null at the end of the stream
+     * @throws MalformedRecordException If the change has an unknown
+     *         operation or the wrong number of lines; the reader is left at
+     *         the start of the next change
+     * @throws IOException If the stream cannot be read
+     */
+    public Change next() throws IOException {
+        String[] fields = new String[FIELDS];
+        int count = 0;
+        long start = 0;
+        String line;
+        while ((line = this.reader.readLine()) != null) {
+            this.lineNumber++;
+            line = line.trim();
+            if (line.equals(MovieRecordReader.SEPARATOR)) {
+                if (count == 0) {
+                    throw new MalformedRecordException(this.lineNumber, "separator without a change");
+                }
+                return toChange(fields, count, start);
+            }
+            if (count == 0 && line.isEmpty()) {
+                continue;
+            }
+            if (count == FIELDS) {
+                long extra = this.lineNumber;
+                skipChange();
+                throw new MalformedRecordException(extra,
+                        "extra line in the change starting on line " + start);
+            }
+            if (count == 0) {
+                start = this.lineNumber;
+            }
+            fields[count++] = line;
+        }
+        return count == 0 ? null : toChange(fields, count, start);
+    }
+
+    /**
+     * Skip the rest of the current change, up to and including its separator
+     *
+     * @throws IOException If the stream cannot be read
+     */
+    private void skipChange() throws IOException {
+        String line;
+        while ((line = this.reader.readLine()) != null) {
+            this.lineNumber++;
+            if (line.trim().equals(MovieRecordReader.SEPARATOR)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Build a change from its lines
+     *
+     * @param fields Operation and title line, then cast, studios and rating
+     * @param count  Number of lines
+     * @param start  Line the change starts on
+     * @return The change
+     * @throws MalformedRecordException If the operation is unknown or does
+     *         not match the number of lines
+     */
+    private static Change toChange(String[] fields, int count, long start)
+            throws MalformedRecordException {
+        int space = fields[0].indexOf(' ');
+        String operation = space < 0 ? fields[0] : fields[0].substring(0, space);
+        String title = space < 0 ? "" : fields[0].substring(space + 1).trim();
+        if (title.isEmpty()) {
+            throw new MalformedRecordException(start, "expected an operation and a title");
+        }
+        if (operation.equals(REMOVE) && count == 1) {
+            return new Change(REMOVE, title, null);
+        }
+        if ((operation.equals(ADD) || operation.equals(MODIFY)) && count == FIELDS) {
+            return new Change(operation, title, new MovieRecord(title,
+                    MovieRecordReader.tokens(fields[1]), MovieRecordReader.tokens(fields[2]), fields[3]));
+        }
+        if (operation.equals(ADD) || operation.equals(MODIFY) || operation.equals(REMOVE)) {
+            throw new MalformedRecordException(start, "wrong number of lines for " + operation);
+        }
+        throw new MalformedRecordException(start, "unknown operation " + operation);
+    }
+
+    /**
+     * Close the underlying stream
+     *
+     * @throws IOException If the stream cannot be closed
+     */
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
@@ -0,0 +1,367 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Immutable compressed form of a sorted, duplicate-free list of document
+ * ids. Sparse lists are stored as blocks of variable-byte encoded gaps with
+ * a skip entry per block; dense lists are stored as a bitmap. The smaller
+ * of the two encodings is chosen when a list is compressed.
+ */
+public class CompressedPostings {
+    static final int BLOCK_SIZE = 64; // ids per variable-byte block
+    private static final int ARRAY_OVERHEAD = 16; // approximate header of a Java array
+    private static final byte VARINT = 0; // encoding tags in snapshots
+    private static final byte BITMAP = 1;
+
+    private final int size; // number of document ids
+
+    // variable-byte encoding, null when the list is a bitmap
+    private final byte[] gaps; // gaps between ids, 7 bits per byte
+    private final int[] skipIds; // first id of every block
+    private final int[] skipOffsets; // offset in gaps of every block's second id
+
+    // bitmap encoding, null when the list is variable-byte encoded
+    private final long[] bitmap; // bit i set if base + i is in the list
+    private final int base; // id of bit 0
+
+    /**
+     * Constructor for a variable-byte encoded list
+     *
+     * @param size        Number of document ids
+     * @param gaps        Encoded gaps
+     * @param skipIds     First id of every block
+     * @param skipOffsets Offset of every block in gaps
+     */
+    private CompressedPostings(int size, byte[] gaps, int[] skipIds, int[] skipOffsets) {
+        this.size = size;
+        this.gaps = gaps;
+        this.skipIds = skipIds;
+        this.skipOffsets = skipOffsets;
+        this.bitmap = null;
+        this.base = 0;
+    }
+
+    /**
+     * Constructor for a bitmap encoded list
+     *
+     * @param size   Number of document ids
+     * @param bitmap Bits of the ids
+     * @param base   Id of bit 0
+     */
+    private CompressedPostings(int size, long[] bitmap, int base) {
+        this.size = size;
+        this.gaps = null;
+        this.skipIds = null;
+        this.skipOffsets = null;
+        this.bitmap = bitmap;
+        this.base = base;
+    }
+
+    /**
+     * Compress the first 'size' entries of a sorted, duplicate-free array,
+     * picking whichever encoding is smaller
+     *
+     * @param ids  Sorted document ids
+     * @param size Number of valid entries in ids
+     * @return The compressed list, null if neither encoding is smaller than
+     *         the plain int array
+     */
+    static CompressedPostings encode(int[] ids, int size) {
+        if (size == 0) {
+            return null;
+        }
+        int arrayBytes = ARRAY_OVERHEAD + 4 * size;
+        long bitmapBytes = ARRAY_OVERHEAD + 8L * (((long) ids[size - 1] - ids[0]) / 64 + 1);
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int gapBytes = 0;
+        for (int i = 1; i < size; i++) {
+            if (i % BLOCK_SIZE != 0) {
+                gapBytes += varintLength(ids[i] - ids[i - 1]);
+            }
+        }
+        long varintBytes = 3 * ARRAY_OVERHEAD + gapBytes + 8L * blocks;
+        if (bitmapBytes <= varintBytes && bitmapBytes < arrayBytes) {
+            long[] bitmap = new long[(int) ((bitmapBytes - ARRAY_OVERHEAD) / 8)];
+            for (int i = 0; i < size; i++) {
+                int bit = ids[i] - ids[0];
+                bitmap[bit >>> 6] |= 1L << bit;
+            }
+            return new CompressedPostings(size, bitmap, ids[0]);
+        }
+        if (varintBytes >= arrayBytes) {
+            return null;
+        }
+        byte[] gaps = new byte[gapBytes];
+        int[] skipIds = new int[blocks];
+        int[] skipOffsets = new int[blocks];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            if (i % BLOCK_SIZE == 0) {
+                skipIds[i / BLOCK_SIZE] = ids[i];
+                skipOffsets[i / BLOCK_SIZE] = offset;
+            } else {
+                int gap = ids[i] - ids[i - 1];
+                while ((gap & ~0x7F) != 0) {
+                    gaps[offset++] = (byte) (gap & 0x7F | 0x80);
+                    gap >>>= 7;
+                }
+                gaps[offset++] = (byte) gap;
+            }
+        }
+        return new CompressedPostings(size, gaps, skipIds, skipOffsets);
+    }
+
+    /**
+     * Return the number of bytes a gap takes in variable-byte encoding
+     *
+     * @param gap Positive gap between two ids
+     * @return Encoded length in bytes
+     */
+    private static int varintLength(int gap) {
+        int length = 1;
+        while ((gap & ~0x7F) != 0) {
+            gap >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Return the number of document ids
+     *
+     * @return The number of document ids
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Return whether the list is stored as a bitmap
+     *
+     * @return True for a bitmap, false for variable-byte blocks
+     */
+    public boolean isBitmap() {
+        return this.bitmap != null;
+    }
+
+    /**
+     * Return the approximate heap footprint of the encoded ids
+     *
+     * @return Bytes used by the arrays backing this list
+     */
+    public int sizeInBytes() {
+        if (isBitmap()) {
+            return ARRAY_OVERHEAD + 8 * this.bitmap.length;
+        }
+        return 3 * ARRAY_OVERHEAD + this.gaps.length + 8 * this.skipIds.length;
+    }
+
+    /**
+     * Return the document id at position 'index'. Costs at most one block
+     * decode for variable-byte lists and a scan of the bitmap otherwise.
+     *
+     * @param index Position in the list
+     * @return The document id at that position
+     * @throws IndexOutOfBoundsException If index is out of range
+     */
+    public int get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (isBitmap()) {
+            for (int w = 0; ; w++) {
+                int count = Long.bitCount(this.bitmap[w]);
+                if (index < count) {
+                    long word = this.bitmap[w];
+                    for (int i = 0; i < index; i++) {
+                        word &= word - 1;
+                    }
+                    return this.base + (w << 6) + Long.numberOfTrailingZeros(word);
+                }
+                index -= count;
+            }
+        }
+        Cursor cursor = new Cursor();
+        cursor.seekBlock(index / BLOCK_SIZE);
+        for (int i = index % BLOCK_SIZE; i > 0; i--) {
+            cursor.nextDoc();
+        }
+        return cursor.docId();
+    }
+
+    /**
+     * Decode all document ids
+     *
+     * @return Sorted array of the document ids
+     */
+    public int[] decode() {
+        int[] ids = new int[this.size];
+        PostingCursor cursor = cursor();
+        for (int i = 0; i < this.size; i++) {
+            ids[i] = cursor.nextDoc();
+        }
+        return ids;
+    }
+
+    /**
+     * Write the encoded list to an index snapshot
+     *
+     * @param out Snapshot being written
+     * @throws IOException If the snapshot cannot be written
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(this.size);
+        if (isBitmap()) {
+            out.writeByte(BITMAP);
+            out.writeInt(this.base);
+            IndexSnapshot.writeLongs(out, this.bitmap);
+        } else {
+            out.writeByte(VARINT);
+            IndexSnapshot.writeInts(out, this.skipIds);
+            IndexSnapshot.writeInts(out, this.skipOffsets);
+            out.writeInt(this.gaps.length);
+            out.write(this.gaps);
+        }
+    }
+
+    /**
+     * Read a list written by writeTo
+     *
+     * @param in Snapshot, positioned at the list
+     * @return The list
+     * @throws IOException If the list is not encoded correctly
+     */
+    static CompressedPostings readFrom(ByteBuffer in) throws IOException {
+        int size = in.getInt();
+        byte encoding = in.get();
+        if (encoding == BITMAP) {
+            int base = in.getInt();
+            return new CompressedPostings(size, IndexSnapshot.readLongs(in), base);
+        }
+        if (encoding != VARINT) {
+            throw new IOException("unknown posting encoding " + encoding);
+        }
+        int[] skipIds = IndexSnapshot.readInts(in);
+        int[] skipOffsets = IndexSnapshot.readInts(in);
+        byte[] gaps = new byte[in.getInt()];
+        in.get(gaps);
+        return new CompressedPostings(size, gaps, skipIds, skipOffsets);
+    }
+
+    /**
+     * Return a cursor positioned before the first document id
+     *
+     * @return A new cursor
+     */
+    public PostingCursor cursor() {
+        return isBitmap() ? new BitmapCursor() : new Cursor();
+    }
+
+    /**
+     * Cursor over variable-byte blocks. Uses the skip entries to jump over
+     * whole blocks when advancing.
+     */
+    private class Cursor implements PostingCursor {
+        int doc = -1; // current id
+        int index = -1; // position of the current id in the list
+        int offset; // position in gaps of the next gap
+
+        /**
+         * Position the cursor on the first id of a block
+         *
+         * @param block Block number
+         */
+        void seekBlock(int block) {
+            this.index = block * BLOCK_SIZE;
+            this.doc = skipIds[block];
+            this.offset = skipOffsets[block];
+        }
+
+        public int docId() {
+            return this.doc;
+        }
+
+        public int nextDoc() {
+            if (this.index + 1 >= size) {
+                this.index = size;
+                return this.doc = NO_MORE_DOCS;
+            }
+            if ((this.index + 1) % BLOCK_SIZE == 0) {
+                seekBlock((this.index + 1) / BLOCK_SIZE);
+                return this.doc;
+            }
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = gaps[this.offset++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            this.index++;
+            return this.doc += gap;
+        }
+
+        public int advance(int target) {
+            if (this.doc >= target) {
+                return this.doc;
+            }
+            int block = this.index < 0 ? 0 : this.index / BLOCK_SIZE;
+            if (block + 1 < skipIds.length && skipIds[block + 1] <= target) {
+                int found = Arrays.binarySearch(skipIds, block + 1, skipIds.length, target);
+                seekBlock(found >= 0 ? found : -found - 2);
+            } else if (this.index < 0) {
+                seekBlock(0);
+            }
+            while (this.doc < target) {
+                nextDoc();
+            }
+            return this.doc;
+        }
+    }
+
+    /**
+     * Cursor over a bitmap
+     */
+    private class BitmapCursor implements PostingCursor {
+        int doc = -1; // current id
+
+        public int docId() {
+            return this.doc;
+        }
+
+        public int nextDoc() {
+            return this.doc == NO_MORE_DOCS ? NO_MORE_DOCS : scanFrom(this.doc < 0 ? 0 : this.doc - base + 1);
+        }
+
+        public int advance(int target) {
+            if (this.doc >= target) {
+                return this.doc;
+            }
+            return scanFrom(Math.max(0, target - base));
+        }
+
+        /**
+         * Move to the first set bit at or after 'bit'
+         *
+         * @param bit Bit to start from
+         * @return The id of that bit, NO_MORE_DOCS if there is none
+         */
+        private int scanFrom(int bit) {
+            int w = bit >>> 6;
+            if (w >= bitmap.length) {
+                return this.doc = NO_MORE_DOCS;
+            }
+            long word = bitmap[w] & (-1L << bit);
+            while (word == 0) {
+                if (++w == bitmap.length) {
+                    return this.doc = NO_MORE_DOCS;
+                }
+                word = bitmap[w];
+            }
+            return this.doc = base + (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+    }
+}
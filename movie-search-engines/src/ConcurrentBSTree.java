@@ -0,0 +1,600 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * AVL tree of keys to posting lists that many threads can read while
+ * another thread inserts. Nodes never change once they are reachable from
+ * a published root: an insert copies the nodes on the path to its key,
+ * rebalances the copies and then publishes the new root with one volatile
+ * write. Readers take a Snapshot, which reads that root once and never
+ * locks, so a reader sees every insert up to some point and nothing after
+ * it. Writers are serialized by the tree's monitor.
+ *
+ * The document ids of a key are kept in an append-only array that the
+ * versions of its node share, each covering its own prefix of it. Since a
+ * new document gets the largest id so far, adding it to a key writes one
+ * slot past the end the readers know of and the array is only copied when
+ * full, so an insert costs amortised O(1) plus the O(log n) path copy.
+ * Only a document added again to a key later, under a smaller id, costs a
+ * copy of the key's ids. insertPostings adds one document to several keys
+ * with a single copy of each path and a single publication, so readers
+ * see a movie under all of its actors or none.
+ */
+public class ConcurrentBSTree<T extends Comparable<? super T>> implements SearchIndex<T> {
+    private static final int INITIAL_DOCUMENTS = 16;
+    private static final int INITIAL_POSTINGS = 4;
+
+    private volatile Snapshot current; // last published state
+    private final DocumentDictionary<T> dictionary = new Documents(); // reads the current state
+    // writer state, guarded by this
+    private final HashMap<T, Integer> ids = new HashMap<>(); // document to id
+    private Object[] documents = new Object[INITIAL_DOCUMENTS]; // id to document
+    private int documentCount;
+    private boolean added; // whether the last add created a node
+
+    /**
+     * Immutable node. Its subtree height is computed once on creation.
+     */
+    private static final class Node<T> {
+        final T key;
+        final int[] ids; // sorted document ids, shared with later versions of the node
+        final PostingList postings; // first postings.size() ids, null until the first document
+        final Node<T> left;
+        final Node<T> right;
+        final int height;
+
+        /**
+         * A constructor that initializes a node above two subtrees.
+         *
+         * @param key      Node's key
+         * @param ids      Ids of related documents, null for none
+         * @param count    Number of ids of the node
+         * @param left     Left subtree
+         * @param right    Right subtree
+         */
+        Node(T key, int[] ids, int count, Node<T> left, Node<T> right) {
+            this(key, ids, ids == null ? null : PostingList.prefixOf(ids, count), left, right);
+        }
+
+        /**
+         * A constructor that initializes a node above two subtrees.
+         *
+         * @param key      Node's key
+         * @param ids      Ids of related documents, null for none
+         * @param postings The node's prefix of ids, null for none
+         * @param left     Left subtree
+         * @param right    Right subtree
+         */
+        private Node(T key, int[] ids, PostingList postings, Node<T> left, Node<T> right) {
+            this.key = key;
+            this.ids = ids;
+            this.postings = postings;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+
+        /**
+         * Return a copy of this node over other subtrees
+         *
+         * @param newLeft  Left subtree of the copy
+         * @param newRight Right subtree of the copy
+         * @return The copy
+         */
+        Node<T> withChildren(Node<T> newLeft, Node<T> newRight) {
+            return new Node<>(this.key, this.ids, this.postings, newLeft, newRight);
+        }
+    }
+
+    /**
+     * State of the tree at one point in time. Every method reads only that
+     * state, so a snapshot may be used by any thread, for as long as
+     * needed, while the tree keeps changing.
+     */
+    public class Snapshot {
+        private final Node<T> root;
+        private final int size; // number of keys
+        private final Object[] documents; // valid up to documentCount
+        private final int documentCount;
+        private final int version; // number of states published before this one
+
+        /**
+         * A constructor that captures the state of the tree.
+         *
+         * @param root          Root of the tree
+         * @param size          Number of keys
+         * @param documents     Documents by id
+         * @param documentCount Number of valid documents
+         * @param version       Number of earlier states
+         */
+        Snapshot(Node<T> root, int size, Object[] documents, int documentCount, int version) {
+            this.root = root;
+            this.size = size;
+            this.documents = documents;
+            this.documentCount = documentCount;
+            this.version = version;
+        }
+
+        /**
+         * Return the node whose key is 'key'
+         *
+         * @param key Target key
+         * @return The node, null if there is none
+         * @throws NullPointerException If key is null
+         */
+        private Node<T> findNode(T key) {
+            if (key == null) {
+                throw new NullPointerException();
+            }
+            Node<T> cur = this.root;
+            while (cur != null) {
+                int value = key.compareTo(cur.key);
+                if (value == 0) {
+                    return cur;
+                }
+                cur = value < 0 ? cur.left : cur.right;
+            }
+            return null;
+        }
+
+        /**
+         * Return true if the 'key' is in the tree, false otherwise
+         *
+         * @param key To be searched
+         * @return True if the key is found, false otherwise
+         * @throws NullPointerException If key is null
+         */
+        public boolean findKey(T key) {
+            return findNode(key) != null;
+        }
+
+        /**
+         * Return the posting list of a key. The list must not be modified.
+         *
+         * @param key Target key
+         * @return Posting list of the key, null if the key is not found or
+         *         has no postings
+         * @throws NullPointerException If key is null
+         */
+        public PostingList findPostings(T key) {
+            Node<T> node = findNode(key);
+            return node == null ? null : node.postings;
+        }
+
+        /**
+         * Return the document with id 'id'
+         *
+         * @param id Document id
+         * @return The document
+         * @throws IndexOutOfBoundsException If no document has this id yet
+         */
+        @SuppressWarnings("unchecked")
+        public T getDocument(int id) {
+            if (id < 0 || id >= this.documentCount) {
+                throw new IndexOutOfBoundsException("document " + id);
+            }
+            return (T) this.documents[id];
+        }
+
+        /**
+         * Return the number of documents
+         *
+         * @return The number of documents
+         */
+        public int getDocumentCount() {
+            return this.documentCount;
+        }
+
+        /**
+         * Return the number of keys
+         *
+         * @return The number of keys
+         */
+        public int getSize() {
+            return this.size;
+        }
+
+        /**
+         * Return the height of the tree
+         *
+         * @return The height, -1 for an empty tree
+         */
+        public int findHeight() {
+            return height(this.root) - 1;
+        }
+
+        /**
+         * Return an iterator over the keys in order. It never fails, since
+         * the snapshot never changes.
+         *
+         * @return The iterator
+         */
+        public Iterator<T> iterator() {
+            ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+            for (Node<T> cur = this.root; cur != null; cur = cur.left) {
+                stack.push(cur);
+            }
+            return new Iterator<T>() {
+                public boolean hasNext() {
+                    return !stack.isEmpty();
+                }
+
+                public T next() {
+                    if (stack.isEmpty()) {
+                        throw new NoSuchElementException();
+                    }
+                    Node<T> node = stack.pop();
+                    for (Node<T> cur = node.right; cur != null; cur = cur.left) {
+                        stack.push(cur);
+                    }
+                    return node.key;
+                }
+            };
+        }
+    }
+
+    /**
+     * Dictionary of the documents of the current state. Ids never change,
+     * so results resolved through it stay valid as the tree grows.
+     */
+    private class Documents extends DocumentDictionary<T> {
+        /**
+         * Return the id of a document, assigning the next free id if the
+         * document has not been seen yet
+         *
+         * @param document Document to be interned
+         * @return The id of the document
+         * @throws NullPointerException If document is null
+         */
+        @Override
+        public int intern(T document) {
+            if (document == null) {
+                throw new NullPointerException();
+            }
+            synchronized (ConcurrentBSTree.this) {
+                Snapshot snapshot = current;
+                int id = ConcurrentBSTree.this.intern(document);
+                if (documentCount != snapshot.documentCount) {
+                    publish(snapshot.root, snapshot.size);
+                }
+                return id;
+            }
+        }
+
+        /**
+         * Return the id of a document without interning it
+         *
+         * @param document Document to look for
+         * @return The id of the document, -1 if it has not been seen
+         */
+        @Override
+        public int find(T document) {
+            synchronized (ConcurrentBSTree.this) {
+                Integer id = ids.get(document);
+                return id == null ? -1 : id;
+            }
+        }
+
+        /**
+         * Return the document with id 'id'
+         *
+         * @param id Document id
+         * @return The document
+         * @throws IndexOutOfBoundsException If no document has this id
+         */
+        @Override
+        public T get(int id) {
+            return current.getDocument(id);
+        }
+
+        /**
+         * Return the number of documents interned
+         *
+         * @return The number of documents
+         */
+        @Override
+        public int size() {
+            return current.getDocumentCount();
+        }
+    }
+
+    /**
+     * 0-arg constructor that initializes an empty tree
+     */
+    public ConcurrentBSTree() {
+        this.current = new Snapshot(null, 0, this.documents, 0, 0);
+    }
+
+    /**
+     * Return the current state of the tree. Never blocks.
+     *
+     * @return The last published snapshot
+     */
+    public Snapshot snapshot() {
+        return this.current;
+    }
+
+    /**
+     * Return the posting list of a key in the current state. The list must
+     * not be modified.
+     *
+     * @param key Target key
+     * @return Posting list of the key, null if the key is not found or has
+     *         no postings
+     * @throws NullPointerException If key is null
+     */
+    public PostingList findPostings(T key) {
+        return this.current.findPostings(key);
+    }
+
+    /**
+     * Return true if the 'key' is in the current state, false otherwise
+     *
+     * @param key To be searched
+     * @return True if the key is found, false otherwise
+     * @throws NullPointerException If key is null
+     */
+    public boolean findKey(T key) {
+        return this.current.findKey(key);
+    }
+
+    /**
+     * Return the number of keys in the current state
+     *
+     * @return The number of keys
+     */
+    public int getSize() {
+        return this.current.getSize();
+    }
+
+    /**
+     * Return the dictionary of the documents, which maps the document ids
+     * in the posting lists back to documents
+     *
+     * @return The document dictionary
+     */
+    public DocumentDictionary<T> getDocuments() {
+        return this.dictionary;
+    }
+
+    /**
+     * Return a number that changes whenever the keys or postings change
+     *
+     * @return The current version
+     */
+    public int getVersion() {
+        return this.current.version;
+    }
+
+    /**
+     * Leave the posting lists as they are: inserts append to them in
+     * place, which a compressed list does not allow
+     *
+     * @return 0, no list is compressed
+     */
+    public int compressPostings() {
+        return 0;
+    }
+
+    /**
+     * Return an iterator over the keys of the current state, in order
+     *
+     * @return Iterator over the keys
+     */
+    public Iterator<T> iterator() {
+        return this.current.iterator();
+    }
+
+    /**
+     * Insert a key
+     *
+     * @param key Key to be inserted
+     * @return True if the key was inserted, false if it was already there
+     * @throws NullPointerException If key is null
+     */
+    public synchronized boolean insert(T key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        Snapshot snapshot = this.current;
+        Node<T> root = add(snapshot.root, key, -1);
+        if (root == snapshot.root) {
+            return false;
+        }
+        publish(root, snapshot.size + 1);
+        return true;
+    }
+
+    /**
+     * Add 'data' to the posting list of 'key', inserting the key first if
+     * it is not in the tree yet
+     *
+     * @param key  Target key
+     * @param data Document to be added to key's posting list
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException If either key or data is null
+     */
+    public boolean insertPosting(T key, T data) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return insertPostings(data, Arrays.asList(key)) > 0;
+    }
+
+    /**
+     * Add 'data' to the posting lists of several keys, inserting the keys
+     * that are not in the tree yet. Readers see the document under all of
+     * the keys or under none of them.
+     *
+     * @param data Document to be added
+     * @param keys Keys the document is related to
+     * @return Number of keys newly inserted
+     * @throws NullPointerException If data or a key is null
+     */
+    public synchronized int insertPostings(T data, Iterable<T> keys) {
+        if (data == null) {
+            throw new NullPointerException();
+        }
+        for (T key : keys) {
+            if (key == null) {
+                throw new NullPointerException();
+            }
+        }
+        Snapshot snapshot = this.current;
+        int id = intern(data);
+        Node<T> root = snapshot.root;
+        int insertedKeys = 0;
+        for (T key : keys) {
+            this.added = false;
+            root = add(root, key, id);
+            if (this.added) {
+                insertedKeys++;
+            }
+        }
+        if (root != snapshot.root || this.documentCount != snapshot.documentCount) {
+            publish(root, snapshot.size + insertedKeys);
+        }
+        return insertedKeys;
+    }
+
+    /**
+     * Return the id of a document, assigning the next free id if it is new
+     *
+     * @param document Document to be interned
+     * @return The id of the document
+     */
+    private int intern(T document) {
+        Integer id = this.ids.get(document);
+        if (id != null) {
+            return id;
+        }
+        if (this.documentCount == this.documents.length) {
+            // readers keep the old array, whose first documentCount entries never change
+            this.documents = Arrays.copyOf(this.documents, this.documentCount * 2);
+        }
+        this.documents[this.documentCount] = document;
+        this.ids.put(document, this.documentCount);
+        return this.documentCount++;
+    }
+
+    /**
+     * Publish a new state to readers
+     *
+     * @param root New root
+     * @param size Number of keys under root
+     */
+    private void publish(Node<T> root, int size) {
+        this.current = new Snapshot(root, size, this.documents, this.documentCount,
+                this.current.version + 1);
+    }
+
+    /**
+     * Return a subtree with 'key' added, and 'id' added to its postings,
+     * copying only the nodes that change. Returns the subtree itself if
+     * nothing changes.
+     *
+     * @param node Root of the subtree
+     * @param key  Key to add
+     * @param id   Document id to add, -1 for none
+     * @return Root of the new subtree
+     */
+    private Node<T> add(Node<T> node, T key, int id) {
+        if (node == null) {
+            this.added = true;
+            node = new Node<>(key, null, 0, null, null);
+            return id < 0 ? node : add(node, key, id);
+        }
+        int value = key.compareTo(node.key);
+        if (value == 0) {
+            if (id < 0) {
+                return node;
+            }
+            int count = node.ids == null ? 0 : node.postings.size();
+            if (count > 0 && node.ids[count - 1] >= id) {
+                int pos = Arrays.binarySearch(node.ids, 0, count, id);
+                if (pos >= 0) {
+                    return node;
+                }
+                // not an append: copy, so readers of node never see the move
+                pos = -pos - 1;
+                int[] ids = new int[Math.max(INITIAL_POSTINGS, count * 2)];
+                System.arraycopy(node.ids, 0, ids, 0, pos);
+                ids[pos] = id;
+                System.arraycopy(node.ids, pos, ids, pos + 1, count - pos);
+                return new Node<>(key, ids, count + 1, node.left, node.right);
+            }
+            // node is the newest version, so no other one covers slot count
+            int[] ids = node.ids == null ? new int[INITIAL_POSTINGS]
+                    : count < node.ids.length ? node.ids : Arrays.copyOf(node.ids, count * 2);
+            ids[count] = id;
+            return new Node<>(key, ids, count + 1, node.left, node.right);
+        }
+        if (value < 0) {
+            Node<T> left = add(node.left, key, id);
+            return left == node.left ? node : balance(node.withChildren(left, node.right));
+        }
+        Node<T> right = add(node.right, key, id);
+        return right == node.right ? node : balance(node.withChildren(node.left, right));
+    }
+
+    /**
+     * Return the height of a subtree
+     *
+     * @param node Root of the subtree
+     * @return The height, counting nodes, 0 for an empty subtree
+     */
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Restore the AVL property of a new node whose subtrees are balanced
+     * and differ in height by at most 2
+     *
+     * @param node New node
+     * @return Root of the balanced subtree
+     */
+    private static <T> Node<T> balance(Node<T> node) {
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            Node<T> left = node.left;
+            if (height(left.left) < height(left.right)) {
+                left = rotateLeft(left);
+            }
+            return rotateRight(node.withChildren(left, node.right));
+        }
+        if (balance < -1) {
+            Node<T> right = node.right;
+            if (height(right.right) < height(right.left)) {
+                right = rotateRight(right);
+            }
+            return rotateLeft(node.withChildren(node.left, right));
+        }
+        return node;
+    }
+
+    /**
+     * Rotate a subtree right, copying the nodes that move
+     *
+     * @param node Root of the subtree, with a left child
+     * @return New root of the subtree
+     */
+    private static <T> Node<T> rotateRight(Node<T> node) {
+        Node<T> left = node.left;
+        return left.withChildren(left.left, node.withChildren(left.right, node.right));
+    }
+
+    /**
+     * Rotate a subtree left, copying the nodes that move
+     *
+     * @param node Root of the subtree, with a right child
+     * @return New root of the subtree
+     */
+    private static <T> Node<T> rotateLeft(Node<T> node) {
+        Node<T> right = node.right;
+        return right.withChildren(node.withChildren(node.left, right.left), right.right);
+    }
+}
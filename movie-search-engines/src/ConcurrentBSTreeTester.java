@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentBSTreeTester {
+    static final int ACTORS = 50;
+    static final int MOVIES = 20000;
+
+    ConcurrentBSTree<String> myTree;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        myTree = new ConcurrentBSTree<>();
+    }
+
+    /**
+     * Return the actors of movie i: two that depend on i and one shared
+     */
+    private static List<String> cast(int i) {
+        return Arrays.asList("actor-" + i % ACTORS, "actor-" + (i * 7 + 3) % ACTORS, "everyone");
+    }
+
+    @org.junit.Test
+    public void insert() {
+        assertTrue(myTree.insert("b"));
+        assertFalse(myTree.insert("b"));
+        assertFalse(myTree.insertPosting("b", "movie-0"));
+        assertTrue(myTree.insertPosting("a", "movie-1"));
+        assertEquals(1, myTree.insertPostings("movie-1", Arrays.asList("a", "b", "c")));
+        ConcurrentBSTree<String>.Snapshot snapshot = myTree.snapshot();
+        assertEquals(3, snapshot.getSize());
+        assertEquals(2, snapshot.getDocumentCount());
+        assertEquals("[0, 1]", myTree.findPostings("b").toString());
+        assertEquals("movie-1", snapshot.getDocument(myTree.findPostings("c").get(0)));
+        assertNull(myTree.findPostings("d"));
+        assertFalse(snapshot.findKey("d"));
+        // a snapshot keeps its state
+        myTree.insertPosting("d", "movie-2");
+        assertFalse(snapshot.findKey("d"));
+        assertEquals(2, snapshot.getDocumentCount());
+        assertTrue(myTree.snapshot().findKey("d"));
+        assertEquals(3, myTree.snapshot().getDocumentCount());
+    }
+
+    @org.junit.Test
+    public void appendKeepsSnapshots() {
+        for (int i = 0; i < 100; i++) {
+            myTree.insertPosting("a", "movie-" + i);
+        }
+        ConcurrentBSTree<String>.Snapshot snapshot = myTree.snapshot();
+        PostingList before = snapshot.findPostings("a");
+        myTree.insertPosting("a", "movie-100"); // appended after the snapshot's ids
+        myTree.insertPosting("b", "movie-101");
+        myTree.insertPosting("b", "movie-50"); // an earlier id is inserted, not appended
+        assertEquals(100, before.size());
+        assertEquals(100, snapshot.findPostings("a").size());
+        assertEquals(99, before.get(99));
+        assertEquals(101, myTree.findPostings("a").size());
+        assertEquals("[50, 101]", myTree.findPostings("b").toString());
+        assertNotEquals(snapshot.getSize(), myTree.getSize());
+    }
+
+    @org.junit.Test
+    public void searchIndex() {
+        BSTree<String> expected = new BSTree<>(true);
+        for (int i = 0; i < 300; i++) {
+            for (String actor : cast(i)) {
+                expected.insertPosting(actor, "movie-" + i);
+                myTree.insertPosting(actor, "movie-" + i);
+            }
+        }
+        int version = myTree.getVersion();
+        assertEquals(expected.getSize(), myTree.getSize());
+        assertEquals(expected.getDocuments().size(), myTree.getDocuments().size());
+        assertEquals(7, myTree.getDocuments().find("movie-7"));
+        for (String query : new String[] {"actor-1", "actor-1 actor-8", "everyone nobody"}) {
+            assertEquals(query, SearchEngine.query(expected, query).getIntersectionDocuments(),
+                    SearchEngine.query(myTree, query).getIntersectionDocuments());
+        }
+        assertEquals(version, myTree.getVersion());
+        myTree.insertPosting("actor-1", "movie-300");
+        assertNotEquals(version, myTree.getVersion());
+    }
+
+    @org.junit.Test
+    public void balanced() {
+        for (int i = 0; i < 4096; i++) {
+            myTree.insert(String.format("key-%05d", i)); // sorted, worst case unbalanced
+        }
+        ConcurrentBSTree<String>.Snapshot snapshot = myTree.snapshot();
+        assertEquals(4096, snapshot.getSize());
+        assertTrue(snapshot.findHeight() <= 1.44 * Math.log(4096) / Math.log(2));
+        Iterator<String> keys = snapshot.iterator();
+        for (int i = 0; i < 4096; i++) {
+            assertEquals(String.format("key-%05d", i), keys.next());
+        }
+        assertFalse(keys.hasNext());
+        assertFalse(new ConcurrentBSTree<String>().snapshot().iterator().hasNext());
+    }
+
+    /**
+     * Check a snapshot taken while movies are inserted: every movie it has
+     * is under all of its actors, and the actors have no other postings
+     */
+    private static void checkSnapshot(ConcurrentBSTree<String>.Snapshot snapshot) {
+        int movies = snapshot.getDocumentCount();
+        PostingList everyone = snapshot.findPostings("everyone");
+        assertEquals(movies, everyone == null ? 0 : everyone.size());
+        int postings = 0;
+        for (int a = 0; a < ACTORS; a++) {
+            PostingList list = snapshot.findPostings("actor-" + a);
+            if (list == null) {
+                continue;
+            }
+            int previous = -1;
+            PostingCursor cursor = list.cursor();
+            for (int id = cursor.nextDoc(); id != PostingCursor.NO_MORE_DOCS; id = cursor.nextDoc()) {
+                assertTrue(id > previous && id < movies);
+                int movie = Integer.parseInt(snapshot.getDocument(id).substring(6));
+                assertTrue(cast(movie).contains("actor-" + a));
+                previous = id;
+                postings++;
+            }
+        }
+        for (int id = 0; id < movies; id++) {
+            int movie = Integer.parseInt(snapshot.getDocument(id).substring(6));
+            postings -= new HashSet<>(cast(movie)).size() - 1;
+        }
+        assertEquals(0, postings);
+    }
+
+    @org.junit.Test
+    public void stress() throws Exception {
+        int writers = 2;
+        int readers = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(writers + readers);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<Integer>> readerResults = new ArrayList<>();
+            for (int r = 0; r < readers; r++) {
+                readerResults.add(pool.submit(() -> {
+                    Random random = new Random();
+                    int checks = 0;
+                    int lastCount = 0;
+                    while (writing.get() || checks == 0) {
+                        ConcurrentBSTree<String>.Snapshot snapshot = myTree.snapshot();
+                        assertTrue(snapshot.getDocumentCount() >= lastCount);
+                        lastCount = snapshot.getDocumentCount();
+                        if (random.nextInt(16) == 0) {
+                            checkSnapshot(snapshot);
+                        } else {
+                            PostingList list = myTree.findPostings("actor-" + random.nextInt(ACTORS));
+                            assertTrue(list == null || list.size() <= MOVIES);
+                        }
+                        checks++;
+                    }
+                    return checks;
+                }));
+            }
+            List<Future<?>> writerResults = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int first = w;
+                writerResults.add(pool.submit(() -> {
+                    for (int i = first; i < MOVIES; i += writers) {
+                        myTree.insertPostings("movie-" + i, cast(i));
+                    }
+                }));
+            }
+            for (Future<?> writer : writerResults) {
+                writer.get();
+            }
+            writing.set(false);
+            for (Future<Integer> reader : readerResults) {
+                assertTrue(reader.get() > 0);
+            }
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        // no update was lost
+        ConcurrentBSTree<String>.Snapshot snapshot = myTree.snapshot();
+        assertEquals(MOVIES, snapshot.getDocumentCount());
+        assertEquals(ACTORS + 1, snapshot.getSize());
+        checkSnapshot(snapshot);
+    }
+
+    @org.junit.Test (expected = NullPointerException.class)
+    public void insertNullKey() throws NullPointerException {
+        myTree.insertPostings("movie-0", Arrays.asList("a", null));
+    }
+}
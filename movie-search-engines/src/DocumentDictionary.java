@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Dictionary that interns documents and hands out dense int ids for them,
+ * in the order they were first seen.
+ */
+public class DocumentDictionary<T> {
+    private final HashMap<T, Integer> ids; // document to id
+    private final ArrayList<T> documents; // id to document
+
+    /**
+     * 0-arg constructor that initializes an empty dictionary
+     */
+    public DocumentDictionary() {
+        this.ids = new HashMap<>();
+        this.documents = new ArrayList<>();
+    }
+
+    /**
+     * Return the id of a document, assigning the next free id if the
+     * document has not been seen yet
+     *
+     * @param document Document to be interned
+     * @return The id of the document
+     * @throws NullPointerException If document is null
+     */
+    public int intern(T document) {
+        if (document == null) {
+            throw new NullPointerException();
+        }
+        Integer id = this.ids.get(document);
+        if (id == null) {
+            id = this.documents.size();
+            this.ids.put(document, id);
+            this.documents.add(document);
+        }
+        return id;
+    }
+
+    /**
+     * Return the id of a document without interning it
+     *
+     * @param document Document to look for
+     * @return The id of the document, -1 if it has not been seen
+     */
+    public int find(T document) {
+        Integer id = this.ids.get(document);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Return the document with id 'id'
+     *
+     * @param id Document id
+     * @return The document
+     * @throws IndexOutOfBoundsException If no document has this id
+     */
+    public T get(int id) {
+        return this.documents.get(id);
+    }
+
+    /**
+     * Return the number of documents interned
+     *
+     * @return The number of documents
+     */
+    public int size() {
+        return this.documents.size();
+    }
+}
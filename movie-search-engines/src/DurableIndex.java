@@ -0,0 +1,210 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Movie, studio and rating trees that survive a crash. Every change is
+ * applied to the trees and appended to a WriteAheadLog, and is only
+ * acknowledged, by returning, once the log has it on disk. Opening loads
+ * the latest IndexSnapshot and replays the log on top of it. Once the log
+ * outgrows a threshold, a checkpoint writes a new snapshot and empties the
+ * log; a crash between the two only replays entries the snapshot already
+ * holds, which changes nothing.
+ *
+ * Changes made by several threads are applied one at a time but share
+ * their fsyncs through the log's group commit. Reading the trees while
+ * changes are made needs synchronizing on the index.
+ */
+public class DurableIndex implements Closeable {
+    static final int MOVIE_TREE = 0;
+    static final int STUDIO_TREE = 1;
+    static final int RATING_TREE = 2;
+    static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    private final List<BSTree<String>> trees; // movie, studio and rating trees
+    private final String snapshotFile;
+    private final WriteAheadLog log;
+    private final long checkpointBytes; // log size that triggers a checkpoint
+
+    /**
+     * A constructor that logs changes to recovered trees.
+     *
+     * @param trees           Movie, studio and rating trees
+     * @param snapshotFile    Name of the snapshot file
+     * @param log             Log opened after the trees were recovered
+     * @param checkpointBytes Log size that triggers a checkpoint
+     */
+    private DurableIndex(List<BSTree<String>> trees, String snapshotFile, WriteAheadLog log,
+            long checkpointBytes) {
+        this.trees = trees;
+        this.snapshotFile = snapshotFile;
+        this.log = log;
+        this.checkpointBytes = checkpointBytes;
+    }
+
+    /**
+     * Open an index with the default checkpoint threshold
+     *
+     * @param snapshotFile Name of the snapshot file, which need not exist
+     * @param logFile      Name of the log file, which need not exist
+     * @return The recovered index
+     * @throws IOException If the snapshot or the log cannot be read
+     */
+    public static DurableIndex open(String snapshotFile, String logFile) throws IOException {
+        return open(snapshotFile, logFile, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Open an index, recovering its trees from the snapshot and the log
+     *
+     * @param snapshotFile    Name of the snapshot file, which need not exist
+     * @param logFile         Name of the log file, which need not exist
+     * @param checkpointBytes Log size that triggers a checkpoint
+     * @return The recovered index
+     * @throws IOException If the snapshot or the log cannot be read
+     * @throws IllegalArgumentException If checkpointBytes is not positive
+     */
+    public static DurableIndex open(String snapshotFile, String logFile, long checkpointBytes)
+            throws IOException {
+        if (checkpointBytes <= 0) {
+            throw new IllegalArgumentException();
+        }
+        List<BSTree<String>> trees = Arrays.asList(new BSTree<>(true), new BSTree<>(true),
+                new BSTree<>(true));
+        if (Files.exists(Paths.get(snapshotFile))) {
+            IndexSnapshot.open(trees.get(0), trees.get(1), trees.get(2), snapshotFile);
+        }
+        WriteAheadLog.replay(logFile, trees);
+        for (BSTree<String> tree : trees) {
+            tree.compressPostings();
+        }
+        return new DurableIndex(trees, snapshotFile, WriteAheadLog.open(logFile), checkpointBytes);
+    }
+
+    /**
+     * Add a movie's title to the posting lists of its actors and studios
+     * and its rating to those of its actors, as SearchEngine does when
+     * populating the trees. The movie is recovered whole or not at all.
+     *
+     * @param record Movie to be added
+     * @throws IOException If the change cannot be logged
+     */
+    public void add(MovieRecord record) throws IOException {
+        List<WriteAheadLog.Operation> operations = new ArrayList<>();
+        for (String actor : record.getCast()) {
+            operations.add(new WriteAheadLog.Operation(WriteAheadLog.INSERT_POSTING,
+                    MOVIE_TREE, actor, record.getTitle()));
+        }
+        for (String studio : record.getStudios()) {
+            operations.add(new WriteAheadLog.Operation(WriteAheadLog.INSERT_POSTING,
+                    STUDIO_TREE, studio, record.getTitle()));
+        }
+        for (String actor : record.getCast()) {
+            operations.add(new WriteAheadLog.Operation(WriteAheadLog.INSERT_POSTING,
+                    RATING_TREE, actor, record.getRating()));
+        }
+        apply(operations);
+    }
+
+    /**
+     * Add a document to the posting list of a key
+     *
+     * @param tree 0 movie, 1 studio, 2 rating
+     * @param key  Target key
+     * @param data Document to be added
+     * @throws IOException If the change cannot be logged
+     */
+    public void insertPosting(int tree, String key, String data) throws IOException {
+        apply(Collections.singletonList(new WriteAheadLog.Operation(
+                WriteAheadLog.INSERT_POSTING, tree, key, data)));
+    }
+
+    /**
+     * Remove a document from the posting list of a key, removing the key
+     * once it has no postings
+     *
+     * @param tree 0 movie, 1 studio, 2 rating
+     * @param key  Target key
+     * @param data Document to be removed
+     * @throws IOException If the change cannot be logged
+     */
+    public void removePosting(int tree, String key, String data) throws IOException {
+        apply(Collections.singletonList(new WriteAheadLog.Operation(
+                WriteAheadLog.REMOVE_POSTING, tree, key, data)));
+    }
+
+    /**
+     * Apply the operations of one change and wait until they are durable
+     *
+     * @param operations Operations of the change
+     * @throws IOException If the change cannot be logged
+     */
+    private void apply(List<WriteAheadLog.Operation> operations) throws IOException {
+        long sequence;
+        synchronized (this) {
+            // the log must hold changes in the order they reach the trees
+            for (WriteAheadLog.Operation operation : operations) {
+                operation.applyTo(this.trees);
+            }
+            sequence = this.log.append(operations);
+        }
+        this.log.commit(sequence);
+        if (this.log.size() >= this.checkpointBytes) {
+            synchronized (this) {
+                if (this.log.size() >= this.checkpointBytes) {
+                    checkpoint();
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a snapshot of the trees and empty the log
+     *
+     * @throws IOException If the snapshot cannot be written or the log
+     *         cannot be emptied
+     */
+    public synchronized void checkpoint() throws IOException {
+        this.log.commitAll();
+        for (BSTree<String> tree : this.trees) {
+            tree.compressPostings();
+        }
+        IndexSnapshot.write(this.trees.get(0), this.trees.get(1), this.trees.get(2),
+                this.snapshotFile);
+        this.log.reset();
+    }
+
+    /**
+     * Return the size of the log
+     *
+     * @return The size in bytes
+     */
+    public long getLogSize() {
+        return this.log.size();
+    }
+
+    /**
+     * Return one of the trees
+     *
+     * @param tree 0 movie, 1 studio, 2 rating
+     * @return The tree
+     */
+    public BSTree<String> getTree(int tree) {
+        return this.trees.get(tree);
+    }
+
+    /**
+     * Commit every change and close the log
+     *
+     * @throws IOException If the log cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.log.close();
+    }
+}
@@ -0,0 +1,244 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class DurableIndexTester {
+    static final int THREADS = 4;
+    static final int KILL_AFTER = 1500; // acknowledged movies before the ingest is killed
+    static final String[] RATINGS = {"G", "PG", "R"};
+
+    Path myDir;
+    String mySnapshot;
+    String myLog;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        myDir = Files.createTempDirectory("durable");
+        myDir.toFile().deleteOnExit();
+        mySnapshot = myDir.resolve("index.snapshot").toString();
+        myLog = myDir.resolve("index.log").toString();
+    }
+
+    @org.junit.After
+    public void tearDown() throws Exception {
+        for (File file : myDir.toFile().listFiles()) {
+            file.delete();
+        }
+        myDir.toFile().delete();
+    }
+
+    /**
+     * Return movie i: two actors that depend on i and one shared
+     */
+    private static MovieRecord movie(int i) {
+        return new MovieRecord("movie-" + i,
+                new String[] {"actor-" + i % 50, "actor-" + (i * 7 + 3) % 50, "everyone"},
+                new String[] {"studio-" + i % 5}, RATINGS[i % 3]);
+    }
+
+    /**
+     * Check that an index holds exactly some movies
+     */
+    private static void assertMovies(Iterable<Integer> movies, DurableIndex index) {
+        List<BSTree<String>> expected = Arrays.asList(new BSTree<>(true), new BSTree<>(true),
+                new BSTree<>(true));
+        for (int i : movies) {
+            MovieRecord record = movie(i);
+            SearchEngine.makeTreeHelper(expected.get(0), record.getCast(), record.getTitle());
+            SearchEngine.makeTreeHelper(expected.get(1), record.getStudios(), record.getTitle());
+            SearchEngine.makeTreeHelper(expected.get(2), record.getCast(), record.getRating());
+        }
+        for (int tree = 0; tree < 3; tree++) {
+            assertEquals(TestTrees.sortedContents(expected.get(tree)), TestTrees.sortedContents(index.getTree(tree)));
+        }
+    }
+
+    /**
+     * Return the movies of an index, by the postings of the shared actor
+     */
+    private static TreeSet<Integer> movies(DurableIndex index) {
+        TreeSet<Integer> movies = new TreeSet<>();
+        BSTree<String> tree = index.getTree(DurableIndex.MOVIE_TREE);
+        PostingList everyone = tree.findPostings("everyone");
+        if (everyone != null) {
+            for (int id : everyone.toArray()) {
+                movies.add(Integer.parseInt(tree.getDocuments().get(id).substring(6)));
+            }
+        }
+        return movies;
+    }
+
+    @org.junit.Test
+    public void recover() throws Exception {
+        TreeSet<Integer> added = new TreeSet<>();
+        try (DurableIndex index = DurableIndex.open(mySnapshot, myLog)) {
+            for (int i = 0; i < 100; i++) {
+                index.add(movie(i));
+                added.add(i);
+            }
+            index.removePosting(DurableIndex.STUDIO_TREE, "studio-3", "movie-3");
+            index.insertPosting(DurableIndex.STUDIO_TREE, "studio-9", "movie-3");
+        }
+        assertFalse(Files.exists(Paths.get(mySnapshot)));
+        try (DurableIndex index = DurableIndex.open(mySnapshot, myLog)) {
+            assertEquals(added, movies(index));
+            BSTree<String> studioTree = index.getTree(DurableIndex.STUDIO_TREE);
+            assertEquals(19, studioTree.findPostings("studio-3").size());
+            assertEquals(1, studioTree.findPostings("studio-9").size());
+            index.removePosting(DurableIndex.STUDIO_TREE, "studio-9", "movie-3");
+            index.insertPosting(DurableIndex.STUDIO_TREE, "studio-3", "movie-3");
+        }
+        try (DurableIndex index = DurableIndex.open(mySnapshot, myLog)) {
+            assertMovies(added, index);
+        }
+    }
+
+    @org.junit.Test
+    public void checkpoint() throws Exception {
+        TreeSet<Integer> added = new TreeSet<>();
+        try (DurableIndex index = DurableIndex.open(mySnapshot, myLog, 4096)) {
+            for (int i = 0; i < 200; i++) {
+                index.add(movie(i));
+                added.add(i);
+                assertTrue(index.getLogSize() < 4096);
+            }
+        }
+        assertTrue(Files.exists(Paths.get(mySnapshot)));
+        assertTrue(Files.size(Paths.get(myLog)) < 4096);
+        try (DurableIndex index = DurableIndex.open(mySnapshot, myLog, 4096)) {
+            assertMovies(added, index);
+            // replaying entries the snapshot already holds changes nothing
+            index.add(movie(200));
+            added.add(200);
+            Files.copy(Paths.get(myLog), myDir.resolve("old.log"));
+            index.checkpoint();
+            assertEquals(0, index.getLogSize());
+        }
+        Files.copy(myDir.resolve("old.log"), Paths.get(myLog),
+                StandardCopyOption.REPLACE_EXISTING);
+        try (DurableIndex index = DurableIndex.open(mySnapshot, myLog)) {
+            assertMovies(added, index);
+        }
+    }
+
+    @org.junit.Test
+    public void tornEntry() throws Exception {
+        try (DurableIndex index = DurableIndex.open(mySnapshot, myLog)) {
+            for (int i = 0; i < 10; i++) {
+                index.add(movie(i));
+            }
+        }
+        // cut the last entry short, as a crash in the middle of its write would
+        try (RandomAccessFile file = new RandomAccessFile(myLog, "rw")) {
+            file.setLength(file.length() - 5);
+        }
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 9; i++) {
+            expected.add(i);
+        }
+        try (DurableIndex index = DurableIndex.open(mySnapshot, myLog)) {
+            assertMovies(expected, index);
+            index.add(movie(10));
+            expected.add(10);
+        }
+        // a corrupt byte ends the log at its entry
+        try (RandomAccessFile file = new RandomAccessFile(myLog, "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 1);
+        }
+        expected.remove(10);
+        try (DurableIndex index = DurableIndex.open(mySnapshot, myLog)) {
+            assertMovies(expected, index);
+        }
+    }
+
+    @org.junit.Test
+    public void killMidIngest() throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "DurableIndexTester", mySnapshot, myLog).redirectErrorStream(true).start();
+        // the last movie each thread had acknowledged when the ingest was killed
+        int[] acknowledged = new int[THREADS];
+        Arrays.fill(acknowledged, -1);
+        int count = 0;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(child.getInputStream()))) {
+            String line;
+            while (count < KILL_AFTER && (line = in.readLine()) != null) {
+                int movie = Integer.parseInt(line.trim());
+                acknowledged[movie % THREADS] = movie;
+                count++;
+            }
+        } finally {
+            // also when the child printed something else, or it would ingest forever
+            child.destroyForcibly();
+            child.waitFor();
+        }
+        assertEquals(KILL_AFTER, count);
+
+        try (DurableIndex index = DurableIndex.open(mySnapshot, myLog)) {
+            TreeSet<Integer> recovered = movies(index);
+            // each thread waited for every movie before adding its next one, so
+            // the movies of each thread are recovered up to one past its last
+            // acknowledged movie or further
+            for (int t = 0; t < THREADS; t++) {
+                int i = t;
+                while (recovered.contains(i)) {
+                    i += THREADS;
+                }
+                assertTrue(i > acknowledged[t]);
+                for (int j = i; j <= recovered.last(); j += THREADS) {
+                    assertFalse(recovered.contains(j));
+                }
+            }
+            // and no movie was recovered in part
+            assertMovies(recovered, index);
+        }
+    }
+
+    /**
+     * Ingest movies with several threads until killed, printing each movie
+     * once it is acknowledged
+     *
+     * @param args Snapshot and log file names
+     * @throws Exception If the ingest fails
+     */
+    public static void main(String[] args) throws Exception {
+        DurableIndex index = DurableIndex.open(args[0], args[1], 64 << 10);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int first = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = first; ; i += THREADS) {
+                        index.add(movie(i));
+                        synchronized (System.out) {
+                            System.out.println(i);
+                            System.out.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
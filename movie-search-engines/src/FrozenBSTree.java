@@ -0,0 +1,355 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable copy of a built BSTree for read-only indexes. The keys are laid
+ * out in one array in Eytzinger order, the order of a breadth-first walk of
+ * a complete tree: the children of slot i are slots 2i and 2i + 1, so the
+ * first levels of every search share a few cache lines and there are no
+ * node objects to chase. Posting lists and data lists sit in parallel
+ * arrays and are only read once the key is found.
+ *
+ * A lookup descends to a leaf without stopping at an equal key, taking the
+ * right child while the key is greater, so each level costs one comparison
+ * and an index computation the JIT can turn into a conditional move
+ * instead of a hard-to-predict branch. The last left turn is then the
+ * smallest key that is not less than the one searched for.
+ *
+ * Comparing String keys would still load a String and its byte array per
+ * level. When every key is a Latin-1 String, a parallel long array holds
+ * the 8 characters of each key that follow the prefix all keys share, so
+ * most levels compare two longs from one array and only equal prefixes
+ * fall back to compareTo.
+ */
+public class FrozenBSTree<T extends Comparable<? super T>> implements Iterable<T> {
+    private final int size; // number of keys
+    private final Object[] keys; // Eytzinger order from slot 1, slot 0 unused
+    private final PostingList[] postings; // postings of the key in the same slot, null for none
+    private final Object[] dataLists; // List<T> data of the key in the same slot
+    private final DocumentDictionary<T> documents;
+    // 8 characters of each key after commonPrefix, with the sign bit flipped
+    // so that signed comparison orders them; null unless every key is a
+    // Latin-1 String
+    private final long[] prefixes;
+    private final String commonPrefix; // longest prefix of every key, null without prefixes
+
+    /**
+     * A constructor that copies a tree into the array layout.
+     *
+     * @param tree Tree to be copied
+     */
+    FrozenBSTree(BSTree<T> tree) {
+        this.size = tree.getSize();
+        this.keys = new Object[this.size + 1];
+        this.postings = new PostingList[this.size + 1];
+        this.dataLists = new Object[this.size + 1];
+        this.documents = tree.getDocuments();
+        Iterator<BSTree<T>.BSTNode> nodes = tree.entryIterator();
+        fill(1, nodes);
+        this.commonPrefix = commonPrefix();
+        if (this.commonPrefix == null) {
+            this.prefixes = null;
+        } else {
+            this.prefixes = new long[this.size + 1];
+            for (int slot = 1; slot <= this.size; slot++) {
+                this.prefixes[slot] = pack((String) this.keys[slot], this.commonPrefix.length());
+            }
+        }
+    }
+
+    /**
+     * Return the prefix shared by every key, which is the one shared by the
+     * smallest and the largest
+     *
+     * @return The prefix, null if the tree is empty or not every key is a
+     *         Latin-1 String
+     */
+    private String commonPrefix() {
+        if (this.size == 0) {
+            return null;
+        }
+        for (int slot = 1; slot <= this.size; slot++) {
+            if (!(this.keys[slot] instanceof String) || !isLatin1((String) this.keys[slot])) {
+                return null;
+            }
+        }
+        int first = 1;
+        while (2 * first <= this.size) {
+            first *= 2;
+        }
+        int last = 1;
+        while (2 * last + 1 <= this.size) {
+            last = 2 * last + 1;
+        }
+        String smallest = (String) this.keys[first];
+        String largest = (String) this.keys[last];
+        int length = 0;
+        while (length < smallest.length() && length < largest.length()
+                && smallest.charAt(length) == largest.charAt(length)) {
+            length++;
+        }
+        return smallest.substring(0, length);
+    }
+
+    /**
+     * Return whether every character of a string fits in a byte
+     *
+     * @param s String to check
+     * @return True if every character is below 256
+     */
+    private static boolean isLatin1(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Pack the 8 characters of a Latin-1 string from an offset into a long,
+     * padding with zeros, so that packed strings compare in String order
+     * unless they are equal
+     *
+     * @param s      String to pack
+     * @param offset First character packed
+     * @return The packed characters with the sign bit flipped
+     */
+    private static long pack(String s, int offset) {
+        long packed = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            packed = packed << 8 | (i < s.length() ? s.charAt(i) : 0);
+        }
+        return packed ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Helper method that fills the subtree rooted at a slot with the next
+     * nodes in key order, by an in-order walk of the implicit tree. The
+     * recursion is as deep as the complete tree, under 32 levels.
+     *
+     * @param slot  Root of the subtree
+     * @param nodes Nodes of the source tree in key order
+     */
+    private void fill(int slot, Iterator<BSTree<T>.BSTNode> nodes) {
+        if (slot > this.size) {
+            return;
+        }
+        fill(2 * slot, nodes);
+        BSTree<T>.BSTNode node = nodes.next();
+        this.keys[slot] = node.getKey();
+        PostingList list = node.getPostings();
+        this.postings[slot] = list == null || list.isEmpty() ? null : list.compressedCopy();
+        this.dataLists[slot] = node.hasNoData() ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(node.getDataList()));
+        fill(2 * slot + 1, nodes);
+    }
+
+    /**
+     * Return the slot of the smallest key that is at least 'key'
+     *
+     * @param key Lower bound
+     * @return The slot, 0 if every key is less than 'key'
+     */
+    @SuppressWarnings("unchecked")
+    private int lowerBound(T key) {
+        Object[] keys = this.keys;
+        int slot = 1;
+        if (this.prefixes != null && isPackable(key)) {
+            long[] prefixes = this.prefixes;
+            long packed = pack((String) key, this.commonPrefix.length());
+            while (slot <= this.size) {
+                long prefix = prefixes[slot];
+                boolean greater = packed != prefix ? packed > prefix
+                        : key.compareTo((T) keys[slot]) > 0;
+                slot = 2 * slot + (greater ? 1 : 0);
+            }
+        } else {
+            while (slot <= this.size) {
+                slot = 2 * slot + (key.compareTo((T) keys[slot]) > 0 ? 1 : 0);
+            }
+        }
+        // undo the right turns taken after the last left turn, then that turn
+        return slot >>> (Integer.numberOfTrailingZeros(~slot) + 1);
+    }
+
+    /**
+     * Return whether a key can be compared by its packed prefix: it starts
+     * with the prefix of every key and the characters packed are Latin-1
+     *
+     * @param key Key to check
+     * @return True if packed prefixes order it against the keys
+     */
+    private boolean isPackable(T key) {
+        if (!(key instanceof String) || !((String) key).startsWith(this.commonPrefix)) {
+            return false;
+        }
+        String s = (String) key;
+        int end = Math.min(s.length(), this.commonPrefix.length() + 8);
+        for (int i = this.commonPrefix.length(); i < end; i++) {
+            if (s.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the slot of a key
+     *
+     * @param key Key to look for
+     * @return The slot, 0 if the key is not in the tree
+     * @throws NullPointerException If key is null
+     */
+    @SuppressWarnings("unchecked")
+    private int find(T key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        int slot = lowerBound(key);
+        return slot != 0 && key.compareTo((T) this.keys[slot]) == 0 ? slot : 0;
+    }
+
+    /**
+     * Return the number of keys
+     *
+     * @return The number of keys
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Return the dictionary that maps the document ids in the posting lists
+     * back to documents. It is shared with the tree that was frozen.
+     *
+     * @return The document dictionary
+     */
+    public DocumentDictionary<T> getDocuments() {
+        return this.documents;
+    }
+
+    /**
+     * Return true if the 'key' is found in the tree, false otherwise
+     *
+     * @param key To be searched
+     * @return True if the 'key' is found, false otherwise
+     * @throws NullPointerException If key is null
+     */
+    public boolean findKey(T key) {
+        return find(key) != 0;
+    }
+
+    /**
+     * Return the posting list of a key. The list must not be modified.
+     *
+     * @param key Target key
+     * @return Posting list of the key, null if the key is not found or has
+     *         no postings
+     * @throws NullPointerException If key is null
+     */
+    public PostingList findPostings(T key) {
+        return this.postings[find(key)];
+    }
+
+    /**
+     * Return the data of a key, or null if the key is not in the tree
+     *
+     * @param key Target key
+     * @return Unmodifiable data of the key, null if not found
+     * @throws NullPointerException If key is null
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> lookup(T key) {
+        return (List<T>) this.dataLists[find(key)];
+    }
+
+    /**
+     * Return the data of a key
+     *
+     * @param key Target key
+     * @return Unmodifiable data of the key
+     * @throws NullPointerException     If key is null
+     * @throws IllegalArgumentException If key is not found in the tree
+     */
+    public List<T> findDataList(T key) {
+        List<T> dataList = lookup(key);
+        if (dataList == null) {
+            throw new IllegalArgumentException();
+        }
+        return dataList;
+    }
+
+    /**
+     * Return the smallest key in the tree that is at least 'key'
+     *
+     * @param key Lower bound
+     * @return The smallest key >= key, null if there is none
+     * @throws NullPointerException If key is null
+     */
+    @SuppressWarnings("unchecked")
+    public T ceiling(T key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return (T) this.keys[lowerBound(key)];
+    }
+
+    /**
+     * Return an iterator over the keys in key order
+     *
+     * @return Iterator over the keys
+     */
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int slot = leftmost(1); // next slot in key order, past size at the end
+
+            /**
+             * Return the leftmost slot of a subtree
+             *
+             * @param root Root of the subtree
+             * @return The leftmost slot, past size if the subtree is empty
+             */
+            private int leftmost(int root) {
+                int leftmost = root;
+                while (2 * leftmost <= size) {
+                    leftmost *= 2;
+                }
+                return leftmost;
+            }
+
+            /**
+             * Checks if there is a next key
+             *
+             * @return whether there is a next key
+             */
+            public boolean hasNext() {
+                return this.slot != 0 && this.slot <= size;
+            }
+
+            /**
+             * Returns the next key
+             *
+             * @return the next key
+             * @throws NoSuchElementException if there is no next key
+             */
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T key = (T) keys[this.slot];
+                if (2 * this.slot + 1 <= size) {
+                    this.slot = leftmost(2 * this.slot + 1);
+                } else {
+                    // climb while coming from a right child, then once more
+                    this.slot >>>= Integer.numberOfTrailingZeros(~this.slot) + 1;
+                }
+                return key;
+            }
+        };
+    }
+}
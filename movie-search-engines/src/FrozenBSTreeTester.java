@@ -0,0 +1,111 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrozenBSTreeTester {
+    BSTree<String> myTree;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        myTree = new BSTree<>(true);
+        for (int i = 0; i < 1000; i += 2) {
+            myTree.insertPosting(String.format("key-%04d", i), "movie-" + i);
+            myTree.insertPosting(String.format("key-%04d", i), "movie-" + (i + 1));
+        }
+        myTree.insertData("key-0000", "data");
+        myTree.compressPostings();
+    }
+
+    @org.junit.Test
+    public void find() {
+        // every size from empty up to several complete levels
+        for (int n = 0; n < 70; n++) {
+            BSTree<String> tree = new BSTree<>(true);
+            for (int i = 0; i < n; i++) {
+                tree.insert(String.format("key-%04d", 2 * i));
+            }
+            FrozenBSTree<String> frozen = tree.freeze();
+            assertEquals(n, frozen.getSize());
+            for (int i = 0; i < n; i++) {
+                assertTrue(frozen.findKey(String.format("key-%04d", 2 * i)));
+                assertFalse(frozen.findKey(String.format("key-%04d", 2 * i + 1)));
+                assertEquals(String.format("key-%04d", 2 * i),
+                        frozen.ceiling(String.format("key-%04d", 2 * i - 1)));
+            }
+            assertFalse(frozen.findKey("a"));
+            assertFalse(frozen.findKey("z"));
+            assertNull(frozen.ceiling("z"));
+            List<String> keys = new ArrayList<>();
+            for (String key : frozen) {
+                keys.add(key);
+            }
+            List<String> expected = new ArrayList<>();
+            tree.iterator().forEachRemaining(expected::add);
+            assertEquals(expected, keys);
+        }
+    }
+
+    @org.junit.Test
+    public void packedPrefixes() {
+        // keys that pack equally, share a long prefix or are not Latin-1
+        String[][] keySets = {
+                {"ab", "ab\u0000", "ab\u0000\u0000", "abc", "b"},
+                {"actor-a", "actor-aaaaaaaaa", "actor-aaaaaaaab", "actor-b", "actor-\u00ff"},
+                {"a", "\u0100", "\u0100a", "\u0101"},
+        };
+        String[] queries = {"", "a", "ab", "ab\u0000", "ab\u0001", "abc", "actor-", "actor-aaaaaaaa",
+                "actor-aaaaaaaaa", "actor-aaaaaaaaab", "actor-\u0100", "b", "\u0100", "\u0100a", "\uffff"};
+        for (String[] keys : keySets) {
+            BSTree<String> tree = new BSTree<>(true);
+            for (String key : keys) {
+                tree.insert(key);
+            }
+            FrozenBSTree<String> frozen = tree.freeze();
+            for (String query : queries) {
+                assertEquals(query, tree.findKey(query), frozen.findKey(query));
+                assertEquals(query, tree.ceiling(query), frozen.ceiling(query));
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void postingsAndData() {
+        FrozenBSTree<String> frozen = myTree.freeze();
+        assertEquals(500, frozen.getSize());
+        for (int i = 0; i < 1000; i += 2) {
+            String key = String.format("key-%04d", i);
+            assertEquals(myTree.findPostings(key), frozen.findPostings(key));
+            assertEquals(myTree.findDataList(key), frozen.findDataList(key));
+        }
+        assertNull(frozen.findPostings("key-0001"));
+        assertNull(frozen.lookup("key-0001"));
+        assertEquals("[data]", frozen.lookup("key-0000").toString());
+        assertEquals("movie-1", frozen.getDocuments().get(frozen.findPostings("key-0000").get(1)));
+    }
+
+    @org.junit.Test
+    public void independentOfTree() {
+        FrozenBSTree<String> frozen = myTree.freeze();
+        myTree.insertPosting("key-0000", "movie-1000");
+        myTree.insertData("key-0000", "more data");
+        myTree.remove("key-0002");
+        assertEquals(2, frozen.findPostings("key-0000").size());
+        assertEquals(1, frozen.findDataList("key-0000").size());
+        assertTrue(frozen.findKey("key-0002"));
+        Iterator<String> keys = frozen.iterator();
+        assertEquals("key-0000", keys.next());
+        assertEquals("key-0002", keys.next());
+    }
+
+    @org.junit.Test (expected = UnsupportedOperationException.class)
+    public void dataIsUnmodifiable() {
+        myTree.freeze().findDataList("key-0000").add("more data");
+    }
+
+    @org.junit.Test (expected = IllegalArgumentException.class)
+    public void findMissingDataList() {
+        myTree.freeze().findDataList("key-0001");
+    }
+}
@@ -0,0 +1,275 @@
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Unordered index from keys to posting lists for exact lookups in O(1).
+ * Keys live in an open-addressing table with linear probing, in parallel
+ * arrays of keys, their hash codes and their posting lists. A lookup
+ * hashes the searched key once and compares the stored int hashes while
+ * probing, so it only calls equals on a key that very likely matches,
+ * where an ordered tree calls compareTo at every level. Prefix queries
+ * need the keys in order and are better served by a BSTree.
+ */
+public class HashIndex<T> implements SearchIndex<T> {
+    private static final int INITIAL_CAPACITY = 16; // a power of two
+
+    private Object[] keys; // null for an empty slot
+    private int[] hashes; // spread hash code of the key in the same slot
+    private PostingList[] postings; // postings of the key in the same slot
+    private int shift; // 32 minus log2 of the capacity
+    private int size; // number of keys
+    private int modCount; // number of keys inserted, checked by iterators
+    private int version; // number of changes to keys or postings
+    private final DocumentDictionary<T> documents; // ids of the documents in postings
+
+    /**
+     * 0-arg constructor that initializes an empty index
+     */
+    public HashIndex() {
+        this(new DocumentDictionary<>());
+    }
+
+    /**
+     * Constructor that initializes an empty index whose posting lists hold
+     * ids of the given document dictionary
+     *
+     * @param documents Dictionary of the documents in the posting lists
+     * @throws NullPointerException If documents is null
+     */
+    public HashIndex(DocumentDictionary<T> documents) {
+        if (documents == null) {
+            throw new NullPointerException();
+        }
+        this.documents = documents;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Replace the table by an empty one
+     *
+     * @param capacity Number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        this.keys = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.postings = new PostingList[capacity];
+        this.shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * Return the hash code of a key with its bits mixed, so that the top
+     * bits that pick the home slot depend on all of them
+     *
+     * @param key Key to hash
+     * @return The mixed hash code
+     */
+    private static int hash(Object key) {
+        return key.hashCode() * 0x9E3779B9;
+    }
+
+    /**
+     * Return the slot of a key, or of the empty slot that ends its probe
+     * sequence
+     *
+     * @param key  Key to look for
+     * @param hash Mixed hash code of the key
+     * @return The slot
+     */
+    private int slot(Object key, int hash) {
+        int mask = this.keys.length - 1;
+        int slot = hash >>> this.shift;
+        Object found;
+        while ((found = this.keys[slot]) != null
+                && (this.hashes[slot] != hash || !found.equals(key))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Double the table, moving every key by its stored hash code
+     */
+    private void grow() {
+        Object[] oldKeys = this.keys;
+        int[] oldHashes = this.hashes;
+        PostingList[] oldPostings = this.postings;
+        allocate(oldKeys.length * 2);
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] >>> this.shift;
+                while (this.keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.hashes[slot] = oldHashes[i];
+                this.postings[slot] = oldPostings[i];
+            }
+        }
+    }
+
+    /**
+     * Add 'data' to the posting list of 'key', inserting the key first if
+     * it is not in the index yet
+     *
+     * @param key  Target key
+     * @param data Document to be added to key's posting list
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException If either key or data is null
+     */
+    public boolean insertPosting(T key, T data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        int hash = hash(key);
+        int slot = slot(key, hash);
+        boolean inserted = this.keys[slot] == null;
+        if (inserted) {
+            // keep at least half of the slots empty so probe sequences stay short
+            if (2 * (this.size + 1) > this.keys.length) {
+                grow();
+                slot = slot(key, hash);
+            }
+            this.keys[slot] = key;
+            this.hashes[slot] = hash;
+            this.postings[slot] = new PostingList();
+            this.size++;
+            this.modCount++;
+        }
+        if (this.postings[slot].add(this.documents.intern(data)) || inserted) {
+            this.version++;
+        }
+        return inserted;
+    }
+
+    /**
+     * Return the posting list of a key
+     *
+     * @param key Target key
+     * @return Posting list of the key, null if the key is not found
+     * @throws NullPointerException If key is null
+     */
+    public PostingList findPostings(T key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return this.postings[slot(key, hash(key))];
+    }
+
+    /**
+     * Return true if the 'key' is found in the index, false otherwise
+     *
+     * @param key To be searched
+     * @return True if the 'key' is found, false otherwise
+     * @throws NullPointerException If key is null
+     */
+    public boolean findKey(T key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return this.keys[slot(key, hash(key))] != null;
+    }
+
+    /**
+     * Return the number of keys
+     *
+     * @return The number of keys
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Return the dictionary that maps the document ids in the posting lists
+     * back to documents
+     *
+     * @return The document dictionary
+     */
+    public DocumentDictionary<T> getDocuments() {
+        return this.documents;
+    }
+
+    /**
+     * Return a number that changes whenever a key is inserted or gains
+     * postings, so that results computed from the index can tell they are
+     * stale
+     *
+     * @return The version of the index's contents
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Compress the posting list of every key. Lists that get more postings
+     * later are decompressed again on their first insert.
+     *
+     * @return Number of posting lists that were compressed
+     */
+    public int compressPostings() {
+        int compressedLists = 0;
+        for (PostingList list : this.postings) {
+            if (list != null && list.compress()) {
+                compressedLists++;
+            }
+        }
+        return compressedLists;
+    }
+
+    /**
+     * Return an iterator over the keys in no particular order
+     *
+     * @return Iterator over the keys
+     */
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final int expectedModCount = modCount;
+            private int slot = nextSlot(0); // slot of the next key, past the table at the end
+
+            /**
+             * Return the first slot from 'from' on that holds a key
+             *
+             * @param from First slot to look at
+             * @return The slot, the capacity if there is none
+             */
+            private int nextSlot(int from) {
+                int next = from;
+                while (next < keys.length && keys[next] == null) {
+                    next++;
+                }
+                return next;
+            }
+
+            /**
+             * Checks if there is a next key
+             *
+             * @return whether there is a next key
+             */
+            public boolean hasNext() {
+                return this.slot < keys.length;
+            }
+
+            /**
+             * Returns the next key
+             *
+             * @return the next key
+             * @throws NoSuchElementException if there is no next key
+             * @throws ConcurrentModificationException if a key was inserted
+             *         since this iterator was created
+             */
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (modCount != this.expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T key = (T) keys[this.slot];
+                this.slot = nextSlot(this.slot + 1);
+                return key;
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class HashIndexTester {
+    HashIndex<String> myIndex;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        myIndex = new HashIndex<>();
+    }
+
+    @org.junit.Test
+    public void insertPosting() {
+        assertTrue(myIndex.insertPosting("tom-holland", "spider-man"));
+        assertFalse(myIndex.insertPosting("tom-holland", "dolittle"));
+        assertFalse(myIndex.insertPosting("tom-holland", "spider-man"));
+        assertTrue(myIndex.insertPosting("zendaya", "spider-man"));
+        assertEquals(2, myIndex.getSize());
+        assertEquals(2, myIndex.getDocuments().size());
+        assertEquals("[0, 1]", myIndex.findPostings("tom-holland").toString());
+        assertEquals("[0]", myIndex.findPostings("zendaya").toString());
+        assertTrue(myIndex.findKey("zendaya"));
+        assertFalse(myIndex.findKey("nobody"));
+        assertNull(myIndex.findPostings("nobody"));
+    }
+
+    @org.junit.Test
+    public void grow() {
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(myIndex.insertPosting("actor-" + i, "movie-" + i / 2));
+        }
+        assertEquals(100000, myIndex.getSize());
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(1, myIndex.findPostings("actor-" + i).size());
+            assertEquals("movie-" + i / 2,
+                    myIndex.getDocuments().get(myIndex.findPostings("actor-" + i).get(0)));
+        }
+        assertFalse(myIndex.findKey("actor-100000"));
+        Set<String> keys = new HashSet<>();
+        for (Iterator<String> it = myIndex.iterator(); it.hasNext(); ) {
+            assertTrue(keys.add(it.next()));
+        }
+        assertEquals(100000, keys.size());
+    }
+
+    @org.junit.Test
+    public void version() {
+        int version = myIndex.getVersion();
+        myIndex.insertPosting("a", "x");
+        assertNotEquals(version, version = myIndex.getVersion());
+        myIndex.insertPosting("a", "y");
+        assertNotEquals(version, version = myIndex.getVersion());
+        myIndex.insertPosting("a", "y");
+        assertEquals(version, myIndex.getVersion());
+        assertEquals(0, myIndex.compressPostings()); // too short to be worth compressing
+    }
+
+    @org.junit.Test (expected = ConcurrentModificationException.class)
+    public void iteratorFailFast() {
+        myIndex.insertPosting("a", "x");
+        Iterator<String> keys = myIndex.iterator();
+        myIndex.insertPosting("b", "x");
+        keys.next();
+    }
+
+    @org.junit.Test (expected = NullPointerException.class)
+    public void insertNullKey() {
+        myIndex.insertPosting(null, "x");
+    }
+
+    /**
+     * Return what searchMyQuery prints for a query
+     */
+    private static String search(SearchIndex<String> index, String query) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SearchEngine.searchMyQuery(index, query, new PrintStream(out, true));
+        return out.toString();
+    }
+
+    @org.junit.Test
+    public void searchLikeBSTree() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            lines.add("movie-" + i);
+            lines.add("actor-" + i % 7 + " actor-" + i % 11 + " star-" + i % 13);
+            lines.add("studio-" + i % 5);
+            lines.add(i % 2 == 0 ? "PG" : "R");
+            lines.add("-");
+        }
+        File file = File.createTempFile("moviedata", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), lines);
+        List<SearchIndex<String>> trees = new ArrayList<>();
+        for (boolean ordered : new boolean[] {true, false}) {
+            for (int t = 0; t < 3; t++) {
+                trees.add(SearchEngine.newSearchIndex(ordered));
+            }
+            int first = trees.size() - 3;
+            assertTrue(SearchEngine.populateSearchTrees(trees.get(first), trees.get(first + 1),
+                    trees.get(first + 2), file.getPath()));
+        }
+        assertTrue(trees.get(0) instanceof BSTree);
+        assertTrue(trees.get(3) instanceof HashIndex);
+        String[] queries = {"actor-1", "actor-1 actor-2", "actor-3 nobody star-4", "star*",
+                "actor-1 star*", "actr-1~", "studio-2", "actor-6 actor-10"};
+        for (String query : queries) {
+            for (int t = 0; t < 3; t++) {
+                assertEquals(query, search(trees.get(t), query), search(trees.get(t + 3), query));
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of built search trees, so that a catalog is parsed once
+ * and later runs open the snapshot instead. A snapshot starts with a
+ * header: magic number, format version, payload length and CRC32 of the
+ * payload. The payload holds, for each of the movie, studio and rating
+ * trees, its document dictionary in id order, or the number of an earlier
+ * tree whose dictionary it shares, followed by its keys in order with
+ * their posting lists, which are stored in their compressed form. Opening
+ * maps the file, checks the header and bulk-loads the trees; a dictionary
+ * shared in the snapshot is decoded once, and interned once into trees
+ * that share a dictionary too, such as movie and studio trees over one
+ * dictionary of titles.
+ */
+public class IndexSnapshot {
+    static final int MAGIC = 0x4D534958; // "MSIX"
+    static final int VERSION = 2;
+    private static final int UNSHARED_VERSION = 1; // every tree has its own dictionary
+    private static final int OWN_DOCUMENTS = -1; // the tree's dictionary follows
+    private static final int HEADER_BYTES = 24; // magic, version, length, checksum
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Write a snapshot of three trees. The snapshot is written next to the
+     * target and renamed over it, so an interrupted write never leaves a
+     * partial snapshot behind.
+     *
+     * @param movieTree  - BST of actors
+     * @param studioTree - BST of studios
+     * @param ratingTree - BST of ratings
+     * @param fileName   - name of the snapshot file
+     * @throws IOException If the snapshot cannot be written
+     */
+    public static void write(BSTree<String> movieTree, BSTree<String> studioTree,
+            BSTree<String> ratingTree, String fileName) throws IOException {
+        Path target = Paths.get(fileName);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_BYTES);
+            CRC32 checksum = new CRC32();
+            // the stream is not closed, that would close the channel before the header is written
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), checksum), BUFFER_SIZE));
+            List<BSTree<String>> trees = Arrays.asList(movieTree, studioTree, ratingTree);
+            for (int t = 0; t < trees.size(); t++) {
+                writeTree(out, trees, t);
+            }
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(out.size()).putLong(checksum.getValue());
+            header.flip();
+            channel.write(header, 0);
+            channel.force(false);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Write the documents, keys and posting lists of one tree. The
+     * documents are only written if no earlier tree shares them.
+     *
+     * @param out   Snapshot being written
+     * @param trees Trees of the snapshot
+     * @param t     Index of the tree to be written
+     * @throws IOException If the snapshot cannot be written
+     */
+    private static void writeTree(DataOutput out, List<BSTree<String>> trees, int t)
+            throws IOException {
+        BSTree<String> tree = trees.get(t);
+        DocumentDictionary<String> documents = tree.getDocuments();
+        int shared = OWN_DOCUMENTS;
+        for (int s = t - 1; s >= 0; s--) {
+            if (trees.get(s).getDocuments() == documents) {
+                shared = s; // the first tree of the dictionary, which wrote it
+            }
+        }
+        out.writeInt(shared);
+        if (shared == OWN_DOCUMENTS) {
+            out.writeInt(documents.size());
+            for (int id = 0; id < documents.size(); id++) {
+                writeString(out, documents.get(id));
+            }
+        }
+        out.writeInt(tree.getSize());
+        Iterator<BSTree<String>.BSTNode> nodes = tree.entryIterator();
+        while (nodes.hasNext()) {
+            BSTree<String>.BSTNode node = nodes.next();
+            writeString(out, node.getKey());
+            PostingList postings = node.getPostings();
+            out.writeBoolean(postings != null);
+            if (postings != null) {
+                postings.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Populate empty BSTrees from a snapshot. The trees come out perfectly
+     * balanced, with the same keys and documents as the trees that were
+     * written, and the same document ids unless the trees share their
+     * dictionaries differently.
+     *
+     * @param movieTree  - empty BST to be populated with actors
+     * @param studioTree - empty BST to be populated with studios
+     * @param ratingTree - empty BST to be populated with ratings
+     * @param fileName   - name of the snapshot file
+     * @throws IOException If the file cannot be read, is not a snapshot,
+     *         has an unknown format version or fails its checksum
+     * @throws IllegalStateException If one of the trees is not empty
+     */
+    public static void open(BSTree<String> movieTree, BSTree<String> studioTree,
+            BSTree<String> ratingTree, String fileName) throws IOException {
+        List<BSTree<String>> trees = Arrays.asList(movieTree, studioTree, ratingTree);
+        for (BSTree<String> tree : trees) {
+            if (tree.getSize() != 0 || tree.getDocuments().size() != 0) {
+                throw new IllegalStateException();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(fileName + " is not an index snapshot");
+            }
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " is too large to be mapped");
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC) {
+                throw new IOException(fileName + " is not an index snapshot");
+            }
+            int version = in.getInt();
+            if (version != VERSION && version != UNSHARED_VERSION) {
+                throw new IOException(fileName + " has unsupported snapshot version " + version);
+            }
+            long length = in.getLong();
+            long expected = in.getLong();
+            if (length != in.remaining()) {
+                throw new IOException(fileName + " has the wrong length");
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(in.duplicate());
+            if (checksum.getValue() != expected) {
+                throw new IOException(fileName + " fails its checksum");
+            }
+            List<List<String>> documents = new ArrayList<>(); // of each tree in the snapshot
+            int[][] ids = new int[trees.size()][];
+            try {
+                for (int t = 0; t < trees.size(); t++) {
+                    readTree(in, version, trees, t, documents, ids);
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException
+                    | IndexOutOfBoundsException | NegativeArraySizeException e) {
+                throw new IOException(fileName + " is corrupt", e);
+            }
+        }
+    }
+
+    /**
+     * Read the documents, keys and posting lists of one tree and load them.
+     * Documents are interned into the tree's dictionary unless an earlier
+     * tree already interned the same ones into it.
+     *
+     * @param in        Snapshot, positioned at the tree
+     * @param version   Format version of the snapshot
+     * @param trees     Trees being loaded
+     * @param t         Index of the tree to be loaded
+     * @param documents Documents of each earlier tree in the snapshot,
+     *                  appended to
+     * @param ids       Id in its tree's dictionary of every snapshot
+     *                  document id of each earlier tree, null where they
+     *                  are equal; filled in for this tree
+     * @throws IOException If the tree is not encoded correctly
+     */
+    private static void readTree(ByteBuffer in, int version, List<BSTree<String>> trees, int t,
+            List<List<String>> documents, int[][] ids) throws IOException {
+        BSTree<String> tree = trees.get(t);
+        int shared = version == UNSHARED_VERSION ? OWN_DOCUMENTS : in.getInt();
+        List<String> own;
+        if (shared == OWN_DOCUMENTS) {
+            int documentCount = in.getInt();
+            own = new ArrayList<>(documentCount);
+            for (int id = 0; id < documentCount; id++) {
+                own.add(readString(in));
+            }
+        } else if (shared >= 0 && shared < t) {
+            own = documents.get(shared);
+        } else {
+            throw new IOException("bad dictionary reference " + shared);
+        }
+        documents.add(own);
+        int interned = -1; // earlier tree that interned these documents into this dictionary
+        for (int s = 0; s < t; s++) {
+            if (documents.get(s) == own && trees.get(s).getDocuments() == tree.getDocuments()) {
+                interned = s;
+            }
+        }
+        if (interned >= 0) {
+            ids[t] = ids[interned];
+        } else {
+            int[] map = new int[own.size()];
+            boolean same = true;
+            for (int id = 0; id < map.length; id++) {
+                map[id] = tree.getDocuments().intern(own.get(id));
+                same &= map[id] == id;
+            }
+            ids[t] = same ? null : map;
+        }
+        int size = in.getInt();
+        if (size < 0) {
+            throw new IOException("negative key count " + size);
+        }
+        List<Map.Entry<String, PostingList>> groups = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            PostingList postings = in.get() != 0 ? PostingList.readFrom(in) : null;
+            if (postings != null && ids[t] != null) {
+                postings = remap(postings, ids[t]);
+            }
+            groups.add(new AbstractMap.SimpleImmutableEntry<>(key, postings));
+        }
+        tree.bulkLoad(groups.iterator(), size);
+    }
+
+    /**
+     * Return a posting list with every id replaced by its id in another
+     * dictionary
+     *
+     * @param postings Posting list to be remapped
+     * @param map      New id of every old id
+     * @return The remapped list, compressed if postings is
+     */
+    private static PostingList remap(PostingList postings, int[] map) {
+        int[] mapped = postings.toArray();
+        for (int i = 0; i < mapped.length; i++) {
+            mapped[i] = map[mapped[i]];
+        }
+        Arrays.sort(mapped); // a dictionary shared differently numbers documents differently
+        PostingList remapped = new PostingList();
+        for (int id : mapped) {
+            remapped.add(id);
+        }
+        if (postings.isCompressed()) {
+            remapped.compress();
+        }
+        return remapped;
+    }
+
+    /**
+     * Return whether a file starts with the snapshot magic number
+     *
+     * @param fileName Name of the file
+     * @return True if the file looks like a snapshot, false otherwise
+     */
+    public static boolean isSnapshot(String fileName) {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write a string as its UTF-8 length and bytes
+     *
+     * @param out Snapshot being written
+     * @param s   String to be written
+     * @throws IOException If the snapshot cannot be written
+     */
+    private static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by writeString
+     *
+     * @param in Snapshot, positioned at the string
+     * @return The string
+     */
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write an int array as its length and elements
+     *
+     * @param out    Snapshot being written
+     * @param values Array to be written
+     * @throws IOException If the snapshot cannot be written
+     */
+    static void writeInts(DataOutput out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Read an int array written by writeInts
+     *
+     * @param in Snapshot, positioned at the array
+     * @return The array
+     */
+    static int[] readInts(ByteBuffer in) {
+        int[] values = new int[in.getInt()];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * values.length);
+        return values;
+    }
+
+    /**
+     * Write a long array as its length and elements
+     *
+     * @param out    Snapshot being written
+     * @param values Array to be written
+     * @throws IOException If the snapshot cannot be written
+     */
+    static void writeLongs(DataOutput out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    /**
+     * Read a long array written by writeLongs
+     *
+     * @param in Snapshot, positioned at the array
+     * @return The array
+     */
+    static long[] readLongs(ByteBuffer in) {
+        long[] values = new long[in.getInt()];
+        in.asLongBuffer().get(values);
+        in.position(in.position() + 8 * values.length);
+        return values;
+    }
+
+    /**
+     * Main method that parses a movie data file and writes a snapshot of
+     * its search trees, e.g. "java IndexSnapshot moviedata.txt moviedata.idx"
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        DocumentDictionary<String> titles = new DocumentDictionary<>(); // of both title trees
+        BSTree<String> movieTree = new BSTree<>(true, titles);
+        BSTree<String> studioTree = new BSTree<>(true, titles);
+        BSTree<String> ratingTree = new BSTree<>(true);
+        if (!SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree, args[0])) {
+            System.err.println("Cannot read " + args[0]);
+            return;
+        }
+        try {
+            write(movieTree, studioTree, ratingTree, args[1]);
+        } catch (IOException e) {
+            System.err.println("Cannot write snapshot " + args[1] + ", " + e.getMessage());
+        }
+    }
+}
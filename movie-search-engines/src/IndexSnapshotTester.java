@@ -0,0 +1,153 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IndexSnapshotTester {
+    BSTree<String> movieTree;
+    BSTree<String> studioTree;
+    BSTree<String> ratingTree;
+    File mySnapshot;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            lines.add("movie-" + i);
+            lines.add("actor-" + i % 7 + " actor-" + i % 150 + " actor-" + i);
+            lines.add("studio-" + i % 5);
+            lines.add(i % 2 == 0 ? "PG" : "R");
+            lines.add("-");
+        }
+        File data = File.createTempFile("moviedata", ".txt");
+        data.deleteOnExit();
+        Files.write(data.toPath(), lines);
+        movieTree = new BSTree<>(true);
+        studioTree = new BSTree<>(true);
+        ratingTree = new BSTree<>(true);
+        SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree, data.getPath());
+        mySnapshot = File.createTempFile("moviedata", ".idx");
+        mySnapshot.deleteOnExit();
+    }
+
+    @org.junit.Test
+    public void writeAndOpen() throws IOException {
+        IndexSnapshot.write(movieTree, studioTree, ratingTree, mySnapshot.getPath());
+        assertTrue(IndexSnapshot.isSnapshot(mySnapshot.getPath()));
+        BSTree<String> openedMovieTree = new BSTree<>(true);
+        BSTree<String> openedStudioTree = new BSTree<>(true);
+        BSTree<String> openedRatingTree = new BSTree<>(true);
+        IndexSnapshot.open(openedMovieTree, openedStudioTree, openedRatingTree, mySnapshot.getPath());
+        assertEquals(TestTrees.contents(movieTree), TestTrees.contents(openedMovieTree));
+        assertEquals(TestTrees.contents(studioTree), TestTrees.contents(openedStudioTree));
+        assertEquals(TestTrees.contents(ratingTree), TestTrees.contents(openedRatingTree));
+        // document ids and encodings are kept
+        assertEquals(movieTree.findPostings("actor-3"), openedMovieTree.findPostings("actor-3"));
+        assertEquals(movieTree.findPostings("actor-3").isCompressed(),
+                openedMovieTree.findPostings("actor-3").isCompressed());
+        assertEquals(studioTree.findPostings("studio-0"), openedStudioTree.findPostings("studio-0"));
+        assertTrue(openedStudioTree.findPostings("studio-0").isCompressed());
+        // the opened trees can still be updated
+        openedMovieTree.insertPosting("actor-3", "movie-new");
+        assertEquals(movieTree.findPostings("actor-3").size() + 1,
+                openedMovieTree.findPostings("actor-3").size());
+    }
+
+    @org.junit.Test
+    public void sharedTitles() throws IOException {
+        DocumentDictionary<String> titles = new DocumentDictionary<>();
+        BSTree<String> sharedMovieTree = new BSTree<>(true, titles);
+        BSTree<String> sharedStudioTree = new BSTree<>(true, titles);
+        for (BSTree<String> tree : Arrays.asList(movieTree, studioTree)) {
+            Iterator<BSTree<String>.BSTNode> nodes = tree.entryIterator();
+            while (nodes.hasNext()) {
+                BSTree<String>.BSTNode node = nodes.next();
+                for (int id : node.getPostings().toArray()) {
+                    BSTree<String> shared = tree == movieTree ? sharedMovieTree : sharedStudioTree;
+                    shared.insertPosting(node.getKey(), tree.getDocuments().get(id));
+                }
+            }
+        }
+        IndexSnapshot.write(sharedMovieTree, sharedStudioTree, ratingTree, mySnapshot.getPath());
+        long sharedLength = mySnapshot.length();
+        IndexSnapshot.write(movieTree, studioTree, ratingTree, mySnapshot.getPath());
+        assertTrue(sharedLength < mySnapshot.length()); // the titles are written once
+        IndexSnapshot.write(sharedMovieTree, sharedStudioTree, ratingTree, mySnapshot.getPath());
+        // into trees sharing a dictionary, and into trees with one each
+        DocumentDictionary<String> openedTitles = new DocumentDictionary<>();
+        BSTree<String> openedMovieTree = new BSTree<>(true, openedTitles);
+        BSTree<String> openedStudioTree = new BSTree<>(true, openedTitles);
+        BSTree<String> openedRatingTree = new BSTree<>(true);
+        IndexSnapshot.open(openedMovieTree, openedStudioTree, openedRatingTree, mySnapshot.getPath());
+        assertEquals(titles.size(), openedTitles.size());
+        assertEquals(sharedStudioTree.findPostings("studio-0"),
+                openedStudioTree.findPostings("studio-0"));
+        BSTree<String> ownMovieTree = new BSTree<>(true);
+        BSTree<String> ownStudioTree = new BSTree<>(true);
+        IndexSnapshot.open(ownMovieTree, ownStudioTree, new BSTree<>(true), mySnapshot.getPath());
+        for (BSTree<String> opened : Arrays.asList(openedMovieTree, ownMovieTree)) {
+            assertEquals(TestTrees.sortedContents(movieTree), TestTrees.sortedContents(opened));
+        }
+        for (BSTree<String> opened : Arrays.asList(openedStudioTree, ownStudioTree)) {
+            assertEquals(TestTrees.sortedContents(studioTree), TestTrees.sortedContents(opened));
+        }
+        assertEquals(TestTrees.sortedContents(ratingTree), TestTrees.sortedContents(openedRatingTree));
+    }
+
+    @org.junit.Test
+    public void openIntoSharedTitles() throws IOException {
+        // the studio tree numbers its titles in another order than the movie tree
+        BSTree<String> ownMovieTree = new BSTree<>(true);
+        BSTree<String> ownStudioTree = new BSTree<>(true);
+        ownMovieTree.insertPosting("actor-a", "movie-1");
+        ownMovieTree.insertPosting("actor-b", "movie-2");
+        ownStudioTree.insertPosting("studio-a", "movie-3");
+        ownStudioTree.insertPosting("studio-a", "movie-2");
+        ownStudioTree.insertPosting("studio-b", "movie-1");
+        IndexSnapshot.write(ownMovieTree, ownStudioTree, ratingTree, mySnapshot.getPath());
+        DocumentDictionary<String> titles = new DocumentDictionary<>();
+        BSTree<String> openedMovieTree = new BSTree<>(true, titles);
+        BSTree<String> openedStudioTree = new BSTree<>(true, titles);
+        IndexSnapshot.open(openedMovieTree, openedStudioTree, new BSTree<>(true),
+                mySnapshot.getPath());
+        assertEquals(3, titles.size());
+        assertEquals(TestTrees.sortedContents(ownMovieTree), TestTrees.sortedContents(openedMovieTree));
+        assertEquals(TestTrees.sortedContents(ownStudioTree), TestTrees.sortedContents(openedStudioTree));
+        assertEquals(titles.find("movie-1"),
+                openedStudioTree.findPostings("studio-b").toArray()[0]);
+    }
+
+    @org.junit.Test
+    public void isSnapshot() {
+        assertFalse(IndexSnapshot.isSnapshot(mySnapshot.getPath()));
+        assertFalse(IndexSnapshot.isSnapshot("missing.idx"));
+    }
+
+    @org.junit.Test (expected = IOException.class)
+    public void openCorrupt() throws IOException {
+        IndexSnapshot.write(movieTree, studioTree, ratingTree, mySnapshot.getPath());
+        byte[] bytes = Files.readAllBytes(mySnapshot.toPath());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(mySnapshot.toPath(), bytes);
+        IndexSnapshot.open(new BSTree<>(true), new BSTree<>(true), new BSTree<>(true),
+                mySnapshot.getPath());
+    }
+
+    @org.junit.Test (expected = IOException.class)
+    public void openNotSnapshot() throws IOException {
+        Files.write(mySnapshot.toPath(), new byte[100]);
+        IndexSnapshot.open(new BSTree<>(true), new BSTree<>(true), new BSTree<>(true),
+                mySnapshot.getPath());
+    }
+
+    @org.junit.Test (expected = IllegalStateException.class)
+    public void openNotEmpty() throws IOException {
+        IndexSnapshot.write(movieTree, studioTree, ratingTree, mySnapshot.getPath());
+        IndexSnapshot.open(movieTree, new BSTree<>(true), new BSTree<>(true), mySnapshot.getPath());
+    }
+}
@@ -0,0 +1,99 @@
+import java.io.IOException;
+
+/**
+ * Thrown when a record of a movie data file does not have the expected
+ * movie, cast, studios, rating and '-' lines.
+ */
+public class MalformedRecordException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long lineNumber; // line on which the problem was found
+    private final long recordStart; // first line of the record, 0 if unknown
+    private final String problem; // description, refers to recordStart as %d
+
+    /**
+     * A constructor that initializes the exception.
+     *
+     * @param lineNumber Line on which the problem was found, starting at 1
+     * @param message    Description of the problem
+     */
+    public MalformedRecordException(long lineNumber, String message) {
+        this(lineNumber, 0, message.replace("%", "%%"));
+    }
+
+    /**
+     * A constructor that initializes the exception for a problem with the
+     * record starting on line 'recordStart'.
+     *
+     * @param lineNumber  Line on which the problem was found, starting at 1
+     * @param recordStart First line of the record, 0 if unknown
+     * @param problem     Description of the problem, with %d standing for
+     *                    recordStart
+     */
+    private MalformedRecordException(long lineNumber, long recordStart, String problem) {
+        super("line " + lineNumber + ": " + String.format(problem, recordStart));
+        this.lineNumber = lineNumber;
+        this.recordStart = recordStart;
+        this.problem = problem;
+    }
+
+    /**
+     * Return an exception for a separator that comes too early
+     *
+     * @param lineNumber Line of the separator
+     * @param start      First line of the record, 0 if it has none
+     * @param count      Number of lines the record has
+     * @return The exception
+     */
+    static MalformedRecordException missingLines(long lineNumber, long start, int count) {
+        return new MalformedRecordException(lineNumber, start, count == 0
+                ? "empty record"
+                : "record starting on line %d has " + count + " of 4 lines");
+    }
+
+    /**
+     * Return an exception for a line where the separator was expected
+     *
+     * @param lineNumber Line that should have been the separator
+     * @param start      First line of the record
+     * @return The exception
+     */
+    static MalformedRecordException extraLine(long lineNumber, long start) {
+        return new MalformedRecordException(lineNumber, start,
+                "expected '-' after the rating of the record starting on line %d");
+    }
+
+    /**
+     * Return an exception for a file that ends inside a record
+     *
+     * @param lineNumber Last line of the file
+     * @param start      First line of the record
+     * @return The exception
+     */
+    static MalformedRecordException truncated(long lineNumber, long start) {
+        return new MalformedRecordException(lineNumber, start,
+                "file ends inside the record starting on line %d");
+    }
+
+    /**
+     * Return the same problem found 'lines' lines further into the file,
+     * for records read from a part of the file that does not start at its
+     * first line
+     *
+     * @param lines Number of lines before the part that was read
+     * @return The shifted exception
+     */
+    MalformedRecordException shift(long lines) {
+        return new MalformedRecordException(this.lineNumber + lines,
+                this.recordStart == 0 ? 0 : this.recordStart + lines, this.problem);
+    }
+
+    /**
+     * Return the line on which the problem was found
+     *
+     * @return The line number, starting at 1
+     */
+    public long getLineNumber() {
+        return this.lineNumber;
+    }
+}
@@ -0,0 +1,448 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped reader for movie data files. Finds line ends directly in
+ * the mapped bytes and copies each line out with a single bulk get into a
+ * reused array, where it is trimmed and split. It builds a String for an
+ * actor, studio or rating only the first time it is seen; later
+ * occurrences are matched on their bytes and share that String. Files
+ * larger than the mapping window are mapped one window at a time, moving
+ * the window forward whenever a line runs past its end.
+ */
+public class MappedMovieReader implements RecordSource {
+    static final long DEFAULT_WINDOW = 1L << 30; // bytes mapped at a time
+    private static final int FIELDS = 4; // movie, cast, studios, rating
+    private static final int INITIAL_KEYS = 1024; // initial size of the key table
+
+    private final FileChannel channel;
+    private final long rangeEnd; // file offset where reading stops
+    private final long windowSize;
+    private MappedByteBuffer buffer; // currently mapped window
+    private long windowStart; // file offset of the window
+    private int pos; // next byte to read in the window
+    private long lineNumber; // number of lines read so far
+    private byte[] line = new byte[256]; // bytes of the last line read
+    private int lineStart; // trimmed bounds of the last line read in line
+    private int lineEnd;
+
+    // open addressing table of the distinct keys read so far
+    private String[] keys;
+    private byte[][] keyBytes;
+    private int[] keyHashes;
+    private int keyCount;
+
+    private String[] tokens = new String[16]; // scratch space for splitting lines
+
+    /**
+     * A constructor that reads records from a file channel.
+     *
+     * @param channel    Channel of the file to read
+     * @param windowSize Number of bytes to map at a time
+     * @throws IOException If the file cannot be mapped
+     */
+    MappedMovieReader(FileChannel channel, long windowSize) throws IOException {
+        this(channel, 0, channel.size(), windowSize);
+    }
+
+    /**
+     * A constructor that reads the records of part of a file. The part
+     * should start at the beginning of a record; line numbers count from
+     * its start.
+     *
+     * @param channel    Channel of the file to read
+     * @param start      File offset to start reading at
+     * @param end        File offset to stop reading at
+     * @param windowSize Number of bytes to map at a time
+     * @throws IOException If the file cannot be mapped
+     */
+    MappedMovieReader(FileChannel channel, long start, long end, long windowSize) throws IOException {
+        this.channel = channel;
+        this.rangeEnd = end;
+        this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);
+        this.keys = new String[INITIAL_KEYS];
+        this.keyBytes = new byte[INITIAL_KEYS][];
+        this.keyHashes = new int[INITIAL_KEYS];
+        map(start);
+    }
+
+    /**
+     * Split a movie data file into about 'parts' byte ranges that each
+     * start at the beginning of a record, so that they can be read
+     * independently. Every range but the first starts right after a
+     * separator line.
+     *
+     * @param channel Channel of the file to split
+     * @param parts   Number of ranges wanted
+     * @return Offsets of the range boundaries, starting with 0 and ending
+     *         with the file size
+     * @throws IOException If the file cannot be read
+     */
+    static long[] splitRecords(FileChannel channel, int parts) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[parts + 1];
+        int count = 1;
+        ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+        for (int i = 1; i < parts; i++) {
+            long target = Math.max(size * i / parts, bounds[count - 1]);
+            long boundary = nextRecordStart(channel, target, chunk);
+            if (boundary > bounds[count - 1] && boundary < size) {
+                bounds[count++] = boundary;
+            }
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Return the offset right after the first separator line that starts
+     * after 'offset'
+     *
+     * @param channel Channel of the file
+     * @param offset  File offset to search from
+     * @param chunk   Buffer to read the file through
+     * @return Offset of the next record, the file size if there is none
+     * @throws IOException If the file cannot be read
+     */
+    private static long nextRecordStart(FileChannel channel, long offset, ByteBuffer chunk)
+            throws IOException {
+        boolean atLineStart = false; // the line being scanned started after offset
+        int lineLength = 0; // non-whitespace bytes on the current line
+        boolean dash = false; // whether those bytes are a single '-'
+        long pos = offset;
+        while (true) {
+            chunk.clear();
+            int read = channel.read(chunk, pos);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = chunk.get(i);
+                if (b == '\n') {
+                    if (atLineStart && lineLength == 1 && dash) {
+                        return pos + i + 1;
+                    }
+                    atLineStart = true;
+                    lineLength = 0;
+                    dash = false;
+                } else if ((b & 0xFF) > ' ') {
+                    lineLength++;
+                    dash = b == '-';
+                }
+            }
+            pos += read;
+        }
+    }
+
+    /**
+     * Open and map a movie data file
+     *
+     * @param fileName Name of the file
+     * @return A reader positioned at the first record
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    public static MappedMovieReader open(String fileName) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            return new MappedMovieReader(channel, DEFAULT_WINDOW);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Return the number of lines read so far
+     *
+     * @return The number of lines read
+     */
+    public long getLineNumber() {
+        return this.lineNumber;
+    }
+
+    /**
+     * Read the next record. Blank lines between records are skipped, and
+     * the separator after the last record may be left out.
+     *
+     * @return The next record, null at the end of the file
+     * @throws MalformedRecordException If the record is missing lines or
+     *         has extra ones; the reader is left at the start of the next
+     *         record
+     * @throws IOException If the file cannot be read
+     */
+    @Override
+    public MovieRecord next() throws IOException {
+        String title = null;
+        String[] cast = null;
+        String[] studios = null;
+        String rating = null;
+        int count = 0;
+        long start = 0;
+        while (readLine()) {
+            if (isSeparator()) {
+                if (count == FIELDS) {
+                    return new MovieRecord(title, cast, studios, rating);
+                }
+                throw MalformedRecordException.missingLines(this.lineNumber, start, count);
+            }
+            if (count == 0 && this.lineStart == this.lineEnd) {
+                continue;
+            }
+            if (count == FIELDS) {
+                long extra = this.lineNumber;
+                skipRecord();
+                throw MalformedRecordException.extraLine(extra, start);
+            }
+            if (count == 0) {
+                start = this.lineNumber;
+                title = decode(this.lineStart, this.lineEnd);
+            } else if (count == 1) {
+                cast = splitLine();
+            } else if (count == 2) {
+                studios = splitLine();
+            } else {
+                rating = intern(this.lineStart, this.lineEnd, hash(this.lineStart, this.lineEnd));
+            }
+            count++;
+        }
+        if (count == 0) {
+            return null;
+        }
+        if (count == FIELDS) {
+            return new MovieRecord(title, cast, studios, rating);
+        }
+        throw MalformedRecordException.truncated(this.lineNumber, start);
+    }
+
+    /**
+     * Map the window of the file starting at 'offset'
+     *
+     * @param offset File offset of the window
+     * @throws IOException If the file cannot be mapped
+     */
+    private void map(long offset) throws IOException {
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                Math.min(this.windowSize, this.rangeEnd - offset));
+        this.windowStart = offset;
+        this.pos = 0;
+    }
+
+    /**
+     * Find the next line and store its bounds, without leading and trailing
+     * whitespace, in lineStart and lineEnd
+     *
+     * @return True if a line was read, false at the end of the file
+     * @throws IOException If the file cannot be mapped or a line does not
+     *         fit into the mapping window
+     */
+    private boolean readLine() throws IOException {
+        while (true) {
+            int limit = this.buffer.limit();
+            int end = nextNewline(this.pos, limit);
+            if (end == limit && this.windowStart + limit < this.rangeEnd) {
+                if (this.pos == 0) {
+                    throw new IOException("line " + (this.lineNumber + 1)
+                            + " is longer than the mapping window");
+                }
+                map(this.windowStart + this.pos);
+                continue;
+            }
+            if (this.pos == limit) {
+                return false;
+            }
+            int length = end - this.pos;
+            if (length > this.line.length) {
+                this.line = new byte[Math.max(length, 2 * this.line.length)];
+            }
+            // one bulk copy per line, then everything else works on the array
+            this.buffer.get(this.pos, this.line, 0, length);
+            this.pos = end < limit ? end + 1 : end;
+            this.lineNumber++;
+            int start = 0;
+            while (start < length && (this.line[start] & 0xFF) <= ' ') {
+                start++;
+            }
+            while (length > start && (this.line[length - 1] & 0xFF) <= ' ') {
+                length--;
+            }
+            this.lineStart = start;
+            this.lineEnd = length;
+            return true;
+        }
+    }
+
+    /**
+     * Return the position of the first newline of the window from 'from' on.
+     * Looks at 8 bytes per step: a byte of a long is zero after xor-ing
+     * with newlines exactly where there was a newline, and the zero bytes
+     * are found without carries from one byte into the next.
+     *
+     * @param from  First byte to look at
+     * @param limit End of the window
+     * @return The position of the newline, limit if there is none
+     */
+    private int nextNewline(int from, int limit) {
+        int i = from;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            long word = this.buffer.getLong(i) ^ 0x0A0A0A0A0A0A0A0AL;
+            long zeros = ~(((word & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL) | word
+                    | 0x7F7F7F7F7F7F7F7FL);
+            if (zeros != 0) {
+                // mapped buffers are big-endian, so the first byte is the highest
+                return i + (Long.numberOfLeadingZeros(zeros) >>> 3);
+            }
+        }
+        while (i < limit && this.buffer.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Return whether the last line read is a record separator
+     *
+     * @return True if the line is "-", false otherwise
+     */
+    private boolean isSeparator() {
+        return this.lineEnd - this.lineStart == 1 && this.line[this.lineStart] == '-';
+    }
+
+    /**
+     * Skip the rest of the current record, up to and including its separator
+     *
+     * @throws IOException If the file cannot be read
+     */
+    private void skipRecord() throws IOException {
+        while (readLine()) {
+            if (isSeparator()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Split the last line read on spaces, ignoring empty tokens
+     *
+     * @return The interned tokens of the line
+     */
+    private String[] splitLine() {
+        int count = 0;
+        int i = this.lineStart;
+        while (i < this.lineEnd) {
+            while (i < this.lineEnd && this.line[i] == ' ') {
+                i++;
+            }
+            int start = i;
+            int hash = 0;
+            byte b;
+            while (i < this.lineEnd && (b = this.line[i]) != ' ') {
+                hash = 31 * hash + b;
+                i++;
+            }
+            if (i > start) {
+                if (count == this.tokens.length) {
+                    this.tokens = Arrays.copyOf(this.tokens, count * 2);
+                }
+                this.tokens[count++] = intern(start, i, hash);
+            }
+        }
+        return Arrays.copyOf(this.tokens, count);
+    }
+
+    /**
+     * Decode bytes of the last line read as UTF-8
+     *
+     * @param start First byte
+     * @param end   End of the bytes, exclusive
+     * @return The decoded String
+     */
+    private String decode(int start, int end) {
+        return new String(this.line, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return the hash of bytes of the last line read
+     *
+     * @param start First byte
+     * @param end   End of the bytes, exclusive
+     * @return The hash of the bytes
+     */
+    private int hash(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + this.line[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Return the String for bytes of the last line read, decoding them only if the
+     * same bytes have not been seen before
+     *
+     * @param start First byte
+     * @param end   End of the bytes, exclusive
+     * @param hash  Hash of the bytes
+     * @return The shared String for these bytes
+     */
+    private String intern(int start, int end, int hash) {
+        int mask = this.keys.length - 1;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (this.keys[slot] != null) {
+            if (this.keyHashes[slot] == hash
+                    && Arrays.equals(this.keyBytes[slot], 0, this.keyBytes[slot].length,
+                            this.line, start, end)) {
+                return this.keys[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        byte[] bytes = Arrays.copyOfRange(this.line, start, end);
+        String key = new String(bytes, StandardCharsets.UTF_8);
+        this.keys[slot] = key;
+        this.keyBytes[slot] = bytes;
+        this.keyHashes[slot] = hash;
+        if (++this.keyCount * 2 > this.keys.length) {
+            growKeys();
+        }
+        return key;
+    }
+
+    /**
+     * Double the size of the key table
+     */
+    private void growKeys() {
+        String[] oldKeys = this.keys;
+        byte[][] oldBytes = this.keyBytes;
+        int[] oldHashes = this.keyHashes;
+        this.keys = new String[oldKeys.length * 2];
+        this.keyBytes = new byte[oldKeys.length * 2][];
+        this.keyHashes = new int[oldKeys.length * 2];
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = (oldHashes[i] ^ oldHashes[i] >>> 16) & mask;
+                while (this.keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.keyBytes[slot] = oldBytes[i];
+                this.keyHashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    /**
+     * Close the file. The mapped window is released once it is garbage
+     * collected.
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,139 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Actor, studio and rating trees over one shared dictionary of movie
+ * titles, so that the posting lists of different fields can be combined
+ * by document id. This is what BooleanQuery evaluates against; the
+ * separate trees of SearchEngine each number their documents themselves,
+ * and their rating tree maps actors to ratings rather than ratings to
+ * movies.
+ */
+public class MovieIndex {
+    static final String ACTOR = "actor";
+    static final String STUDIO = "studio";
+    static final String RATING = "rating";
+
+    private final DocumentDictionary<String> titles; // shared by the trees
+    private final BSTree<String> actorTree; // actor to titles
+    private final BSTree<String> studioTree; // studio to titles
+    private final BSTree<String> ratingTree; // rating to titles
+
+    /**
+     * 0-arg constructor that initializes an empty index
+     */
+    public MovieIndex() {
+        this.titles = new DocumentDictionary<>();
+        this.actorTree = new BSTree<>(true, this.titles);
+        this.studioTree = new BSTree<>(true, this.titles);
+        this.ratingTree = new BSTree<>(true, this.titles);
+    }
+
+    /**
+     * Add a movie to the index
+     *
+     * @param record Movie to be added
+     */
+    public void add(MovieRecord record) {
+        SearchEngine.makeTreeHelper(this.actorTree, record.getCast(), record.getTitle());
+        SearchEngine.makeTreeHelper(this.studioTree, record.getStudios(), record.getTitle());
+        this.ratingTree.insertPosting(record.getRating(), record.getTitle());
+    }
+
+    /**
+     * Populate the index from a movie data file, then compress its posting
+     * lists. Malformed records are reported on System.err and skipped.
+     *
+     * @param fileName Name of the input file
+     * @return false if file not found or unreadable, true otherwise
+     */
+    public boolean populate(String fileName) {
+        try (MovieRecordReader reader = MovieRecordReader.open(fileName)) {
+            while (true) {
+                MovieRecord record;
+                try {
+                    record = reader.next();
+                } catch (MalformedRecordException e) {
+                    System.err.println("Skipping malformed record in " + fileName
+                            + ", " + e.getMessage());
+                    continue;
+                }
+                if (record == null) {
+                    break;
+                }
+                add(record);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        this.actorTree.compressPostings();
+        this.studioTree.compressPostings();
+        this.ratingTree.compressPostings();
+        return true;
+    }
+
+    /**
+     * Return the posting list of a key in one field. Actors and studios
+     * are matched in lower case and ratings in upper case.
+     *
+     * @param field Field name: actor, studio or rating
+     * @param key   Key to look up
+     * @return The title ids of the key, null if the key is absent
+     * @throws IllegalArgumentException If the field is unknown
+     */
+    public PostingList findPostings(String field, String key) {
+        switch (field) {
+            case ACTOR:
+                return this.actorTree.findPostings(key.toLowerCase(Locale.ROOT));
+            case STUDIO:
+                return this.studioTree.findPostings(key.toLowerCase(Locale.ROOT));
+            case RATING:
+                return this.ratingTree.findPostings(key.toUpperCase(Locale.ROOT));
+            default:
+                throw new IllegalArgumentException("unknown field " + field);
+        }
+    }
+
+    /**
+     * Return the dictionary of movie titles
+     *
+     * @return The titles, by id
+     */
+    public DocumentDictionary<String> getTitles() {
+        return this.titles;
+    }
+
+    /**
+     * Return the movies that match the most and the rarest actors and
+     * studios of a query. Every word is looked up as an actor and as a
+     * studio, and each match weighs by its own rarity.
+     *
+     * @param query Actors and studios, separated by spaces
+     * @param top   Largest number of movies to return
+     * @return The best movies, best first
+     * @throws IllegalArgumentException If top is negative
+     */
+    public List<RankedSearch.Hit> rank(String query, int top) {
+        List<PostingList> clauses = new ArrayList<>();
+        for (String key : query.trim().split("\\s+")) {
+            if (!key.isEmpty()) {
+                clauses.add(findPostings(ACTOR, key));
+                clauses.add(findPostings(STUDIO, key));
+            }
+        }
+        return RankedSearch.top(this.titles, clauses, top);
+    }
+
+    /**
+     * Return the ids of the movies matching a query
+     *
+     * @param query Query in the language of BooleanQuery
+     * @return The title ids
+     * @throws IllegalArgumentException If the query is not well formed
+     */
+    public PostingList search(String query) {
+        return BooleanQuery.parse(query).evaluate(this);
+    }
+}
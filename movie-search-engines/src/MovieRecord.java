@@ -0,0 +1,60 @@
+/**
+ * One movie of a movie data file: its title, cast, studios and rating.
+ */
+public class MovieRecord {
+    private final String title;
+    private final String[] cast;
+    private final String[] studios;
+    private final String rating;
+
+    /**
+     * A constructor that initializes the MovieRecord instance variables.
+     *
+     * @param title   Movie title
+     * @param cast    Actors in the movie
+     * @param studios Studios that made the movie
+     * @param rating  Movie rating
+     */
+    public MovieRecord(String title, String[] cast, String[] studios, String rating) {
+        this.title = title;
+        this.cast = cast;
+        this.studios = studios;
+        this.rating = rating;
+    }
+
+    /**
+     * Return the movie title
+     *
+     * @return The movie title
+     */
+    public String getTitle() {
+        return this.title;
+    }
+
+    /**
+     * Return the actors in the movie
+     *
+     * @return The actors in the movie
+     */
+    public String[] getCast() {
+        return this.cast;
+    }
+
+    /**
+     * Return the studios that made the movie
+     *
+     * @return The studios that made the movie
+     */
+    public String[] getStudios() {
+        return this.studios;
+    }
+
+    /**
+     * Return the movie rating
+     *
+     * @return The movie rating
+     */
+    public String getRating() {
+        return this.rating;
+    }
+}
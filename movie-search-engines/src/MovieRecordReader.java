@@ -0,0 +1,164 @@
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming reader for movie data files. Every record is five lines: movie,
+ * cast, studios, rating and a trailing hyphen. Lines are split on spaces
+ * without regular expressions, and a malformed record is reported with its
+ * line number, after which reading continues with the next record.
+ */
+public class MovieRecordReader implements RecordSource {
+    static final String SEPARATOR = "-"; // line that ends a record
+    private static final int FIELDS = 4; // movie, cast, studios, rating
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final BufferedReader reader;
+    private long lineNumber; // number of lines read so far
+
+    /**
+     * A constructor that reads records from a character stream.
+     *
+     * @param in Stream to read from
+     */
+    public MovieRecordReader(Reader in) {
+        this.reader = new BufferedReader(in, BUFFER_SIZE);
+        this.lineNumber = 0;
+    }
+
+    /**
+     * Open a movie data file
+     *
+     * @param fileName Name of the file
+     * @return A reader positioned at the first record
+     * @throws FileNotFoundException If the file cannot be opened
+     */
+    public static MovieRecordReader open(String fileName) throws FileNotFoundException {
+        return new MovieRecordReader(new InputStreamReader(
+                new FileInputStream(fileName), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Return the number of lines read so far
+     *
+     * @return The number of lines read
+     */
+    public long getLineNumber() {
+        return this.lineNumber;
+    }
+
+    /**
+     * Read the next record. Blank lines between records are skipped, and
+     * the separator after the last record may be left out.
+     *
+     * @return The next record, null at the end of the stream
+     * @throws MalformedRecordException If the record is missing lines or
+     *         has extra ones; the reader is left at the start of the next
+     *         record
+     * @throws IOException If the stream cannot be read
+     */
+    @Override
+    public MovieRecord next() throws IOException {
+        String[] fields = new String[FIELDS];
+        int count = 0;
+        long start = 0;
+        String line;
+        while ((line = this.reader.readLine()) != null) {
+            this.lineNumber++;
+            line = line.trim();
+            if (line.equals(SEPARATOR)) {
+                if (count == FIELDS) {
+                    return toRecord(fields);
+                }
+                throw MalformedRecordException.missingLines(this.lineNumber, start, count);
+            }
+            if (count == 0 && line.isEmpty()) {
+                continue;
+            }
+            if (count == FIELDS) {
+                long extra = this.lineNumber;
+                skipRecord();
+                throw MalformedRecordException.extraLine(extra, start);
+            }
+            if (count == 0) {
+                start = this.lineNumber;
+            }
+            fields[count++] = line;
+        }
+        if (count == 0) {
+            return null;
+        }
+        if (count == FIELDS) {
+            return toRecord(fields);
+        }
+        throw MalformedRecordException.truncated(this.lineNumber, start);
+    }
+
+    /**
+     * Skip the rest of the current record, up to and including its separator
+     *
+     * @throws IOException If the stream cannot be read
+     */
+    private void skipRecord() throws IOException {
+        String line;
+        while ((line = this.reader.readLine()) != null) {
+            this.lineNumber++;
+            if (line.trim().equals(SEPARATOR)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Build a record from its four lines
+     *
+     * @param fields Movie, cast, studios and rating lines
+     * @return The record
+     */
+    private static MovieRecord toRecord(String[] fields) {
+        return new MovieRecord(fields[0], tokens(fields[1]), tokens(fields[2]), fields[3]);
+    }
+
+    /**
+     * Split a line on spaces, ignoring empty tokens
+     *
+     * @param line Line to split
+     * @return The tokens of the line
+     */
+    static String[] tokens(String line) {
+        int count = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) != ' ' && (i == 0 || line.charAt(i - 1) == ' ')) {
+                count++;
+            }
+        }
+        String[] tokens = new String[count];
+        int n = 0;
+        int i = 0;
+        while (n < count) {
+            while (line.charAt(i) == ' ') {
+                i++;
+            }
+            int end = line.indexOf(' ', i);
+            if (end < 0) {
+                end = line.length();
+            }
+            tokens[n++] = line.substring(i, end);
+            i = end;
+        }
+        return tokens;
+    }
+
+    /**
+     * Close the underlying stream
+     *
+     * @throws IOException If the stream cannot be closed
+     */
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class MovieRecordReaderTester {
+
+    /**
+     * Return a reader over the given lines
+     */
+    private static MovieRecordReader reader(String... lines) {
+        return new MovieRecordReader(new StringReader(String.join("\n", lines)));
+    }
+
+    @org.junit.Test
+    public void next() throws IOException {
+        MovieRecordReader myReader = reader("iron-man-2", "robert-downey-jr  don-cheadle ",
+                "paramount", "PG13", "-", "", "dolittle", "tom-holland", "universal", "PG", "-");
+        MovieRecord record = myReader.next();
+        assertEquals("iron-man-2", record.getTitle());
+        assertArrayEquals(new String[] {"robert-downey-jr", "don-cheadle"}, record.getCast());
+        assertArrayEquals(new String[] {"paramount"}, record.getStudios());
+        assertEquals("PG13", record.getRating());
+        assertEquals("dolittle", myReader.next().getTitle());
+        assertNull(myReader.next());
+        assertNull(myReader.next());
+    }
+
+    @org.junit.Test
+    public void missingLastSeparator() throws IOException {
+        MovieRecordReader myReader = reader("chef", "jon-favreau", "open-road", "R");
+        assertEquals("R", myReader.next().getRating());
+        assertNull(myReader.next());
+    }
+
+    @org.junit.Test
+    public void truncatedRecord() throws IOException {
+        MovieRecordReader myReader = reader("chef", "jon-favreau", "open-road", "R", "-",
+                "solo", "alden-ehrenreich");
+        myReader.next();
+        try {
+            myReader.next();
+            fail();
+        } catch (MalformedRecordException e) {
+            assertEquals(7, e.getLineNumber());
+        }
+        assertNull(myReader.next());
+    }
+
+    @org.junit.Test
+    public void missingLine() throws IOException {
+        MovieRecordReader myReader = reader("chef", "jon-favreau", "R", "-",
+                "solo", "alden-ehrenreich", "disney", "PG13", "-");
+        try {
+            myReader.next();
+            fail();
+        } catch (MalformedRecordException e) {
+            assertEquals(4, e.getLineNumber());
+        }
+        assertEquals("solo", myReader.next().getTitle());
+    }
+
+    @org.junit.Test
+    public void extraLine() throws IOException {
+        MovieRecordReader myReader = reader("chef", "jon-favreau", "open-road", "R", "oops",
+                "more", "-", "solo", "alden-ehrenreich", "disney", "PG13", "-");
+        try {
+            myReader.next();
+            fail();
+        } catch (MalformedRecordException e) {
+            assertEquals(5, e.getLineNumber());
+        }
+        assertEquals("solo", myReader.next().getTitle());
+        assertEquals(12, myReader.getLineNumber());
+    }
+
+    /**
+     * Return a mapped reader over the given lines, mapping 'window' bytes
+     * at a time
+     */
+    private static MappedMovieReader mappedReader(long window, String... lines) throws IOException {
+        File file = File.createTempFile("moviedata", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), String.join("\n", lines).getBytes("UTF-8"));
+        return new MappedMovieReader(FileChannel.open(file.toPath(), StandardOpenOption.READ), window);
+    }
+
+    @org.junit.Test
+    public void mappedNext() throws IOException {
+        String[] lines = {"iron-man-2", "robert-downey-jr  don-cheadle ", "paramount", "PG13", "-",
+                "", "dolittle", "tom-holland robert-downey-jr", "universal", "PG", "-",
+                "am\u00e9lie", "audrey-tautou", "ugc", "R"};
+        for (long window : new long[] {MappedMovieReader.DEFAULT_WINDOW, 40}) {
+            MappedMovieReader myReader = mappedReader(window, lines);
+            MovieRecord first = myReader.next();
+            assertEquals("iron-man-2", first.getTitle());
+            assertArrayEquals(new String[] {"robert-downey-jr", "don-cheadle"}, first.getCast());
+            assertArrayEquals(new String[] {"paramount"}, first.getStudios());
+            assertEquals("PG13", first.getRating());
+            MovieRecord second = myReader.next();
+            assertEquals("dolittle", second.getTitle());
+            // repeated keys share one String
+            assertSame(first.getCast()[0], second.getCast()[1]);
+            assertEquals("am\u00e9lie", myReader.next().getTitle());
+            assertNull(myReader.next());
+            assertEquals(15, myReader.getLineNumber());
+            myReader.close();
+        }
+    }
+
+    @org.junit.Test
+    public void mappedMalformed() throws IOException {
+        MappedMovieReader myReader = mappedReader(32, "chef", "jon-favreau", "R", "-",
+                "solo", "alden-ehrenreich", "disney", "PG13", "oops", "-",
+                "avengers", "chris-evans", "disney", "PG13", "-", "cars");
+        try {
+            myReader.next();
+            fail();
+        } catch (MalformedRecordException e) {
+            assertEquals(4, e.getLineNumber());
+        }
+        try {
+            myReader.next();
+            fail();
+        } catch (MalformedRecordException e) {
+            assertEquals(9, e.getLineNumber());
+        }
+        assertEquals("avengers", myReader.next().getTitle());
+        try {
+            myReader.next();
+            fail();
+        } catch (MalformedRecordException e) {
+            assertEquals(16, e.getLineNumber());
+        }
+        assertNull(myReader.next());
+        myReader.close();
+    }
+
+    @org.junit.Test
+    public void mappedNewlineLookalikes() throws IOException {
+        // bytes that differ from '\n' by one bit, and a line longer than
+        // the reader's initial line buffer
+        String title = "a\u000bb\u008ac\u000ed";
+        StringBuilder cast = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            cast.append(" actor-").append(i);
+        }
+        for (long window : new long[] {MappedMovieReader.DEFAULT_WINDOW, 1024}) {
+            MappedMovieReader myReader = mappedReader(window, title, cast.toString(), "ugc", "R",
+                    "-", "up", "ed-asner", "pixar", "PG");
+            MovieRecord first = myReader.next();
+            assertEquals(title, first.getTitle());
+            assertEquals(100, first.getCast().length);
+            assertEquals("actor-99", first.getCast()[99]);
+            assertEquals("up", myReader.next().getTitle());
+            assertNull(myReader.next());
+            myReader.close();
+        }
+    }
+
+    @org.junit.Test (expected = IOException.class)
+    public void mappedLineLongerThanWindow() throws IOException {
+        mappedReader(8, "a-very-long-title", "cast", "studio", "R", "-").next();
+    }
+
+    @org.junit.Test
+    public void tokens() {
+        assertArrayEquals(new String[] {"a", "bc", "d"}, MovieRecordReader.tokens(" a bc  d "));
+        assertArrayEquals(new String[0], MovieRecordReader.tokens(""));
+    }
+}
@@ -0,0 +1,226 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the search trees of a movie data file on several threads. The file
+ * is split into record-aligned parts that are memory-mapped, parsed and
+ * indexed in parallel, each into partial indexes of its own with local
+ * document ids. The partial indexes are then merged: the documents are
+ * numbered in file order, the sorted keys of every tree are split into
+ * ranges whose posting lists are merged in parallel, and each tree is
+ * bulk-loaded from its merged groups. The trees hold exactly the keys,
+ * documents and document ids a sequential load would give them.
+ */
+public class ParallelIndexBuilder {
+    private static final int PARTS_PER_THREAD = 4; // keeps every thread busy
+    private static final int TREES = 3;
+
+    /**
+     * Postings of one tree for one part of the file, with document ids
+     * local to the part
+     */
+    private static class Partial {
+        final HashMap<String, PostingList> postings = new HashMap<>();
+        final HashMap<String, Integer> documentIds = new HashMap<>();
+        final List<String> documents = new ArrayList<>(); // in order of first posting
+        int[] globalIds; // id in the tree's dictionary of every local document
+
+        /**
+         * Add a document to the posting list of each of its keys, as
+         * SearchEngine.makeTreeHelper does
+         *
+         * @param keys Keys of the document
+         * @param data Document
+         */
+        void add(String[] keys, String data) {
+            if (keys.length == 0) {
+                return; // a document without keys is never numbered
+            }
+            Integer id = this.documentIds.get(data);
+            if (id == null) {
+                id = this.documents.size();
+                this.documentIds.put(data, id);
+                this.documents.add(data);
+            }
+            for (String key : keys) {
+                this.postings.computeIfAbsent(key, k -> new PostingList()).add(id);
+            }
+        }
+    }
+
+    /**
+     * Partial indexes and problems found in one part of the file
+     */
+    private static class Part {
+        final Partial[] trees = {new Partial(), new Partial(), new Partial()};
+        final List<MalformedRecordException> problems = new ArrayList<>();
+        long lines; // number of lines in the part
+    }
+
+    /**
+     * Populate empty BSTrees from a file on 'threads' threads. Malformed
+     * records are reported on System.err and skipped.
+     *
+     * @param movieTree  - empty BST to be populated with actors
+     * @param studioTree - empty BST to be populated with studios
+     * @param ratingTree - empty BST to be populated with ratings
+     * @param fileName   - name of the input file
+     * @param threads    - number of threads parsing and building
+     * @return false if file not found or unreadable, true otherwise
+     * @throws IllegalArgumentException If threads is less than 1
+     * @throws IllegalStateException    If one of the trees is not empty
+     */
+    public static boolean populateSearchTrees(
+            BSTree<String> movieTree, BSTree<String> studioTree,
+            BSTree<String> ratingTree, String fileName, int threads
+    ) {
+        if (threads < 1) {
+            throw new IllegalArgumentException();
+        }
+        if (movieTree.getSize() != 0 || studioTree.getSize() != 0 || ratingTree.getSize() != 0) {
+            throw new IllegalStateException();
+        }
+        List<BSTree<String>> trees = Arrays.asList(movieTree, studioTree, ratingTree);
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long[] bounds = MappedMovieReader.splitRecords(channel, threads * PARTS_PER_THREAD);
+            List<Future<Part>> futures = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                futures.add(workers.submit(() -> index(channel, start, end)));
+            }
+            // number the documents in file order, as they arrive
+            List<Part> parts = new ArrayList<>();
+            long lines = 0;
+            for (Future<Part> future : futures) {
+                Part part = future.get();
+                for (MalformedRecordException problem : part.problems) {
+                    System.err.println("Skipping malformed record in " + fileName
+                            + ", " + problem.shift(lines).getMessage());
+                }
+                lines += part.lines;
+                for (int t = 0; t < TREES; t++) {
+                    Partial partial = part.trees[t];
+                    DocumentDictionary<String> documents = trees.get(t).getDocuments();
+                    partial.globalIds = new int[partial.documents.size()];
+                    for (int id = 0; id < partial.globalIds.length; id++) {
+                        partial.globalIds[id] = documents.intern(partial.documents.get(id));
+                    }
+                    partial.documents.clear();
+                    partial.documentIds.clear();
+                }
+                parts.add(part);
+            }
+            for (int t = 0; t < TREES; t++) {
+                merge(workers, parts, t, threads * PARTS_PER_THREAD, trees.get(t));
+            }
+        } catch (IOException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            workers.shutdownNow();
+        }
+        return true;
+    }
+
+    /**
+     * Parse one part of a file into partial indexes
+     *
+     * @param channel Channel of the file, left open
+     * @param start   File offset of the part
+     * @param end     File offset where the part ends
+     * @return The partial indexes and problems of the part
+     * @throws IOException If the file cannot be read
+     */
+    private static Part index(FileChannel channel, long start, long end) throws IOException {
+        Part part = new Part();
+        // the reader is not closed, that would close the shared channel
+        MappedMovieReader reader = new MappedMovieReader(channel, start, end,
+                MappedMovieReader.DEFAULT_WINDOW);
+        while (true) {
+            try {
+                MovieRecord record = reader.next();
+                if (record == null) {
+                    break;
+                }
+                part.trees[0].add(record.getCast(), record.getTitle());
+                part.trees[1].add(record.getStudios(), record.getTitle());
+                part.trees[2].add(record.getCast(), record.getRating());
+            } catch (MalformedRecordException e) {
+                part.problems.add(e);
+            }
+        }
+        part.lines = reader.getLineNumber();
+        return part;
+    }
+
+    /**
+     * Merge the partial indexes of one tree and bulk-load the tree. The
+     * sorted keys are split into 'ranges' ranges that are merged in
+     * parallel.
+     *
+     * @param workers Threads to merge on
+     * @param parts   Parts of the file, in file order
+     * @param t       Index of the tree in the parts
+     * @param ranges  Number of key ranges
+     * @param tree    Empty tree to be loaded
+     * @throws ExecutionException If a range could not be merged
+     * @throws InterruptedException If interrupted while waiting for a range
+     */
+    private static void merge(ExecutorService workers, List<Part> parts, int t, int ranges,
+            BSTree<String> tree) throws ExecutionException, InterruptedException {
+        HashSet<String> distinct = new HashSet<>();
+        for (Part part : parts) {
+            distinct.addAll(part.trees[t].postings.keySet());
+        }
+        String[] keys = distinct.toArray(new String[0]);
+        Arrays.sort(keys);
+        List<Map.Entry<String, PostingList>> groups =
+                new ArrayList<>(Collections.nCopies(keys.length, null));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int r = 0; r < ranges; r++) {
+            int from = (int) ((long) keys.length * r / ranges);
+            int to = (int) ((long) keys.length * (r + 1) / ranges);
+            futures.add(workers.submit(() -> {
+                for (int k = from; k < to; k++) {
+                    PostingList postings = new PostingList();
+                    for (Part part : parts) {
+                        Partial partial = part.trees[t];
+                        PostingList local = partial.postings.get(keys[k]);
+                        if (local != null) {
+                            for (int id : local.toArray()) {
+                                postings.add(partial.globalIds[id]);
+                            }
+                        }
+                    }
+                    postings.compress();
+                    groups.set(k, new AbstractMap.SimpleImmutableEntry<>(keys[k], postings));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        for (Part part : parts) {
+            part.trees[t].postings.clear();
+        }
+        tree.bulkLoad(groups.iterator(), groups.size());
+    }
+}
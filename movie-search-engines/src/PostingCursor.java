@@ -0,0 +1,32 @@
+/**
+ * Forward-only cursor over the document ids of a posting list, in
+ * increasing order. Lets set operations skip ahead through compressed
+ * postings without decoding them first.
+ */
+public interface PostingCursor {
+    /** Returned once the cursor has run past the last document id */
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * Return the current document id
+     *
+     * @return The current id, -1 before the first call to nextDoc or advance
+     */
+    int docId();
+
+    /**
+     * Move to the next document id
+     *
+     * @return The next id, NO_MORE_DOCS if there is none
+     */
+    int nextDoc();
+
+    /**
+     * Move to the first document id not less than 'target'. Never moves
+     * backwards, so the current id is returned if it is already >= target.
+     *
+     * @param target Document id to skip to
+     * @return The first id >= target, NO_MORE_DOCS if there is none
+     */
+    int advance(int target);
+}
@@ -0,0 +1,562 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sorted, duplicate-free list of document ids stored in a growable int
+ * array, so a posting costs 4 bytes instead of a boxed linked list node.
+ * Once a list is complete it can be compressed, after which it is read
+ * through cursors and only decoded again if more ids are added.
+ */
+public class PostingList {
+    private static final int INITIAL_CAPACITY = 4;
+    // above this size ratio intersections gallop through the longer list
+    private static final int GALLOP_RATIO = 8;
+
+    private int[] ids; // sorted document ids, valid up to size, null when compressed
+    private int size; // number of document ids stored
+    private CompressedPostings compressed; // encoded ids, null unless compressed
+
+    /**
+     * 0-arg constructor that initializes an empty posting list
+     */
+    public PostingList() {
+        this.ids = new int[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Constructor that wraps the first 'size' entries of a sorted,
+     * duplicate-free array without copying it
+     *
+     * @param ids  Sorted document ids
+     * @param size Number of valid entries in ids
+     */
+    private PostingList(int[] ids, int size) {
+        this.ids = ids;
+        this.size = size;
+    }
+
+    /**
+     * Return a list over the first 'size' entries of a sorted,
+     * duplicate-free array, without copying it. Entries past 'size' may
+     * be written later by whoever owns the array, so the list must not be
+     * modified.
+     *
+     * @param ids  Sorted document ids
+     * @param size Number of entries the list covers
+     * @return The list
+     */
+    static PostingList prefixOf(int[] ids, int size) {
+        return new PostingList(ids, size);
+    }
+
+    /**
+     * Constructor that wraps an already compressed list
+     *
+     * @param compressed Encoded document ids
+     */
+    private PostingList(CompressedPostings compressed) {
+        this.compressed = compressed;
+        this.size = compressed.size();
+    }
+
+    /**
+     * Return the number of document ids in the list
+     *
+     * @return The number of document ids
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Return whether the list has no document ids
+     *
+     * @return True if the list is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Return the document id at position 'index'
+     *
+     * @param index Position in the list
+     * @return The document id at that position
+     * @throws IndexOutOfBoundsException If index is out of range
+     */
+    public int get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (this.compressed != null) {
+            return this.compressed.get(index);
+        }
+        return this.ids[index];
+    }
+
+    /**
+     * Add a document id, keeping the list sorted and duplicate-free. Ids
+     * that arrive in increasing order, as they do while a file is loaded,
+     * are appended in O(1).
+     *
+     * @param id Document id to be added
+     * @return True if the id was added, false if it was already present
+     */
+    public boolean add(int id) {
+        decompress();
+        int pos = this.size;
+        if (this.size > 0 && this.ids[this.size - 1] >= id) {
+            pos = Arrays.binarySearch(this.ids, 0, this.size, id);
+            if (pos >= 0) {
+                return false;
+            }
+            pos = -pos - 1;
+        }
+        if (this.size == this.ids.length) {
+            this.ids = Arrays.copyOf(this.ids, Math.max(INITIAL_CAPACITY, this.ids.length * 2));
+        }
+        System.arraycopy(this.ids, pos, this.ids, pos + 1, this.size - pos);
+        this.ids[pos] = id;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Remove a document id, keeping the list sorted
+     *
+     * @param id Document id to be removed
+     * @return True if the id was removed, false if it was not present
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        decompress();
+        int pos = Arrays.binarySearch(this.ids, 0, this.size, id);
+        System.arraycopy(this.ids, pos + 1, this.ids, pos, this.size - pos - 1);
+        this.size--;
+        return true;
+    }
+
+    /**
+     * Return whether the list holds the document id
+     *
+     * @param id Document id to look for
+     * @return True if the id is in the list, false otherwise
+     */
+    public boolean contains(int id) {
+        if (this.compressed != null) {
+            return this.compressed.cursor().advance(id) == id;
+        }
+        return Arrays.binarySearch(this.ids, 0, this.size, id) >= 0;
+    }
+
+    /**
+     * Return a copy of the document ids
+     *
+     * @return Sorted array of the document ids
+     */
+    public int[] toArray() {
+        if (this.compressed != null) {
+            return this.compressed.decode();
+        }
+        return Arrays.copyOf(this.ids, this.size);
+    }
+
+    /**
+     * Compress the list if a compressed encoding is smaller than the int
+     * array, otherwise trim the array to its size. Adding another id
+     * decompresses it again.
+     *
+     * @return True if the list is compressed, false otherwise
+     */
+    public boolean compress() {
+        if (this.compressed == null) {
+            this.compressed = CompressedPostings.encode(this.ids, this.size);
+            if (this.compressed != null) {
+                this.ids = null;
+            } else if (this.ids.length > this.size) {
+                this.ids = Arrays.copyOf(this.ids, this.size);
+            }
+        }
+        return this.compressed != null;
+    }
+
+    /**
+     * Return a copy of the list, compressed if that is smaller, that later
+     * changes to either list do not affect. A compressed list shares its
+     * encoded ids with the copy, since they are never modified.
+     *
+     * @return The copy
+     */
+    PostingList compressedCopy() {
+        if (this.compressed != null) {
+            return new PostingList(this.compressed);
+        }
+        PostingList copy = new PostingList(Arrays.copyOf(this.ids, this.size), this.size);
+        copy.compress();
+        return copy;
+    }
+
+    /**
+     * Return whether the list is currently compressed
+     *
+     * @return True if the list is compressed, false otherwise
+     */
+    public boolean isCompressed() {
+        return this.compressed != null;
+    }
+
+    /**
+     * Turn a compressed list back into a growable int array
+     */
+    private void decompress() {
+        if (this.compressed != null) {
+            this.ids = this.compressed.decode();
+            this.compressed = null;
+        }
+    }
+
+    /**
+     * Return the approximate heap footprint of the stored ids
+     *
+     * @return Bytes used by the arrays backing this list
+     */
+    public int sizeInBytes() {
+        if (this.compressed != null) {
+            return this.compressed.sizeInBytes();
+        }
+        return 16 + 4 * this.ids.length;
+    }
+
+    /**
+     * Return a cursor positioned before the first document id
+     *
+     * @return A new cursor
+     */
+    public PostingCursor cursor() {
+        if (this.compressed != null) {
+            return this.compressed.cursor();
+        }
+        return new ArrayCursor();
+    }
+
+    /**
+     * Return the document ids present in both lists. Uses a linear merge for
+     * lists of similar length and gallops through the longer list otherwise.
+     *
+     * @param a First list
+     * @param b Second list
+     * @return New list holding the common document ids
+     */
+    public static PostingList intersect(PostingList a, PostingList b) {
+        if (a.size > b.size) {
+            PostingList tmp = a;
+            a = b;
+            b = tmp;
+        }
+        int[] out = new int[a.size];
+        int n = 0;
+        if (a.compressed != null || b.compressed != null) {
+            // skip through the longer list rather than decoding it
+            PostingCursor longer = b.cursor();
+            PostingCursor shorter = a.cursor();
+            for (int id = shorter.nextDoc(); id != PostingCursor.NO_MORE_DOCS; id = shorter.nextDoc()) {
+                int found = longer.advance(id);
+                if (found == PostingCursor.NO_MORE_DOCS) {
+                    break;
+                }
+                if (found == id) {
+                    out[n++] = id;
+                }
+            }
+        } else if ((long) a.size * GALLOP_RATIO < b.size) {
+            int lo = 0;
+            for (int i = 0; i < a.size && lo < b.size; i++) {
+                lo = b.gallop(a.ids[i], lo);
+                if (lo < b.size && b.ids[lo] == a.ids[i]) {
+                    out[n++] = a.ids[i];
+                    lo++;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < a.size && j < b.size) {
+                if (a.ids[i] < b.ids[j]) {
+                    i++;
+                } else if (a.ids[i] > b.ids[j]) {
+                    j++;
+                } else {
+                    out[n++] = a.ids[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return new PostingList(out, n);
+    }
+
+    /**
+     * Return the document ids present in every list. The lists are taken
+     * from shortest to longest: a missing or empty list ends the search
+     * at once, two lists are intersected directly, and more are walked in
+     * step, with the shortest list proposing candidates and every other
+     * list skipping ahead to them, so no intermediate list is built.
+     *
+     * @param lists Lists to intersect, null standing for a missing list
+     * @return New list holding the common document ids, empty if there
+     *         are no lists
+     */
+    public static PostingList intersectAll(PostingList... lists) {
+        for (PostingList list : lists) {
+            if (list == null || list.isEmpty()) {
+                return new PostingList();
+            }
+        }
+        if (lists.length == 0) {
+            return new PostingList();
+        }
+        PostingList[] ordered = lists.clone();
+        Arrays.sort(ordered, Comparator.comparingInt(PostingList::size));
+        if (ordered.length == 1) {
+            return new PostingList(ordered[0].toArray(), ordered[0].size);
+        }
+        if (ordered.length == 2) {
+            return intersect(ordered[0], ordered[1]);
+        }
+        PostingCursor[] cursors = new PostingCursor[ordered.length];
+        for (int i = 0; i < ordered.length; i++) {
+            cursors[i] = ordered[i].cursor();
+        }
+        int[] out = new int[ordered[0].size];
+        int n = 0;
+        int id = cursors[0].nextDoc();
+        candidates:
+        while (id != PostingCursor.NO_MORE_DOCS) {
+            for (int i = 1; i < cursors.length; i++) {
+                int found = cursors[i].advance(id);
+                if (found != id) {
+                    // the next candidate is at least the id this list skipped to
+                    id = found == PostingCursor.NO_MORE_DOCS ? found : cursors[0].advance(found);
+                    continue candidates;
+                }
+            }
+            out[n++] = id;
+            id = cursors[0].nextDoc();
+        }
+        return new PostingList(out, n);
+    }
+
+    /**
+     * Return the document ids present in at least one list. Lists are
+     * merged in pairs, round after round, so every id is copied about
+     * log2(lists) times rather than once per list.
+     *
+     * @param lists Lists to merge
+     * @return New list holding every document id, empty if there are no
+     *         lists
+     */
+    public static PostingList unionAll(List<PostingList> lists) {
+        if (lists.isEmpty()) {
+            return new PostingList();
+        }
+        List<PostingList> round = lists;
+        while (round.size() > 1) {
+            List<PostingList> merged = new ArrayList<>((round.size() + 1) / 2);
+            for (int i = 0; i + 1 < round.size(); i += 2) {
+                merged.add(union(round.get(i), round.get(i + 1)));
+            }
+            if (round.size() % 2 == 1) {
+                merged.add(round.get(round.size() - 1));
+            }
+            round = merged;
+        }
+        PostingList only = round.get(0);
+        return round == lists ? new PostingList(only.toArray(), only.size) : only;
+    }
+
+    /**
+     * Return the document ids of 'a' that are not in 'b'
+     *
+     * @param a List to take ids from
+     * @param b List of ids to leave out
+     * @return New list holding the ids only found in a
+     */
+    public static PostingList difference(PostingList a, PostingList b) {
+        int[] out = new int[a.size];
+        int n = 0;
+        if (a.compressed != null || b.compressed != null) {
+            PostingCursor excluded = b.cursor();
+            PostingCursor cursor = a.cursor();
+            for (int id = cursor.nextDoc(); id != PostingCursor.NO_MORE_DOCS; id = cursor.nextDoc()) {
+                if (excluded.advance(id) != id) {
+                    out[n++] = id;
+                }
+            }
+            return new PostingList(out, n);
+        }
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            while (j < b.size && b.ids[j] < a.ids[i]) {
+                j++;
+            }
+            if (j == b.size || b.ids[j] != a.ids[i]) {
+                out[n++] = a.ids[i];
+            }
+        }
+        return new PostingList(out, n);
+    }
+
+    /**
+     * Return the document ids found in either list
+     *
+     * @param a First list
+     * @param b Second list
+     * @return New list holding the ids of both lists
+     */
+    public static PostingList union(PostingList a, PostingList b) {
+        int[] out = new int[Math.max(INITIAL_CAPACITY, a.size + b.size)];
+        int n = 0;
+        if (a.compressed != null || b.compressed != null) {
+            PostingCursor ca = a.cursor();
+            PostingCursor cb = b.cursor();
+            int x = ca.nextDoc();
+            int y = cb.nextDoc();
+            while (x != PostingCursor.NO_MORE_DOCS || y != PostingCursor.NO_MORE_DOCS) {
+                if (x < y) {
+                    out[n++] = x;
+                    x = ca.nextDoc();
+                } else if (x > y) {
+                    out[n++] = y;
+                    y = cb.nextDoc();
+                } else {
+                    out[n++] = x;
+                    x = ca.nextDoc();
+                    y = cb.nextDoc();
+                }
+            }
+            return new PostingList(out, n);
+        }
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.ids[i] < b.ids[j]) {
+                out[n++] = a.ids[i++];
+            } else if (a.ids[i] > b.ids[j]) {
+                out[n++] = b.ids[j++];
+            } else {
+                out[n++] = a.ids[i++];
+                j++;
+            }
+        }
+        while (i < a.size) {
+            out[n++] = a.ids[i++];
+        }
+        while (j < b.size) {
+            out[n++] = b.ids[j++];
+        }
+        return new PostingList(out, n);
+    }
+
+    /**
+     * Return the first position at or after 'from' whose id is not less
+     * than 'target', probing exponentially growing steps before a binary
+     * search
+     *
+     * @param target Document id to look for
+     * @param from   Position to start from
+     * @return Position of the first id >= target, size if there is none
+     */
+    private int gallop(int target, int from) {
+        int step = 1;
+        int hi = from;
+        while (hi < this.size && this.ids[hi] < target) {
+            from = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        int pos = Arrays.binarySearch(this.ids, from, Math.min(hi + 1, this.size), target);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    /**
+     * Cursor over the plain int array, galloping when advancing
+     */
+    private class ArrayCursor implements PostingCursor {
+        int index = -1; // position of the current id
+
+        public int docId() {
+            return this.index < 0 ? -1 : this.index < size ? ids[this.index] : NO_MORE_DOCS;
+        }
+
+        public int nextDoc() {
+            if (this.index < size) {
+                this.index++;
+            }
+            return docId();
+        }
+
+        public int advance(int target) {
+            if (docId() >= target) {
+                return docId();
+            }
+            this.index = gallop(target, Math.max(this.index, 0));
+            return docId();
+        }
+    }
+
+    /**
+     * Write the list to an index snapshot, in its current encoding
+     *
+     * @param out Snapshot being written
+     * @throws IOException If the snapshot cannot be written
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeBoolean(this.compressed != null);
+        if (this.compressed != null) {
+            this.compressed.writeTo(out);
+        } else {
+            IndexSnapshot.writeInts(out, toArray());
+        }
+    }
+
+    /**
+     * Read a list written by writeTo
+     *
+     * @param in Snapshot, positioned at the list
+     * @return The list
+     * @throws IOException If the list is not encoded correctly
+     */
+    static PostingList readFrom(ByteBuffer in) throws IOException {
+        if (in.get() != 0) {
+            return new PostingList(CompressedPostings.readFrom(in));
+        }
+        int[] ids = IndexSnapshot.readInts(in);
+        return new PostingList(ids, ids.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PostingList)) {
+            return false;
+        }
+        return Arrays.equals(this.toArray(), ((PostingList) o).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
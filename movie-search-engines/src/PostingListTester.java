@@ -0,0 +1,229 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PostingListTester {
+    PostingList evens;
+    PostingList threes;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        evens = new PostingList();
+        threes = new PostingList();
+        for (int i = 0; i < 30; i++) {
+            if (i % 2 == 0) {
+                evens.add(i);
+            }
+            if (i % 3 == 0) {
+                threes.add(i);
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void add() {
+        PostingList myList = new PostingList();
+        assertTrue(myList.isEmpty());
+        assertTrue(myList.add(5));
+        assertTrue(myList.add(9));
+        assertTrue(myList.add(1));
+        assertTrue(myList.add(7));
+        assertFalse(myList.add(9));
+        assertFalse(myList.add(1));
+        assertArrayEquals(new int[] {1, 5, 7, 9}, myList.toArray());
+        assertEquals(4, myList.size());
+        assertEquals(7, myList.get(2));
+    }
+
+    @org.junit.Test (expected = IndexOutOfBoundsException.class)
+    public void getOutOfRange() {
+        evens.get(evens.size());
+    }
+
+    @org.junit.Test
+    public void contains() {
+        assertTrue(evens.contains(28));
+        assertFalse(evens.contains(27));
+        assertFalse(new PostingList().contains(0));
+    }
+
+    @org.junit.Test
+    public void intersect() {
+        assertArrayEquals(new int[] {0, 6, 12, 18, 24}, PostingList.intersect(evens, threes).toArray());
+        assertTrue(PostingList.intersect(evens, new PostingList()).isEmpty());
+        PostingList few = new PostingList();
+        few.add(3);
+        few.add(4);
+        few.add(28);
+        few.add(31);
+        // lopsided sizes take the galloping path
+        assertArrayEquals(new int[] {4, 28}, PostingList.intersect(few, evens).toArray());
+        assertArrayEquals(new int[] {4, 28}, PostingList.intersect(evens, few).toArray());
+    }
+
+    @org.junit.Test
+    public void intersectAll() {
+        PostingList[] multiples = new PostingList[8];
+        for (int m = 2; m < 8; m++) {
+            multiples[m] = new PostingList();
+            for (int i = 0; i < 3000; i += m) {
+                multiples[m].add(i);
+            }
+        }
+        PostingList expected = new PostingList();
+        for (int i = 0; i < 3000; i += 2 * 3 * 5 * 7) {
+            expected.add(i);
+        }
+        assertEquals(expected, PostingList.intersectAll(multiples[7], multiples[2],
+                multiples[5], multiples[3]));
+        assertEquals(PostingList.intersect(multiples[5], multiples[7]),
+                PostingList.intersectAll(multiples[5], multiples[7]));
+        multiples[5].compress();
+        multiples[7].compress();
+        assertEquals(expected, PostingList.intersectAll(multiples[2], multiples[5],
+                multiples[7], multiples[3], multiples[5]));
+        assertEquals(evens, PostingList.intersectAll(evens));
+        // a missing or empty list leaves nothing in common
+        assertTrue(PostingList.intersectAll(evens, null, threes).isEmpty());
+        assertTrue(PostingList.intersectAll(evens, threes, new PostingList()).isEmpty());
+        assertTrue(PostingList.intersectAll().isEmpty());
+    }
+
+    @org.junit.Test
+    public void unionAll() {
+        List<PostingList> lists = new ArrayList<>();
+        PostingList expected = new PostingList();
+        for (int m = 3; m < 10; m++) {
+            PostingList multiples = new PostingList();
+            for (int i = m; i < 500; i += m * 4) {
+                multiples.add(i);
+                expected.add(i);
+            }
+            multiples.compress();
+            lists.add(multiples);
+        }
+        assertEquals(expected, PostingList.unionAll(lists));
+        assertEquals(evens, PostingList.unionAll(Collections.singletonList(evens)));
+        assertTrue(PostingList.unionAll(new ArrayList<>()).isEmpty());
+    }
+
+    @org.junit.Test
+    public void difference() {
+        assertArrayEquals(new int[] {2, 4, 8, 10, 14, 16, 20, 22, 26, 28},
+                PostingList.difference(evens, threes).toArray());
+        assertEquals(evens, PostingList.difference(evens, new PostingList()));
+        assertTrue(PostingList.difference(new PostingList(), evens).isEmpty());
+    }
+
+    @org.junit.Test
+    public void compressSparse() {
+        PostingList sparse = new PostingList();
+        for (int i = 0; i < 1000; i++) {
+            sparse.add(i * 1000 + i % 7);
+        }
+        int[] expected = sparse.toArray();
+        assertTrue(sparse.compress());
+        assertTrue(sparse.isCompressed());
+        assertArrayEquals(expected, sparse.toArray());
+        assertEquals(1000, sparse.size());
+        assertEquals(expected[130], sparse.get(130));
+        assertEquals(expected[999], sparse.get(999));
+        assertTrue(sparse.contains(expected[640]));
+        assertFalse(sparse.contains(expected[640] + 1));
+        assertTrue(sparse.sizeInBytes() < 4 * 1000);
+    }
+
+    @org.junit.Test
+    public void compressDense() {
+        PostingList dense = new PostingList();
+        for (int i = 100; i < 5000; i++) {
+            if (i % 3 != 0) {
+                dense.add(i);
+            }
+        }
+        int[] expected = dense.toArray();
+        assertTrue(dense.compress());
+        assertArrayEquals(expected, dense.toArray());
+        assertEquals(expected[2000], dense.get(2000));
+        assertTrue(dense.contains(4999));
+        assertFalse(dense.contains(4998 - 4998 % 3));
+        assertTrue(dense.sizeInBytes() < 1000);
+    }
+
+    @org.junit.Test
+    public void compressTiny() {
+        PostingList tiny = new PostingList();
+        tiny.add(3);
+        assertFalse(tiny.compress());
+        assertFalse(new PostingList().compress());
+    }
+
+    @org.junit.Test
+    public void compressedSetOperations() {
+        PostingList sparse = new PostingList();
+        PostingList dense = new PostingList();
+        for (int i = 0; i < 3000; i++) {
+            if (i % 37 == 0) {
+                sparse.add(i);
+            }
+            if (i % 2 == 0) {
+                dense.add(i);
+            }
+        }
+        PostingList expectedAnd = PostingList.intersect(sparse, dense);
+        PostingList expectedNot = PostingList.difference(sparse, dense);
+        PostingList expectedOr = PostingList.union(sparse, dense);
+        sparse.compress();
+        dense.compress();
+        assertEquals(expectedAnd, PostingList.intersect(sparse, dense));
+        assertEquals(expectedAnd, PostingList.intersect(dense, sparse));
+        assertEquals(expectedNot, PostingList.difference(sparse, dense));
+        assertEquals(expectedOr, PostingList.union(sparse, dense));
+    }
+
+    @org.junit.Test
+    public void addAfterCompress() {
+        PostingList sparse = new PostingList();
+        for (int i = 0; i < 200; i++) {
+            sparse.add(i * 100);
+        }
+        assertTrue(sparse.compress());
+        assertTrue(sparse.add(50));
+        assertFalse(sparse.isCompressed());
+        assertEquals(201, sparse.size());
+        assertEquals(50, sparse.get(1));
+        assertTrue(PostingList.intersect(evens, threes).add(100));
+    }
+
+    @org.junit.Test
+    public void remove() {
+        assertTrue(evens.remove(0));
+        assertTrue(evens.remove(14));
+        assertTrue(evens.remove(28));
+        assertFalse(evens.remove(14));
+        assertFalse(evens.remove(3));
+        assertArrayEquals(new int[] {2, 4, 6, 8, 10, 12, 16, 18, 20, 22, 24, 26}, evens.toArray());
+        PostingList sparse = new PostingList();
+        for (int i = 0; i < 200; i++) {
+            sparse.add(i * 100);
+        }
+        assertTrue(sparse.compress());
+        assertFalse(sparse.remove(50));
+        assertTrue(sparse.isCompressed());
+        assertTrue(sparse.remove(100));
+        assertEquals(199, sparse.size());
+        assertEquals(200, sparse.get(1));
+    }
+
+    @org.junit.Test
+    public void union() {
+        PostingList both = PostingList.union(evens, threes);
+        assertEquals(20, both.size());
+        assertTrue(both.contains(27));
+        assertTrue(both.contains(28));
+        assertFalse(both.contains(25));
+        assertEquals(evens, PostingList.union(evens, new PostingList()));
+    }
+}
@@ -0,0 +1,218 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * Cache of query results in front of SearchEngine.query. Results are
+ * cached under the normalized query, so "Robert-Downey-Jr  Tom-Holland"
+ * and "robert-downey-jr tom-holland" share one entry, but are returned
+ * with the query as each caller gave it. The least recently used
+ * results are evicted once the cache holds more than a number of results
+ * or of documents, and the whole cache is dropped as soon as the tree's
+ * version shows it gained or lost data. Safe for use by several threads at
+ * once; misses are computed outside the lock, so two threads missing on the
+ * same query may both compute it.
+ */
+public class QueryCache {
+    static final int DEFAULT_MAX_RESULTS = 1024;
+    static final long DEFAULT_MAX_DOCUMENTS = 1 << 20;
+
+    private final SearchIndex<String> tree;
+    private final int maxResults;
+    private final long maxDocuments; // bound on the documents of all results
+    // normalized query to result, least recently used first
+    private final LinkedHashMap<String, QueryResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long documents; // documents of all cached results
+    private int version; // version of the tree the results were computed from
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations; // results dropped because the tree changed
+
+    /**
+     * A constructor that caches the results of a tree with the default
+     * bounds.
+     *
+     * @param tree Tree to be searched
+     */
+    public QueryCache(SearchIndex<String> tree) {
+        this(tree, DEFAULT_MAX_RESULTS, DEFAULT_MAX_DOCUMENTS);
+    }
+
+    /**
+     * A constructor that caches the results of a tree.
+     *
+     * @param tree         Tree to be searched
+     * @param maxResults   Largest number of results to keep
+     * @param maxDocuments Largest number of documents to keep over all
+     *                     results, each result counting at least one
+     * @throws IllegalArgumentException If a bound is negative
+     */
+    public QueryCache(SearchIndex<String> tree, int maxResults, long maxDocuments) {
+        if (maxResults < 0 || maxDocuments < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.tree = tree;
+        this.maxResults = maxResults;
+        this.maxDocuments = maxDocuments;
+        this.version = tree.getVersion();
+    }
+
+    /**
+     * Return the normalized form of a query: lower case, with single
+     * spaces between the keys
+     *
+     * @param query Query as given
+     * @return The normalized query
+     */
+    static String normalize(String query) {
+        return String.join(" ", query.trim().toLowerCase(Locale.ROOT).split("\\s+"));
+    }
+
+    /**
+     * Return the result of a query, from the cache if possible
+     *
+     * @param query Query string, as for SearchEngine.query
+     * @return The result, whose query is 'query'
+     */
+    public QueryResult query(String query) {
+        return query(query, null);
+    }
+
+    /**
+     * Return the result of a query, from the cache if possible
+     *
+     * @param query     Query string, as for SearchEngine.query
+     * @param fuzzyKeys BK-tree of the keys of the tree, null to build one
+     *                  if a fuzzy query misses
+     * @return The result, whose query is 'query'
+     */
+    public QueryResult query(String query, BKTree fuzzyKeys) {
+        String normalized = normalize(query);
+        int seen;
+        synchronized (this) {
+            seen = checkVersion();
+            QueryResult result = this.results.get(normalized);
+            if (result != null) {
+                this.hits++;
+                return result.withQuery(query);
+            }
+            this.misses++;
+        }
+        QueryResult result = SearchEngine.query(this.tree, fuzzyKeys, normalized);
+        synchronized (this) {
+            // keep the result only if the tree did not change meanwhile
+            if (checkVersion() == seen && !this.results.containsKey(normalized)) {
+                this.results.put(normalized, result);
+                this.documents += weight(result);
+                evict();
+            }
+        }
+        return result.withQuery(query);
+    }
+
+    /**
+     * Drop every result if the tree changed since they were computed
+     *
+     * @return The current version of the tree
+     */
+    private int checkVersion() {
+        int current = this.tree.getVersion();
+        if (current != this.version) {
+            this.invalidations += this.results.size();
+            this.results.clear();
+            this.documents = 0;
+            this.version = current;
+        }
+        return current;
+    }
+
+    /**
+     * Evict the least recently used results until the cache is within its
+     * bounds
+     */
+    private void evict() {
+        Iterator<QueryResult> eldest = this.results.values().iterator();
+        while (this.results.size() > this.maxResults || this.documents > this.maxDocuments) {
+            this.documents -= weight(eldest.next());
+            eldest.remove();
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Return how much of the document bound a result takes
+     *
+     * @param result Cached result
+     * @return Its number of documents, at least 1
+     */
+    private static long weight(QueryResult result) {
+        return Math.max(1, result.getTotalCount());
+    }
+
+    /**
+     * Drop every cached result
+     */
+    public synchronized void clear() {
+        this.results.clear();
+        this.documents = 0;
+    }
+
+    /**
+     * Return the number of cached results
+     *
+     * @return The number of results
+     */
+    public synchronized int size() {
+        return this.results.size();
+    }
+
+    /**
+     * Return the number of queries answered from the cache
+     *
+     * @return The number of hits
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Return the number of queries that had to be computed
+     *
+     * @return The number of misses
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Return the number of results evicted to stay within the bounds
+     *
+     * @return The number of evictions
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Return the number of results dropped because the tree changed
+     *
+     * @return The number of invalidated results
+     */
+    public synchronized long getInvalidations() {
+        return this.invalidations;
+    }
+
+    /**
+     * Return the counters and the size of the cache, e.g. "hits=3 misses=1
+     * evictions=0 invalidations=0 results=1 documents=12"
+     *
+     * @return The counters and size
+     */
+    @Override
+    public synchronized String toString() {
+        return "hits=" + this.hits + " misses=" + this.misses + " evictions=" + this.evictions
+                + " invalidations=" + this.invalidations + " results=" + this.results.size()
+                + " documents=" + this.documents;
+    }
+}
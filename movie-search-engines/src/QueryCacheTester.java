@@ -0,0 +1,83 @@
+import static org.junit.Assert.*;
+
+public class QueryCacheTester {
+    BSTree<String> myTree;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        myTree = new BSTree<>(true);
+        for (int i = 0; i < 100; i++) {
+            myTree.insertPosting("actor-" + i % 10, "movie-" + i);
+        }
+    }
+
+    @org.junit.Test
+    public void hitsAndMisses() {
+        QueryCache cache = new QueryCache(myTree);
+        QueryResult result = cache.query("actor-1 actor-2");
+        assertEquals(SearchEngine.query(myTree, "actor-1 actor-2").getTotalCount(),
+                result.getTotalCount());
+        QueryResult hit = cache.query("  Actor-1   ACTOR-2 ");
+        assertEquals(result.getTotalCount(), hit.getTotalCount());
+        assertEquals("  Actor-1   ACTOR-2 ", hit.getQuery()); // printed as given
+        assertEquals("actor-1 actor-2", result.getQuery());
+        assertNotSame(result, cache.query("actor-2 actor-1"));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+        assertEquals("hits=1 misses=2 evictions=0 invalidations=0 results=2 documents=40",
+                cache.toString());
+    }
+
+    @org.junit.Test
+    public void evictLeastRecentlyUsed() {
+        QueryCache cache = new QueryCache(myTree, 2, QueryCache.DEFAULT_MAX_DOCUMENTS);
+        QueryResult first = cache.query("actor-1");
+        QueryResult second = cache.query("actor-2");
+        assertSame(first, cache.query("actor-1"));
+        cache.query("actor-3"); // evicts actor-2, the least recently used
+        assertEquals(1, cache.getEvictions());
+        assertSame(first, cache.query("actor-1"));
+        assertNotSame(second, cache.query("actor-2"));
+        assertEquals(2, cache.size());
+    }
+
+    @org.junit.Test
+    public void evictBeyondDocuments() {
+        QueryCache cache = new QueryCache(myTree, 100, 25);
+        cache.query("actor-1");
+        cache.query("actor-2");
+        assertEquals(2, cache.size());
+        cache.query("actor-3 actor-4"); // 20 documents, the others must go
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getEvictions());
+        cache.query("actor-1 actor-2 actor-3"); // 30 documents, never kept
+        assertEquals(0, cache.size());
+    }
+
+    @org.junit.Test
+    public void invalidate() {
+        QueryCache cache = new QueryCache(myTree);
+        QueryResult result = cache.query("actor-1");
+        cache.query("actor-2");
+        myTree.insertPosting("actor-1", "movie-1000");
+        QueryResult updated = cache.query("actor-1");
+        assertNotSame(result, updated);
+        assertEquals(11, updated.getTotalCount());
+        assertEquals(2, cache.getInvalidations());
+        assertSame(updated, cache.query("actor-1"));
+        // an existing posting changes nothing
+        myTree.insertPosting("actor-1", "movie-1000");
+        assertSame(updated, cache.query("actor-1"));
+        myTree.insert("actor-99");
+        assertNotSame(updated, cache.query("actor-1"));
+        int version = myTree.getVersion();
+        myTree.insertData("actor-1", "note");
+        assertNotEquals(version, myTree.getVersion());
+    }
+
+    @org.junit.Test (expected = IllegalArgumentException.class)
+    public void negativeBound() throws IllegalArgumentException {
+        new QueryCache(myTree, -1, 10);
+    }
+}
@@ -0,0 +1,289 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Result of a search: the documents related to every term of the query,
+ * and for each term the documents related to it that no earlier term or
+ * the intersection already accounted for. Documents are kept as posting
+ * lists and only resolved and sorted when a page of them is asked for;
+ * a small page is picked with a bounded heap instead of sorting the whole
+ * list. Several threads may read the same result, as they do when it is
+ * cached.
+ */
+public class QueryResult {
+    // pages covering less than 1/PARTIAL_SORT_RATIO of a list use a heap
+    private static final int PARTIAL_SORT_RATIO = 4;
+
+    private final DocumentDictionary<String> documents; // resolves the ids
+    private final String query;
+    private final String[] terms;
+    private final PostingList[] lists; // intersection, then residual of each term
+    private final String[][] sorted; // sorted documents of each list, null until needed
+
+    /**
+     * A constructor that wraps computed posting lists.
+     *
+     * @param documents    Dictionary the document ids belong to
+     * @param query        Query as given
+     * @param terms        Terms of the query
+     * @param intersection Documents related to every term, empty for a
+     *                     single term
+     * @param residuals    Documents newly related to each term
+     */
+    QueryResult(DocumentDictionary<String> documents, String query, String[] terms,
+            PostingList intersection, PostingList[] residuals) {
+        this.documents = documents;
+        this.query = query;
+        this.terms = terms;
+        this.lists = new PostingList[residuals.length + 1];
+        this.lists[0] = intersection;
+        System.arraycopy(residuals, 0, this.lists, 1, residuals.length);
+        this.sorted = new String[this.lists.length][];
+    }
+
+    /**
+     * A constructor that gives a result another query string, sharing its
+     * lists and sorted pages.
+     *
+     * @param result Result to be shared
+     * @param query  Query as given
+     */
+    private QueryResult(QueryResult result, String query) {
+        this.documents = result.documents;
+        this.query = query;
+        this.terms = result.terms;
+        this.lists = result.lists;
+        this.sorted = result.sorted;
+    }
+
+    /**
+     * Return this result for a query that has the same terms, such as the
+     * same query with other spacing or case
+     *
+     * @param query Query as given
+     * @return A result whose query is 'query'
+     */
+    QueryResult withQuery(String query) {
+        return query.equals(this.query) ? this : new QueryResult(this, query);
+    }
+
+    /**
+     * Return the query as given
+     *
+     * @return The query
+     */
+    public String getQuery() {
+        return this.query;
+    }
+
+    /**
+     * Return the number of terms in the query
+     *
+     * @return The number of terms
+     */
+    public int getTermCount() {
+        return this.terms.length;
+    }
+
+    /**
+     * Return a term of the query
+     *
+     * @param term Position of the term
+     * @return The term, lower-cased
+     * @throws IndexOutOfBoundsException If there is no such term
+     */
+    public String getTerm(int term) {
+        return this.terms[term];
+    }
+
+    /**
+     * Return whether the query has an intersection, which takes at least
+     * two terms
+     *
+     * @return True if the query has several terms, false otherwise
+     */
+    public boolean hasIntersection() {
+        return this.terms.length > 1;
+    }
+
+    /**
+     * Return the ids of the documents related to every term
+     *
+     * @return The ids, empty for a single term
+     */
+    public PostingList getIntersection() {
+        return this.lists[0];
+    }
+
+    /**
+     * Return the ids of the documents related to a term and not to the
+     * intersection or an earlier term
+     *
+     * @param term Position of the term
+     * @return The ids
+     * @throws IndexOutOfBoundsException If there is no such term
+     */
+    public PostingList getResidual(int term) {
+        checkTerm(term);
+        return this.lists[term + 1];
+    }
+
+    /**
+     * Return the number of documents related to every term
+     *
+     * @return The number of documents
+     */
+    public int getIntersectionCount() {
+        return this.lists[0].size();
+    }
+
+    /**
+     * Return the number of documents related to a term and not to the
+     * intersection or an earlier term
+     *
+     * @param term Position of the term
+     * @return The number of documents
+     * @throws IndexOutOfBoundsException If there is no such term
+     */
+    public int getResidualCount(int term) {
+        return getResidual(term).size();
+    }
+
+    /**
+     * Return the number of distinct documents related to any term
+     *
+     * @return The number of documents
+     */
+    public int getTotalCount() {
+        int total = 0;
+        for (PostingList list : this.lists) {
+            total += list.size();
+        }
+        return total;
+    }
+
+    /**
+     * Return the documents related to every term, in sorted order
+     *
+     * @return The documents
+     */
+    public List<String> getIntersectionDocuments() {
+        return page(0, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Return a page of the documents related to every term, in sorted order
+     *
+     * @param offset Number of documents to skip
+     * @param limit  Largest number of documents to return
+     * @return The documents
+     * @throws IllegalArgumentException If offset or limit is negative
+     */
+    public List<String> getIntersectionDocuments(int offset, int limit) {
+        return page(0, offset, limit);
+    }
+
+    /**
+     * Return the documents newly related to a term, in sorted order
+     *
+     * @param term Position of the term
+     * @return The documents
+     * @throws IndexOutOfBoundsException If there is no such term
+     */
+    public List<String> getResidualDocuments(int term) {
+        return getResidualDocuments(term, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Return a page of the documents newly related to a term, in sorted
+     * order
+     *
+     * @param term   Position of the term
+     * @param offset Number of documents to skip
+     * @param limit  Largest number of documents to return
+     * @return The documents
+     * @throws IndexOutOfBoundsException If there is no such term
+     * @throws IllegalArgumentException If offset or limit is negative
+     */
+    public List<String> getResidualDocuments(int term, int offset, int limit) {
+        checkTerm(term);
+        return page(term + 1, offset, limit);
+    }
+
+    /**
+     * Check that a term position is valid
+     *
+     * @param term Position of the term
+     * @throws IndexOutOfBoundsException If there is no such term
+     */
+    private void checkTerm(int term) {
+        if (term < 0 || term >= this.terms.length) {
+            throw new IndexOutOfBoundsException("term " + term);
+        }
+    }
+
+    /**
+     * Return a page of the sorted documents of a list. Sorts the whole list
+     * once for large pages, and keeps only the first offset + limit
+     * documents in a heap for small ones. Synchronized so that a list is
+     * sorted once and its sorted form is safely published to every thread.
+     *
+     * @param list   Index in lists
+     * @param offset Number of documents to skip
+     * @param limit  Largest number of documents to return
+     * @return The documents
+     * @throws IllegalArgumentException If offset or limit is negative
+     */
+    private synchronized List<String> page(int list, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException();
+        }
+        PostingList postings = this.lists[list];
+        int size = postings.size();
+        if (offset >= size || limit == 0) {
+            return Collections.emptyList();
+        }
+        int end = (int) Math.min(size, (long) offset + limit);
+        if (this.sorted[list] == null && end < size / PARTIAL_SORT_RATIO) {
+            return Collections.unmodifiableList(Arrays.asList(smallest(postings, end)).subList(offset, end));
+        }
+        if (this.sorted[list] == null) {
+            String[] all = new String[size];
+            PostingCursor cursor = postings.cursor();
+            for (int i = 0; i < size; i++) {
+                all[i] = this.documents.get(cursor.nextDoc());
+            }
+            Arrays.sort(all);
+            this.sorted[list] = all;
+        }
+        return Collections.unmodifiableList(Arrays.asList(this.sorted[list]).subList(offset, end));
+    }
+
+    /**
+     * Return the 'count' smallest documents of a list, in sorted order
+     *
+     * @param postings Ids of the documents
+     * @param count    Number of documents to keep, at least 1
+     * @return The documents
+     */
+    private String[] smallest(PostingList postings, int count) {
+        PriorityQueue<String> largestFirst = new PriorityQueue<>(count, Collections.reverseOrder());
+        PostingCursor cursor = postings.cursor();
+        for (int id = cursor.nextDoc(); id != PostingCursor.NO_MORE_DOCS; id = cursor.nextDoc()) {
+            String document = this.documents.get(id);
+            if (largestFirst.size() < count) {
+                largestFirst.add(document);
+            } else if (document.compareTo(largestFirst.peek()) < 0) {
+                largestFirst.poll();
+                largestFirst.add(document);
+            }
+        }
+        String[] smallest = new String[largestFirst.size()];
+        for (int i = smallest.length - 1; i >= 0; i--) {
+            smallest[i] = largestFirst.poll();
+        }
+        return smallest;
+    }
+}
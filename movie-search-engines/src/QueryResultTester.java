@@ -0,0 +1,80 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QueryResultTester {
+    BSTree<String> myTree;
+    List<String> myMovies;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        myTree = new BSTree<>(true);
+        myMovies = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            myMovies.add(String.format("movie-%04d", i));
+        }
+        // ids are handed out in a different order than the documents sort in
+        List<String> shuffled = new ArrayList<>(myMovies);
+        Collections.shuffle(shuffled, new Random(42));
+        for (String movie : shuffled) {
+            int i = Integer.parseInt(movie.substring(6));
+            myTree.insertPosting("all", movie);
+            if (i % 2 == 0) {
+                myTree.insertPosting("even", movie);
+            }
+            if (i % 3 == 0) {
+                myTree.insertPosting("third", movie);
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void counts() {
+        QueryResult result = SearchEngine.query(myTree, "Even third nobody");
+        assertEquals("Even third nobody", result.getQuery());
+        assertEquals(3, result.getTermCount());
+        assertEquals("even", result.getTerm(0));
+        assertTrue(result.hasIntersection());
+        assertEquals(0, result.getIntersectionCount());
+        assertEquals(500, result.getResidualCount(0));
+        assertEquals(167, result.getResidualCount(1));
+        assertEquals(0, result.getResidualCount(2));
+        assertEquals(667, result.getTotalCount());
+        result = SearchEngine.query(myTree, "even third");
+        assertEquals(167, result.getIntersectionCount());
+        assertEquals(333, result.getResidualCount(0));
+        assertEquals(167, result.getResidualCount(1));
+        result = SearchEngine.query(myTree, "all");
+        assertFalse(result.hasIntersection());
+        assertTrue(result.getIntersectionDocuments().isEmpty());
+        assertEquals(1000, result.getTotalCount());
+    }
+
+    @org.junit.Test
+    public void pages() {
+        QueryResult result = SearchEngine.query(myTree, "all");
+        // a small page is picked before the list is sorted
+        assertEquals(myMovies.subList(0, 10), result.getResidualDocuments(0, 0, 10));
+        assertEquals(myMovies.subList(20, 30), result.getResidualDocuments(0, 20, 10));
+        assertEquals(myMovies, result.getResidualDocuments(0));
+        assertEquals(myMovies.subList(990, 1000), result.getResidualDocuments(0, 990, 50));
+        assertTrue(result.getResidualDocuments(0, 1000, 10).isEmpty());
+        assertTrue(result.getResidualDocuments(0, 0, 0).isEmpty());
+        result = SearchEngine.query(myTree, "even third");
+        List<String> sixths = result.getIntersectionDocuments(0, 3);
+        assertEquals("[movie-0000, movie-0006, movie-0012]", sixths.toString());
+    }
+
+    @org.junit.Test (expected = IllegalArgumentException.class)
+    public void pageNegativeOffset() throws IllegalArgumentException {
+        SearchEngine.query(myTree, "all").getResidualDocuments(0, -1, 10);
+    }
+
+    @org.junit.Test (expected = IndexOutOfBoundsException.class)
+    public void residualBadTerm() throws IndexOutOfBoundsException {
+        SearchEngine.query(myTree, "all").getResidualDocuments(1);
+    }
+}
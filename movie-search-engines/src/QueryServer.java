@@ -0,0 +1,222 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resident query server. The search trees are loaded once and then queried
+ * over a line protocol, either on stdin/stdout or on a local socket where
+ * every connection is served by its own thread. A request is a search kind
+ * followed by the query, as on the SearchEngine command line, e.g.
+ * "0 robert-downey-jr tom-holland". The response is the lines searchMyQuery
+ * prints, followed by an empty line. Results are cached per tree, so the
+ * few queries that make up most of the traffic are computed once.
+ */
+public class QueryServer implements Closeable {
+    static final String BAD_REQUEST = "Bad request: ";
+
+    private final List<SearchIndex<String>> trees; // indexed by search kind
+    private final QueryCache[] caches; // results of each tree
+    private final BKTree[] fuzzyKeys; // keys of each tree, built on the first fuzzy query
+    private final ExecutorService connections; // a thread per connection
+    private ServerSocket serverSocket; // null until listen is called
+
+    /**
+     * A constructor that serves queries on loaded trees. The trees must not
+     * be modified while the server is running.
+     *
+     * @param movieTree  - BST or other index of actors, search kind 0
+     * @param studioTree - BST or other index of studios, search kind 1
+     * @param ratingTree - BST or other index of ratings, search kind 2
+     */
+    public QueryServer(SearchIndex<String> movieTree, SearchIndex<String> studioTree,
+            SearchIndex<String> ratingTree) {
+        this.trees = Arrays.asList(movieTree, studioTree, ratingTree);
+        this.caches = new QueryCache[this.trees.size()];
+        for (int i = 0; i < this.trees.size(); i++) {
+            this.caches[i] = new QueryCache(this.trees.get(i));
+        }
+        this.fuzzyKeys = new BKTree[this.trees.size()];
+        this.connections = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "query-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Answer one request
+     *
+     * @param request Search kind and query, separated by a space
+     * @param out     Stream the response is printed to
+     */
+    void answer(String request, PrintStream out) {
+        request = request.trim();
+        int space = request.indexOf(' ');
+        int searchKind = -1;
+        if (space > 0) {
+            try {
+                searchKind = Integer.parseInt(request.substring(0, space));
+            } catch (NumberFormatException e) {
+                searchKind = -1;
+            }
+        }
+        String query = space > 0 ? request.substring(space + 1).trim() : "";
+        if (searchKind < 0 || searchKind >= this.trees.size() || query.isEmpty()) {
+            out.println(BAD_REQUEST + request);
+        } else {
+            BKTree keys = query.indexOf(SearchEngine.FUZZY_MARK) >= 0 ? fuzzyKeys(searchKind) : null;
+            SearchEngine.print(this.caches[searchKind].query(query, keys), out);
+        }
+        out.println();
+    }
+
+    /**
+     * Return the result cache of one tree
+     *
+     * @param searchKind Search kind of the tree
+     * @return The cache
+     */
+    QueryCache getCache(int searchKind) {
+        return this.caches[searchKind];
+    }
+
+    /**
+     * Return the BK-tree of the keys of one tree, building it the first
+     * time it is needed
+     *
+     * @param searchKind Search kind of the tree
+     * @return The BK-tree
+     */
+    private synchronized BKTree fuzzyKeys(int searchKind) {
+        if (this.fuzzyKeys[searchKind] == null) {
+            this.fuzzyKeys[searchKind] = BKTree.of(this.trees.get(searchKind).iterator());
+        }
+        return this.fuzzyKeys[searchKind];
+    }
+
+    /**
+     * Answer requests from 'in' until it ends, printing the responses to
+     * 'out'. Every response is flushed before the next request is read.
+     *
+     * @param in  Stream of requests, one per line
+     * @param out Stream the responses are written to
+     * @throws IOException If a stream cannot be read or written
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader requests = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        PrintStream responses = new PrintStream(new BufferedOutputStream(out), false, "UTF-8");
+        String request;
+        while ((request = requests.readLine()) != null) {
+            if (request.trim().isEmpty()) {
+                continue;
+            }
+            answer(request, responses);
+            responses.flush();
+            if (responses.checkError()) {
+                throw new IOException("cannot write response");
+            }
+        }
+    }
+
+    /**
+     * Start accepting connections on a loopback port. Returns once the
+     * socket is bound; connections are served in the background until the
+     * server is closed.
+     *
+     * @param port Port to listen on, 0 for any free port
+     * @return The port the server listens on
+     * @throws IOException If the socket cannot be bound
+     * @throws IllegalStateException If the server is already listening
+     */
+    public int listen(int port) throws IOException {
+        if (this.serverSocket != null) {
+            throw new IllegalStateException();
+        }
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        ServerSocket listening = this.serverSocket;
+        this.connections.execute(() -> {
+            while (!listening.isClosed()) {
+                try {
+                    Socket socket = listening.accept();
+                    this.connections.execute(() -> serveConnection(socket));
+                } catch (IOException e) {
+                    // accept fails once the server is closed
+                }
+            }
+        });
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serve one connection until the client closes it
+     *
+     * @param socket Connected socket, closed when done
+     */
+    private void serveConnection(Socket socket) {
+        try (Socket connection = socket) {
+            connection.setTcpNoDelay(true);
+            serve(connection.getInputStream(), connection.getOutputStream());
+        } catch (IOException e) {
+            // the client went away, nothing left to answer
+        }
+    }
+
+    /**
+     * Stop accepting connections and stop the connection threads
+     *
+     * @throws IOException If the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.connections.shutdownNow();
+        if (this.serverSocket != null) {
+            this.serverSocket.close();
+        }
+    }
+
+    /**
+     * Main method that loads a data file or snapshot and serves queries on
+     * stdin, or on a loopback port when one is given, e.g.
+     * "java QueryServer moviedata.txt 7070"
+     *
+     * @param args command line arguments
+     * @throws IOException If stdin, stdout or the socket fail
+     */
+    public static void main(String[] args) throws IOException {
+        DocumentDictionary<String> titles = new DocumentDictionary<>(); // of both title trees
+        BSTree<String> movieTree = new BSTree<>(true, titles);
+        BSTree<String> studioTree = new BSTree<>(true, titles);
+        BSTree<String> ratingTree = new BSTree<>(true);
+        if (!SearchEngine.loadSearchTrees(movieTree, studioTree, ratingTree, args[0])) {
+            System.err.println("Cannot load " + args[0]);
+            return;
+        }
+        QueryServer server = new QueryServer(movieTree, studioTree, ratingTree);
+        if (args.length < 2) {
+            server.serve(System.in, System.out);
+            server.close();
+            return;
+        }
+        int port = server.listen(Integer.parseInt(args[1]));
+        System.err.println("Listening on port " + port);
+        // connection threads are daemons, so keep the main thread alive
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            server.close();
+        }
+    }
+}
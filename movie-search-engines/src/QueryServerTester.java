@@ -0,0 +1,102 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class QueryServerTester {
+    BSTree<String> movieTree;
+    BSTree<String> studioTree;
+    BSTree<String> ratingTree;
+    QueryServer myServer;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        movieTree = new BSTree<>(true);
+        studioTree = new BSTree<>(true);
+        ratingTree = new BSTree<>(true);
+        for (int i = 0; i < 100; i++) {
+            String[] cast = {"actor-" + i % 3, "actor-" + i % 10};
+            SearchEngine.makeTreeHelper(movieTree, cast, "movie-" + i);
+            SearchEngine.makeTreeHelper(studioTree, new String[] {"studio-" + i % 4}, "movie-" + i);
+            SearchEngine.makeTreeHelper(ratingTree, cast, i % 2 == 0 ? "PG" : "R");
+        }
+        myServer = new QueryServer(movieTree, studioTree, ratingTree);
+    }
+
+    @org.junit.After
+    public void tearDown() throws Exception {
+        myServer.close();
+    }
+
+    /**
+     * Return what searchMyQuery prints for a query, followed by the empty
+     * line that ends a response
+     */
+    private static String expected(BSTree<String> tree, String query) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true);
+        SearchEngine.searchMyQuery(tree, query, out);
+        out.println();
+        return bytes.toString();
+    }
+
+    @org.junit.Test
+    public void serve() throws Exception {
+        String requests = "0 actor-1 actor-4\n\n1 studio-2\n2 actor-0\n3 actor-1\nfoo\n";
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+        myServer.serve(new ByteArrayInputStream(requests.getBytes(StandardCharsets.UTF_8)), responses);
+        String nl = System.lineSeparator();
+        assertEquals(expected(movieTree, "actor-1 actor-4")
+                + expected(studioTree, "studio-2")
+                + expected(ratingTree, "actor-0")
+                + QueryServer.BAD_REQUEST + "3 actor-1" + nl + nl
+                + QueryServer.BAD_REQUEST + "foo" + nl + nl,
+                responses.toString("UTF-8"));
+    }
+
+    @org.junit.Test
+    public void listen() throws Exception {
+        int port = myServer.listen(0);
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            int client = c;
+            results.add(clients.submit(() -> {
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                    for (int i = 0; i < 50; i++) {
+                        String query = "actor-" + (client + i) % 3 + " actor-" + i % 10;
+                        out.println("0 " + query);
+                        StringBuilder response = new StringBuilder();
+                        String line;
+                        while (!(line = in.readLine()).isEmpty()) {
+                            response.append(line).append(System.lineSeparator());
+                        }
+                        response.append(System.lineSeparator());
+                        if (!response.toString().equals(expected(movieTree, query))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        clients.shutdown();
+    }
+}
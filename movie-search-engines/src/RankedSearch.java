@@ -0,0 +1,152 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Ranked retrieval over posting lists. Every document related to at least
+ * one clause of a query is scored by the clauses it matches, each weighted
+ * by the BM25 inverse document frequency of its posting list, so documents
+ * matching more and rarer clauses come first. The posting lists are merged
+ * document by document and only the best k documents are kept in a
+ * bounded heap, which costs O(n log k) for n matching documents instead of
+ * resolving and sorting all of them.
+ *
+ * Posting lists record whether a key is related to a document, not how
+ * often, and the trees keep no document lengths, so the BM25 term
+ * frequency and length factors are the same for every match and only the
+ * inverse document frequency is left.
+ */
+public class RankedSearch {
+    static final int DEFAULT_TOP = 10;
+
+    // worst hit first: lowest score, then last in document order
+    private static final Comparator<Hit> WORST_FIRST = (a, b) -> a.score != b.score
+            ? Double.compare(a.score, b.score) : b.document.compareTo(a.document);
+
+    /**
+     * Document with its score
+     */
+    public static class Hit {
+        private final String document;
+        private final double score;
+
+        /**
+         * A constructor that initializes a hit.
+         *
+         * @param document Document that matched
+         * @param score    Sum of the weights of the clauses it matched
+         */
+        Hit(String document, double score) {
+            this.document = document;
+            this.score = score;
+        }
+
+        /**
+         * Return the document
+         *
+         * @return The document
+         */
+        public String getDocument() {
+            return this.document;
+        }
+
+        /**
+         * Return the score
+         *
+         * @return The sum of the weights of the clauses the document matched
+         */
+        public double getScore() {
+            return this.score;
+        }
+
+        /**
+         * Return the document followed by its score
+         *
+         * @return The hit as "document (score)"
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s (%.2f)", this.document, this.score);
+        }
+    }
+
+    /**
+     * Return the BM25 inverse document frequency of a clause
+     *
+     * @param frequency     Number of documents the clause matches
+     * @param documentCount Number of documents in the collection
+     * @return The weight, higher for rarer clauses and always positive
+     */
+    static double weight(int frequency, int documentCount) {
+        return Math.log(1 + (documentCount - frequency + 0.5) / (frequency + 0.5));
+    }
+
+    /**
+     * Return the 'k' best scoring documents related to any clause, best
+     * first and in document order among equal scores
+     *
+     * @param documents Dictionary the document ids belong to
+     * @param clauses   Posting list of each clause, null for a clause that
+     *                  matches nothing
+     * @param k         Largest number of documents to return
+     * @return The hits
+     * @throws IllegalArgumentException If k is negative
+     */
+    public static List<Hit> top(DocumentDictionary<String> documents, List<PostingList> clauses, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException();
+        }
+        PostingCursor[] cursors = new PostingCursor[clauses.size()];
+        double[] weights = new double[clauses.size()];
+        int count = 0; // clauses that match something
+        long postings = 0; // bound on the matching documents
+        for (PostingList clause : clauses) {
+            if (clause != null && !clause.isEmpty()) {
+                postings += clause.size();
+                cursors[count] = clause.cursor();
+                cursors[count].nextDoc();
+                weights[count++] = weight(clause.size(), documents.size());
+            }
+        }
+        if (k == 0 || count == 0) {
+            return Collections.emptyList();
+        }
+        // sized by what can match rather than by k, which may be huge
+        PriorityQueue<Hit> best = new PriorityQueue<>((int) Math.min(k, postings), WORST_FIRST);
+        while (true) {
+            // the next document is the smallest id under any cursor
+            int doc = PostingCursor.NO_MORE_DOCS;
+            for (int i = 0; i < count; i++) {
+                doc = Math.min(doc, cursors[i].docId());
+            }
+            if (doc == PostingCursor.NO_MORE_DOCS) {
+                break;
+            }
+            double score = 0;
+            for (int i = 0; i < count; i++) {
+                if (cursors[i].docId() == doc) {
+                    score += weights[i];
+                    cursors[i].nextDoc();
+                }
+            }
+            // only resolve the document if it can beat the worst kept hit
+            if (best.size() < k || score >= best.peek().score) {
+                Hit hit = new Hit(documents.get(doc), score);
+                if (best.size() < k) {
+                    best.add(hit);
+                } else if (WORST_FIRST.compare(hit, best.peek()) > 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+        }
+        Hit[] hits = new Hit[best.size()];
+        for (int i = hits.length - 1; i >= 0; i--) {
+            hits[i] = best.poll();
+        }
+        return Arrays.asList(hits);
+    }
+}
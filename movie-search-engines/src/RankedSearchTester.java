@@ -0,0 +1,92 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RankedSearchTester {
+    BSTree<String> myTree;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        myTree = new BSTree<>(true);
+        for (int i = 0; i < 1000; i++) {
+            String movie = String.format("movie-%04d", i);
+            myTree.insertPosting("common", movie);
+            if (i % 10 == 0) {
+                myTree.insertPosting("tenth", movie);
+            }
+            if (i % 100 == 0) {
+                myTree.insertPosting("hundredth", movie);
+            }
+        }
+    }
+
+    /**
+     * Return the documents of hits, in order
+     */
+    private static List<String> documents(List<RankedSearch.Hit> hits) {
+        List<String> documents = new ArrayList<>();
+        for (RankedSearch.Hit hit : hits) {
+            documents.add(hit.getDocument());
+        }
+        return documents;
+    }
+
+    @org.junit.Test
+    public void weight() {
+        assertTrue(RankedSearch.weight(1, 1000) > RankedSearch.weight(10, 1000));
+        assertTrue(RankedSearch.weight(1000, 1000) > 0);
+    }
+
+    @org.junit.Test
+    public void rank() {
+        // movies matching all three keys, then the other tenths
+        List<RankedSearch.Hit> hits = SearchEngine.rank(myTree, "common tenth hundredth", 12);
+        assertEquals(12, hits.size());
+        assertEquals("[movie-0000, movie-0100, movie-0200, movie-0300, movie-0400, movie-0500,"
+                + " movie-0600, movie-0700, movie-0800, movie-0900, movie-0010, movie-0020]",
+                documents(hits).toString());
+        assertEquals(hits.get(0).getScore(), hits.get(9).getScore(), 0);
+        assertTrue(hits.get(9).getScore() > hits.get(10).getScore());
+        // a rare key outweighs a common one
+        hits = SearchEngine.rank(myTree, "Common hundredth", 1);
+        assertEquals("movie-0000", hits.get(0).getDocument());
+        assertEquals(RankedSearch.weight(1000, 1000) + RankedSearch.weight(10, 1000),
+                hits.get(0).getScore(), 1e-9);
+        assertEquals(1000, SearchEngine.rank(myTree, "common nobody", 5000).size());
+        // a huge k is not allocated up front
+        assertEquals(10, SearchEngine.rank(myTree, "hundredth", Integer.MAX_VALUE).size());
+        assertTrue(SearchEngine.rank(myTree, "nobody", 10).isEmpty());
+        assertTrue(SearchEngine.rank(myTree, "common", 0).isEmpty());
+    }
+
+    @org.junit.Test
+    public void searchMyQueryRanked() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true);
+        SearchEngine.searchMyQuery(myTree, "tenth hundredth", out, 2);
+        SearchEngine.searchMyQuery(myTree, "nobody", out, 2);
+        String[] lines = bytes.toString().split(System.lineSeparator());
+        assertEquals("Top documents related to tenth hundredth are: "
+                + "[movie-0000 (6.86), movie-0100 (6.86)]", lines[0]);
+        assertEquals("The search yielded no results for nobody", lines[1]);
+    }
+
+    @org.junit.Test
+    public void rankMovieIndex() {
+        MovieIndex index = new MovieIndex();
+        index.add(new MovieRecord("a", new String[] {"x", "y"}, new String[] {"big"}, "R"));
+        index.add(new MovieRecord("b", new String[] {"x"}, new String[] {"y"}, "R"));
+        index.add(new MovieRecord("c", new String[] {"x"}, new String[] {"big"}, "R"));
+        // a and b match y equally rarely, a as an actor and b as a studio
+        assertEquals("[a, b, c]", documents(index.rank("y big", 3)).toString());
+        assertEquals("[a, b]", documents(index.rank(" y  ", 3)).toString());
+    }
+
+    @org.junit.Test (expected = IllegalArgumentException.class)
+    public void rankNegativeTop() throws IllegalArgumentException {
+        SearchEngine.rank(myTree, "common", -1);
+    }
+}
@@ -0,0 +1,19 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of the records of a movie data file.
+ */
+public interface RecordSource extends Closeable {
+
+    /**
+     * Read the next record
+     *
+     * @return The next record, null at the end of the file
+     * @throws MalformedRecordException If the record is missing lines or
+     *         has extra ones; the source is left at the start of the next
+     *         record
+     * @throws IOException If the file cannot be read
+     */
+    MovieRecord next() throws IOException;
+}
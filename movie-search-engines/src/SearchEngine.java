@@ -1,8 +1,10 @@
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.Scanner;
+import java.util.List;
 
 /**
  * Search Engine implementation.
@@ -14,45 +16,136 @@ public class SearchEngine {
     private static final int movieSearch = 0;
     private static final int studioSearch = 1;
     private static final int ratingSearch = 2;
+    private static final int booleanSearch = 3;
+    private static final int rankedSearch = 4;
     private static final int firstActor = 2;
+    static final String PREFIX_WILDCARD = "*"; // ends a key that matches by prefix
+    static final char FUZZY_MARK = '~'; // ends a key that matches approximately
+    static final int DEFAULT_FUZZY_DISTANCE = 2;
 
     /**
-     * Populate BSTrees from a file
+     * Populate BSTrees, or other search indexes, from a file. Malformed
+     * records are reported on System.err and skipped. The posting lists are
+     * compressed once the whole file has been read.
      *
      * @param movieTree  - BST to be populated with actors
      * @param studioTree - BST to be populated with studios
      * @param ratingTree - BST to be populated with ratings
      * @param fileName   - name of the input file
-     * @returns false if file not found, true otherwise
+     * @returns false if file not found or unreadable, true otherwise
      */
     public static boolean populateSearchTrees(
-            BSTree<String> movieTree, BSTree<String> studioTree,
-            BSTree<String> ratingTree, String fileName
+            SearchIndex<String> movieTree, SearchIndex<String> studioTree,
+            SearchIndex<String> ratingTree, String fileName
     ) {
-        // open and read file
-        File file = new File(fileName);
-        try {
-            Scanner scanner = new Scanner(file);
-            while (scanner.hasNextLine()) {
-                // read 5 lines per batch:
-                // movie, cast, studios, rating, trailing hyphen
-                String movie = scanner.nextLine().trim();
-                String cast[] = scanner.nextLine().split(" ");
-                String studios[] = scanner.nextLine().split(" ");
-                String rating = scanner.nextLine().trim();
-                scanner.nextLine();
-
-                makeTreeHelper(movieTree, cast, movie);
-                makeTreeHelper(studioTree, studios, movie);
-                makeTreeHelper(ratingTree, cast, rating);
-                // populate three trees with the information you just read
-                // hint: create a helper function and reuse it to build all three trees
+        return populateSearchTrees(movieTree, studioTree, ratingTree, fileName, false);
+    }
+
+    /**
+     * Populate BSTrees from a file, either streaming it or memory-mapping
+     * it. Mapping avoids copying the file through a Reader and builds each
+     * distinct actor, studio and rating String only once, which pays off
+     * for catalogs of several gigabytes.
+     *
+     * @param movieTree  - BST to be populated with actors
+     * @param studioTree - BST to be populated with studios
+     * @param ratingTree - BST to be populated with ratings
+     * @param fileName   - name of the input file
+     * @param mapped     - whether to memory-map the file
+     * @returns false if file not found or unreadable, true otherwise
+     */
+    public static boolean populateSearchTrees(
+            SearchIndex<String> movieTree, SearchIndex<String> studioTree,
+            SearchIndex<String> ratingTree, String fileName, boolean mapped
+    ) {
+        return populateSearchTrees(movieTree, studioTree, ratingTree, fileName, mapped, false);
+    }
+
+    /**
+     * Populate BSTrees from a file, streaming or memory-mapping it, and
+     * either inserting every posting or, when 'sorted' is set and the
+     * indexes are empty BSTrees, collecting and sorting the postings first
+     * and bulk-loading each tree with SortedIndexBuilder. Other indexes
+     * gain nothing from sorted input and are always filled by inserts.
+     *
+     * @param movieTree  - BST to be populated with actors
+     * @param studioTree - BST to be populated with studios
+     * @param ratingTree - BST to be populated with ratings
+     * @param fileName   - name of the input file
+     * @param mapped     - whether to memory-map the file
+     * @param sorted     - whether to sort the postings and bulk-load BSTs
+     * @returns false if file not found or unreadable, true otherwise
+     * @throws IllegalStateException If sorting into a BST that is not empty
+     */
+    public static boolean populateSearchTrees(
+            SearchIndex<String> movieTree, SearchIndex<String> studioTree,
+            SearchIndex<String> ratingTree, String fileName, boolean mapped, boolean sorted
+    ) {
+        return populateSearchTrees(movieTree, studioTree, ratingTree, fileName, mapped, sorted, 1);
+    }
 
+    /**
+     * Populate BSTrees from a file as the method above does, except that
+     * when 'sorted' is set, the indexes are empty BSTrees and 'threads' is
+     * more than 1, the file is mapped, parsed and bulk-loaded on 'threads'
+     * threads by ParallelIndexBuilder. The trees come out the same either
+     * way.
+     *
+     * @param movieTree  - BST to be populated with actors
+     * @param studioTree - BST to be populated with studios
+     * @param ratingTree - BST to be populated with ratings
+     * @param fileName   - name of the input file
+     * @param mapped     - whether to memory-map the file
+     * @param sorted     - whether to sort the postings and bulk-load BSTs
+     * @param threads    - number of threads to bulk-load BSTs on
+     * @returns false if file not found or unreadable, true otherwise
+     * @throws IllegalArgumentException If threads is less than 1
+     * @throws IllegalStateException    If sorting into a BST that is not empty
+     */
+    public static boolean populateSearchTrees(
+            SearchIndex<String> movieTree, SearchIndex<String> studioTree,
+            SearchIndex<String> ratingTree, String fileName, boolean mapped, boolean sorted,
+            int threads
+    ) {
+        if (threads < 1) {
+            throw new IllegalArgumentException();
+        }
+        if (sorted && movieTree instanceof BSTree && studioTree instanceof BSTree
+                && ratingTree instanceof BSTree) {
+            if (threads > 1) {
+                return ParallelIndexBuilder.populateSearchTrees((BSTree<String>) movieTree,
+                        (BSTree<String>) studioTree, (BSTree<String>) ratingTree, fileName,
+                        threads);
             }
-            scanner.close();
-        } catch (FileNotFoundException e) {
+            return SortedIndexBuilder.populateSearchTrees((BSTree<String>) movieTree,
+                    (BSTree<String>) studioTree, (BSTree<String>) ratingTree, fileName, mapped);
+        }
+        // open and read file, 5 lines per record:
+        // movie, cast, studios, rating, trailing hyphen
+        try (RecordSource reader = mapped ? MappedMovieReader.open(fileName)
+                : MovieRecordReader.open(fileName)) {
+            while (true) {
+                MovieRecord record;
+                try {
+                    record = reader.next();
+                } catch (MalformedRecordException e) {
+                    System.err.println("Skipping malformed record in " + fileName
+                            + ", " + e.getMessage());
+                    continue;
+                }
+                if (record == null) {
+                    break;
+                }
+                makeTreeHelper(movieTree, record.getCast(), record.getTitle());
+                makeTreeHelper(studioTree, record.getStudios(), record.getTitle());
+                makeTreeHelper(ratingTree, record.getCast(), record.getRating());
+            }
+        } catch (IOException e) {
             return false;
         }
+        movieTree.compressPostings();
+        studioTree.compressPostings();
+        ratingTree.compressPostings();
         return true;
     }
 
@@ -63,69 +156,332 @@ public class SearchEngine {
      * @param key - keys to populate given BST
      * @param data - data to be assigned to keys
      */
-    private static void makeTreeHelper(BSTree<String> tree, String[] key, String data){
+    static void makeTreeHelper(SearchIndex<String> tree, String[] key, String data){
         for (int i = 0; i < key.length; i++) {
-            tree.insert(key[i]);
-            tree.insertData(key[i], data);
+            tree.insertPosting(key[i], data);
         }
     }
 
 
+    /**
+     * Populate BSTrees from a snapshot written by IndexSnapshot or, if the
+     * file is not a snapshot, by sorting and bulk-loading the postings of a
+     * movie data file. A snapshot that cannot be opened is reported on
+     * System.err.
+     *
+     * @param movieTree  - empty BST to be populated with actors
+     * @param studioTree - empty BST to be populated with studios
+     * @param ratingTree - empty BST to be populated with ratings
+     * @param fileName   - name of the snapshot or data file
+     * @return false if the snapshot cannot be opened, the result of
+     *         populateSearchTrees otherwise
+     */
+    static boolean loadSearchTrees(
+            BSTree<String> movieTree, BSTree<String> studioTree,
+            BSTree<String> ratingTree, String fileName
+    ) {
+        if (!IndexSnapshot.isSnapshot(fileName)) {
+            return populateSearchTrees(movieTree, studioTree, ratingTree, fileName, false, true,
+                    Runtime.getRuntime().availableProcessors());
+        }
+        try {
+            IndexSnapshot.open(movieTree, studioTree, ratingTree, fileName);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Cannot open snapshot " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Search a query in a BST
      *
      * @param searchTree - BST to be searched
      * @param query      - query string
      */
-    public static void searchMyQuery(BSTree<String> searchTree, String query) {
-        // process query
+    public static void searchMyQuery(SearchIndex<String> searchTree, String query) {
+        searchMyQuery(searchTree, query, System.out);
+    }
+
+    /**
+     * Search a query in a BST, printing the results to 'out'. Only reads
+     * the tree, so several threads may search the same tree at once.
+     *
+     * @param searchTree - BST to be searched
+     * @param query      - query string
+     * @param out        - stream the results are printed to
+     */
+    public static void searchMyQuery(SearchIndex<String> searchTree, String query, PrintStream out) {
+        print(query(searchTree, query), out);
+    }
+
+    /**
+     * Search a query in a BST, printing either every result the way
+     * searchMyQuery does or only the best ranked ones
+     *
+     * @param searchTree - BST to be searched
+     * @param query      - query string
+     * @param out        - stream the results are printed to
+     * @param top        - number of ranked documents to print, 0 to print
+     *                     every document
+     * @throws IllegalArgumentException if top is negative
+     */
+    public static void searchMyQuery(SearchIndex<String> searchTree, String query, PrintStream out,
+            int top) {
+        if (top < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (top == 0) {
+            searchMyQuery(searchTree, query, out);
+        } else {
+            printRanked(query, rank(searchTree, query, top), out);
+        }
+    }
+
+    /**
+     * Return the documents of a BST that match the most and the rarest
+     * keys of a query, without resolving or sorting the others
+     *
+     * @param searchTree - BST to be searched
+     * @param query      - query string, keys as in query
+     * @param top        - largest number of documents to return
+     * @return the best documents, best first
+     * @throws IllegalArgumentException if top is negative
+     */
+    public static List<RankedSearch.Hit> rank(SearchIndex<String> searchTree, String query, int top) {
         String[] keys = query.toLowerCase().split(" ");
+        return RankedSearch.top(searchTree.getDocuments(),
+                Arrays.asList(findPostings(searchTree, null, keys)), top);
+    }
 
-        // search and output intersection results
-        // hint: list's addAll() and retainAll() methods could be helpful
-        LinkedList<LinkedList<String>> added = new LinkedList<>();
-        LinkedList<String> related = new LinkedList<>();
-        if (keys.length > 1) { // if there are more than one input
-            if (searchTree.findKey(keys[0])) {
-                related.addAll(searchTree.findDataList(keys[0])); // adds all data of first
-                                                                  // key to related
+    /**
+     * Return the documents of every key starting with 'prefix'. A BST or
+     * a TermIndex visits only the keys in that range, other indexes check
+     * every key.
+     *
+     * @param searchTree - index to be searched
+     * @param prefix     - start of the keys
+     * @return the union of the posting lists, null if no key matches
+     */
+    public static PostingList findPrefixPostings(SearchIndex<String> searchTree, String prefix) {
+        if (searchTree instanceof TermIndex) {
+            return ((TermIndex) searchTree).findPrefixPostings(prefix);
+        }
+        List<PostingList> lists = new ArrayList<>();
+        if (searchTree instanceof BSTree) {
+            Iterator<BSTree<String>.BSTNode> nodes = ((BSTree<String>) searchTree)
+                    .entryIterator(prefix, prefixEnd(prefix));
+            while (nodes.hasNext()) {
+                PostingList postings = nodes.next().getPostings();
+                if (postings != null) {
+                    lists.add(postings);
+                }
             }
-            for (int i = 0; i < keys.length; i++) { // add all data to added list
-                if (searchTree.findKey(keys[0])) {
-                    LinkedList<String> curList = searchTree.findDataList(keys[i]);
-                    added.add(curList);
+        } else {
+            Iterator<String> keys = searchTree.iterator();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                PostingList postings = key.startsWith(prefix) ? searchTree.findPostings(key) : null;
+                if (postings != null) {
+                    lists.add(postings);
                 }
             }
-            for (int i = 0; i < added.size(); i++) {
-                related.retainAll(added.get(i)); //retain item if present in each list
+        }
+        return lists.isEmpty() ? null : PostingList.unionAll(lists);
+    }
+
+    /**
+     * Return the documents of every key within 'maxDistance' edits of a
+     * possibly misspelled key
+     *
+     * @param searchTree  - BST to be searched
+     * @param fuzzyKeys   - BK-tree of the keys of searchTree
+     * @param key         - key to look for
+     * @param maxDistance - largest number of edits allowed
+     * @return the union of the posting lists, null if no key matches
+     */
+    public static PostingList findFuzzyPostings(SearchIndex<String> searchTree, BKTree fuzzyKeys,
+            String key, int maxDistance) {
+        List<PostingList> lists = new ArrayList<>();
+        for (String match : fuzzyKeys.search(key, maxDistance)) {
+            PostingList postings = searchTree.findPostings(match);
+            if (postings != null) {
+                lists.add(postings);
             }
-            print(query, related);
+        }
+        return lists.isEmpty() ? null : PostingList.unionAll(lists);
+    }
+
+    /**
+     * Return whether the text after a fuzzy mark is a distance: empty or a
+     * single digit
+     *
+     * @param text - text after the mark
+     * @return true if it is a distance, false otherwise
+     */
+    private static boolean isDistance(String text) {
+        return text.isEmpty() || (text.length() == 1 && Character.isDigit(text.charAt(0)));
+    }
+
+    /**
+     * Return the smallest string greater than every string starting with
+     * 'prefix'
+     *
+     * @param prefix - start of the strings
+     * @return the bound, null if there is none
+     */
+    static String prefixEnd(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+
+    /**
+     * Search a query in a BST without printing anything. A key ending in
+     * '*' matches every key that starts with it.
+     *
+     * @param searchTree - BST to be searched
+     * @param query      - query string
+     * @return the documents related to all keys and to each key
+     */
+    public static QueryResult query(SearchIndex<String> searchTree, String query) {
+        return query(searchTree, null, query);
+    }
+
+    /**
+     * Search a query in a BST without printing anything. A key ending in
+     * '*' matches every key that starts with it, and a key ending in '~'
+     * matches every key within DEFAULT_FUZZY_DISTANCE edits of it, or
+     * within n edits for '~n'.
+     *
+     * @param searchTree - BST to be searched
+     * @param fuzzyKeys  - BK-tree of the keys of searchTree, null to build
+     *                     one if the query has a fuzzy key
+     * @param query      - query string
+     * @return the documents related to all keys and to each key
+     */
+    public static QueryResult query(SearchIndex<String> searchTree, BKTree fuzzyKeys, String query) {
+        // process query
+        String[] keys = query.toLowerCase().split(" ");
+
+        // look every key up once, null for a missing key
+        PostingList[] lists = findPostings(searchTree, fuzzyKeys, keys);
+
+        // search intersection results, shortest list first
+        PostingList related = new PostingList();
+        if (keys.length > 1) { // if there are more than one input
+            related = PostingList.intersectAll(lists);
         }
 
-        // search and output individual results
-        // hint: list's addAll() and removeAll() methods could be helpful
-        LinkedList<String> alreadyThere = new LinkedList<>();
-        alreadyThere.addAll(related);
+        // search individual results
+        PostingList[] residuals = new PostingList[keys.length];
+        PostingList alreadyThere = related;
         for (int i = 0; i < keys.length; i++) { //iterate through key and adds data if new data
-            LinkedList<String> added2 = new LinkedList<>();
-            if (searchTree.findKey(keys[i])) {
-                added2.addAll(searchTree.findDataList(keys[i]));
-                added2.removeAll(alreadyThere);
+            PostingList added = new PostingList();
+            if (lists[i] != null) {
+                added = PostingList.difference(lists[i], alreadyThere);
             }
-            alreadyThere.addAll(added2);
-            LinkedList<String> addedUnique = new LinkedList<>();
-            for (int j = 0; j < added2.size(); j++) { //remove duplicate ratings
-                String check = added2.get(j);
-                if (!addedUnique.contains(check)) { //check if rating is duplicate
-                    addedUnique.add(check);
+            alreadyThere = PostingList.union(alreadyThere, added);
+            residuals[i] = added;
+        }
+        return new QueryResult(searchTree.getDocuments(), query, keys, related, residuals);
+    }
+
+    /**
+     * Look up the keys of a query, expanding prefix and fuzzy keys
+     *
+     * @param searchTree - BST to be searched
+     * @param fuzzyKeys  - BK-tree of the keys of searchTree, null to build
+     *                     one if there is a fuzzy key
+     * @param keys       - lower-cased keys of the query
+     * @return the posting list of each key, null for a key that matches
+     *         nothing
+     */
+    private static PostingList[] findPostings(SearchIndex<String> searchTree, BKTree fuzzyKeys,
+            String[] keys) {
+        PostingList[] lists = new PostingList[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            int fuzzy = keys[i].lastIndexOf(FUZZY_MARK);
+            if (keys[i].endsWith(PREFIX_WILDCARD)) {
+                lists[i] = findPrefixPostings(searchTree, keys[i].substring(0, keys[i].length() - 1));
+            } else if (fuzzy > 0 && isDistance(keys[i].substring(fuzzy + 1))) {
+                if (fuzzyKeys == null) {
+                    fuzzyKeys = BKTree.of(searchTree.iterator());
                 }
+                String distance = keys[i].substring(fuzzy + 1);
+                lists[i] = findFuzzyPostings(searchTree, fuzzyKeys, keys[i].substring(0, fuzzy),
+                        distance.isEmpty() ? DEFAULT_FUZZY_DISTANCE : Integer.parseInt(distance));
+            } else {
+                lists[i] = searchTree.findPostings(keys[i]);
             }
-            if (!added2.isEmpty() || related.isEmpty()) {
-                print(keys[i], addedUnique);
+        }
+        return lists;
+    }
+
+    /**
+     * Print the result of a query the way searchMyQuery does: the
+     * intersection for several keys, then every key that adds documents,
+     * or every key if the intersection is empty
+     *
+     * @param result Result of the query
+     * @param out    Stream the output is printed to
+     */
+    public static void print(QueryResult result, PrintStream out) {
+        if (result.hasIntersection()) {
+            printDocuments(result.getQuery(), result.getIntersectionDocuments(), out);
+        }
+        boolean related = result.getIntersectionCount() > 0;
+        for (int i = 0; i < result.getTermCount(); i++) {
+            if (result.getResidualCount(i) > 0 || !related) {
+                printDocuments(result.getTerm(i), result.getResidualDocuments(i), out);
             }
         }
     }
 
+    /**
+     * Print ranked documents with their scores, best first
+     *
+     * @param query Query used to search tree
+     * @param hits  Documents found, best first
+     * @param out   Stream the output is printed to
+     */
+    public static void printRanked(String query, List<RankedSearch.Hit> hits, PrintStream out) {
+        if (hits.isEmpty()) {
+            out.println("The search yielded no results for " + query);
+        } else {
+            out.println("Top documents related to " + query + " are: " + hits);
+        }
+    }
+
+    /**
+     * Print sorted documents as print does, without copying them
+     *
+     * @param query     Query used to search tree
+     * @param documents Sorted documents
+     * @param out       Stream the output is printed to
+     */
+    private static void printDocuments(String query, List<String> documents, PrintStream out) {
+        StringBuilder line = new StringBuilder();
+        if (documents.isEmpty()) {
+            line.append("The search yielded no results for ").append(query);
+        } else {
+            line.append("Documents related to ").append(query).append(" are: [");
+            for (int i = 0; i < documents.size(); i++) {
+                if (i > 0) {
+                    line.append(", ");
+                }
+                line.append(documents.get(i));
+            }
+            line.append(']');
+        }
+        out.println(line);
+    }
+
     /**
      * Print output of query
      *
@@ -133,35 +489,93 @@ public class SearchEngine {
      * @param documents Output of documents from query
      */
     public static void print(String query, LinkedList<String> documents) {
+        print(query, documents, System.out);
+    }
+
+    /**
+     * Print output of query to 'out'
+     *
+     * @param query     Query used to search tree
+     * @param documents Output of documents from query
+     * @param out       Stream the output is printed to
+     */
+    public static void print(String query, LinkedList<String> documents, PrintStream out) {
         if (documents == null || documents.isEmpty())
-            System.out.println("The search yielded no results for " + query);
+            out.println("The search yielded no results for " + query);
         else {
             Object[] converted = documents.toArray();
             Arrays.sort(converted);
-            System.out.println("Documents related to " + query
+            out.println("Documents related to " + query
                     + " are: " + Arrays.toString(converted));
         }
     }
 
     /**
-     * Main method that processes and query the given arguments
+     * Answer a query in the language of BooleanQuery over a movie data file
+     *
+     * @param fileName - name of the movie data file
+     * @param query    - query string
+     */
+    static void searchBooleanQuery(String fileName, String query) {
+        BooleanQuery parsed;
+        try {
+            parsed = BooleanQuery.parse(query);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Bad query: " + e.getMessage());
+            return;
+        }
+        MovieIndex index = new MovieIndex();
+        if (!index.populate(fileName)) {
+            System.err.println("Cannot read " + fileName);
+            return;
+        }
+        LinkedList<String> titles = new LinkedList<>();
+        PostingCursor cursor = parsed.cursor(index);
+        for (int id = cursor.nextDoc(); id != PostingCursor.NO_MORE_DOCS; id = cursor.nextDoc()) {
+            titles.add(index.getTitles().get(id));
+        }
+        print(query, titles);
+    }
+
+    /**
+     * Print the movies that best match a query over the cast and studio
+     * fields of a movie data file
+     *
+     * @param fileName - name of the movie data file
+     * @param query    - actors and studios, separated by spaces
+     */
+    static void searchRankedQuery(String fileName, String query) {
+        MovieIndex index = new MovieIndex();
+        if (!index.populate(fileName)) {
+            System.err.println("Cannot read " + fileName);
+            return;
+        }
+        printRanked(query, index.rank(query, RankedSearch.DEFAULT_TOP), System.out);
+    }
+
+    /**
+     * Return an empty index for one of the search trees: a balanced BST
+     * when queries need its keys in order, for prefix keys, and a hash
+     * index when every lookup is exact
+     *
+     * @param ordered - whether queries need the keys in order
+     * @return the empty index
+     */
+    static SearchIndex<String> newSearchIndex(boolean ordered) {
+        // balanced since catalog dumps usually come in sorted
+        return ordered ? new BSTree<>(true) : new HashIndex<>();
+    }
+
+    /**
+     * Main method that processes and query the given arguments. The file
+     * may be a movie data file or a snapshot written by IndexSnapshot.
      *
      * @param args command line arguments
      */
     public static void main(String[] args) {
-        // initialize search trees
-        BSTree<String> movieTree = new BSTree<>();
-        BSTree<String> studioTree = new BSTree<>();
-        BSTree<String> ratingTree = new BSTree<>();
-
         // process command line arguments
         String fileName = args[0];
         int searchKind = Integer.parseInt(args[1]);
-
-        // populate search trees
-        populateSearchTrees(movieTree, studioTree, ratingTree, fileName);
-
-        // choose the right tree to query
         String query = "";
         for (int i = firstActor; i < args.length; i++) {
             if (i == args.length - 1) {
@@ -170,6 +584,48 @@ public class SearchEngine {
                 query += args[i] + " ";
             }
         }
+
+        // boolean and ranked queries run on a MovieIndex rather than the search trees
+        if (searchKind == booleanSearch) {
+            searchBooleanQuery(fileName, query);
+            return;
+        }
+        if (searchKind == rankedSearch) {
+            searchRankedQuery(fileName, query);
+            return;
+        }
+
+        // populate search trees, from a snapshot when one is given, which
+        // loads into BSTs; otherwise only a query with a prefix key needs them
+        SearchIndex<String> movieTree;
+        SearchIndex<String> studioTree;
+        SearchIndex<String> ratingTree;
+        if (IndexSnapshot.isSnapshot(fileName)) {
+            DocumentDictionary<String> titles = new DocumentDictionary<>(); // of both title trees
+            BSTree<String> movieBST = new BSTree<>(true, titles);
+            BSTree<String> studioBST = new BSTree<>(true, titles);
+            BSTree<String> ratingBST = new BSTree<>(true);
+            if (!loadSearchTrees(movieBST, studioBST, ratingBST, fileName)) {
+                return;
+            }
+            movieTree = movieBST;
+            studioTree = studioBST;
+            ratingTree = ratingBST;
+        } else {
+            boolean ordered = Arrays.stream(query.split(" "))
+                    .anyMatch(key -> key.endsWith(PREFIX_WILDCARD));
+            movieTree = newSearchIndex(ordered);
+            studioTree = newSearchIndex(ordered);
+            ratingTree = newSearchIndex(ordered);
+            // BSTs are bulk-loaded from sorted postings, on every core, hash
+            // indexes filled by inserts
+            if (!populateSearchTrees(movieTree, studioTree, ratingTree, fileName, false, ordered,
+                    Runtime.getRuntime().availableProcessors())) {
+                return;
+            }
+        }
+
+        // choose the right tree to query
         if (searchKind == movieSearch) {
             searchMyQuery(movieTree, query);
         } else if (searchKind == studioSearch) {
@@ -0,0 +1,213 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SearchEngineTester {
+    File myFile;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            lines.add("movie-" + i);
+            lines.add("actor-" + i % 7 + " actor-" + i % 11 + " actor-" + i % 13);
+            lines.add("studio-" + i % 5);
+            lines.add(i % 2 == 0 ? "PG" : "R");
+            if (i == 250) {
+                lines.add("an-extra-line");
+            }
+            lines.add("-");
+        }
+        myFile = File.createTempFile("moviedata", ".txt");
+        myFile.deleteOnExit();
+        Files.write(myFile.toPath(), lines);
+    }
+
+    @org.junit.Test
+    public void populateSearchTrees() {
+        BSTree<String> movieTree = new BSTree<>(true);
+        BSTree<String> studioTree = new BSTree<>(true);
+        BSTree<String> ratingTree = new BSTree<>(true);
+        assertTrue(SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree, myFile.getPath()));
+        // the record with an extra line is skipped
+        assertEquals(499, movieTree.getDocuments().size());
+        assertEquals(13, movieTree.getSize());
+        assertEquals(5, studioTree.getSize());
+        assertEquals(2, ratingTree.findPostings("actor-0").size());
+        assertFalse(SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree, "missing.txt"));
+    }
+
+    @org.junit.Test
+    public void populateSearchTreesParallel() {
+        BSTree<String> movieTree = new BSTree<>(true);
+        BSTree<String> studioTree = new BSTree<>(true);
+        BSTree<String> ratingTree = new BSTree<>(true);
+        SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree, myFile.getPath(), true);
+        for (int threads : new int[] {1, 2, 4, 16}) {
+            BSTree<String> parallelMovieTree = new BSTree<>(true);
+            BSTree<String> parallelStudioTree = new BSTree<>(true);
+            BSTree<String> parallelRatingTree = new BSTree<>(true);
+            assertTrue(ParallelIndexBuilder.populateSearchTrees(parallelMovieTree,
+                    parallelStudioTree, parallelRatingTree, myFile.getPath(), threads));
+            assertEquals(TestTrees.contents(movieTree), TestTrees.contents(parallelMovieTree));
+            assertEquals(TestTrees.contents(studioTree), TestTrees.contents(parallelStudioTree));
+            assertEquals(TestTrees.contents(ratingTree), TestTrees.contents(parallelRatingTree));
+        }
+        assertFalse(ParallelIndexBuilder.populateSearchTrees(new BSTree<>(), new BSTree<>(),
+                new BSTree<>(), "missing.txt", 2));
+    }
+
+    /**
+     * Return the documents of a tree's dictionary, in id order
+     */
+    private static List<String> documents(BSTree<String> tree) {
+        List<String> documents = new ArrayList<>();
+        for (int id = 0; id < tree.getDocuments().size(); id++) {
+            documents.add(tree.getDocuments().get(id));
+        }
+        return documents;
+    }
+
+    @org.junit.Test
+    public void populateSearchTreesKeyless() throws IOException {
+        // the first movie has no cast, so only the studio tree numbers it
+        File file = File.createTempFile("moviedata", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList("movie-a", "", "studio-1", "PG", "-",
+                "movie-b", "actor-1", "studio-1", "R", "-"));
+        List<List<BSTree<String>>> loads = new ArrayList<>();
+        for (int threads : new int[] {0, 1, 2}) {
+            List<BSTree<String>> trees = Arrays.asList(new BSTree<>(true), new BSTree<>(true),
+                    new BSTree<>(true));
+            assertTrue(SearchEngine.populateSearchTrees(trees.get(0), trees.get(1), trees.get(2),
+                    file.getPath(), false, threads > 0, Math.max(1, threads)));
+            loads.add(trees);
+        }
+        assertEquals(Arrays.asList("movie-b"), documents(loads.get(0).get(0)));
+        assertEquals(Arrays.asList("movie-a", "movie-b"), documents(loads.get(0).get(1)));
+        assertEquals(Arrays.asList("R"), documents(loads.get(0).get(2)));
+        for (List<BSTree<String>> trees : loads) {
+            for (int t = 0; t < 3; t++) {
+                assertEquals(documents(loads.get(0).get(t)), documents(trees.get(t)));
+                assertEquals(TestTrees.contents(loads.get(0).get(t)), TestTrees.contents(trees.get(t)));
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void populateSearchTreesSorted() {
+        BSTree<String> movieTree = new BSTree<>(true);
+        BSTree<String> studioTree = new BSTree<>(true);
+        BSTree<String> ratingTree = new BSTree<>(true);
+        SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree, myFile.getPath());
+        BSTree<String> sortedMovieTree = new BSTree<>(true);
+        BSTree<String> sortedStudioTree = new BSTree<>(true);
+        BSTree<String> sortedRatingTree = new BSTree<>(true);
+        assertTrue(SortedIndexBuilder.populateSearchTrees(sortedMovieTree,
+                sortedStudioTree, sortedRatingTree, myFile.getPath()));
+        assertEquals(TestTrees.contents(movieTree), TestTrees.contents(sortedMovieTree));
+        assertEquals(TestTrees.contents(studioTree), TestTrees.contents(sortedStudioTree));
+        assertEquals(TestTrees.contents(ratingTree), TestTrees.contents(sortedRatingTree));
+        assertEquals(3, sortedMovieTree.findHeight());
+        for (boolean mapped : new boolean[] {false, true}) {
+            List<BSTree<String>> trees = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                trees.add(new BSTree<>(true));
+            }
+            assertTrue(SearchEngine.populateSearchTrees(trees.get(0), trees.get(1), trees.get(2),
+                    myFile.getPath(), mapped, true));
+            assertEquals(TestTrees.contents(movieTree), TestTrees.contents(trees.get(0)));
+            assertEquals(TestTrees.contents(studioTree), TestTrees.contents(trees.get(1)));
+            assertEquals(TestTrees.contents(ratingTree), TestTrees.contents(trees.get(2)));
+            assertEquals(3, trees.get(0).findHeight());
+        }
+        // on several threads, through ParallelIndexBuilder
+        List<BSTree<String>> trees = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            trees.add(new BSTree<>(true));
+        }
+        assertTrue(SearchEngine.populateSearchTrees(trees.get(0), trees.get(1), trees.get(2),
+                myFile.getPath(), false, true, 3));
+        assertEquals(TestTrees.contents(movieTree), TestTrees.contents(trees.get(0)));
+        assertEquals(TestTrees.contents(studioTree), TestTrees.contents(trees.get(1)));
+        assertEquals(TestTrees.contents(ratingTree), TestTrees.contents(trees.get(2)));
+        assertFalse(SortedIndexBuilder.populateSearchTrees(new BSTree<>(), new BSTree<>(),
+                new BSTree<>(), "missing.txt"));
+    }
+
+    @org.junit.Test
+    public void prefixSearch() {
+        BSTree<String> movieTree = new BSTree<>(true);
+        BSTree<String> studioTree = new BSTree<>(true);
+        BSTree<String> ratingTree = new BSTree<>(true);
+        SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree, myFile.getPath());
+        PostingList expected = PostingList.union(movieTree.findPostings("actor-1"),
+                PostingList.union(movieTree.findPostings("actor-10"),
+                        PostingList.union(movieTree.findPostings("actor-11"),
+                                movieTree.findPostings("actor-12"))));
+        assertEquals(expected, SearchEngine.findPrefixPostings(movieTree, "actor-1"));
+        assertEquals(movieTree.getDocuments().size(),
+                SearchEngine.findPrefixPostings(movieTree, "").size());
+        assertNull(SearchEngine.findPrefixPostings(movieTree, "actor-9x"));
+        QueryResult result = SearchEngine.query(movieTree, "actor-1* actor-3");
+        assertEquals(PostingList.intersect(expected, movieTree.findPostings("actor-3")),
+                result.getIntersection());
+        assertEquals("actor-1*", result.getTerm(0));
+        assertEquals("b", SearchEngine.prefixEnd("a"));
+        assertEquals("b", SearchEngine.prefixEnd("a\uffff"));
+        assertNull(SearchEngine.prefixEnd(""));
+    }
+
+    @org.junit.Test
+    public void fuzzySearch() {
+        BSTree<String> movieTree = new BSTree<>(true);
+        BSTree<String> studioTree = new BSTree<>(true);
+        BSTree<String> ratingTree = new BSTree<>(true);
+        SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree, myFile.getPath());
+        assertEquals(movieTree.findPostings("actor-3"),
+                SearchEngine.query(movieTree, "actr-3~1").getResidual(0));
+        // within two edits every single digit actor matches, and every movie has one
+        assertEquals(movieTree.getDocuments().size(),
+                SearchEngine.query(movieTree, "actr-3~").getResidual(0).size());
+        assertTrue(SearchEngine.query(movieTree, "actr-3~0").getResidual(0).isEmpty());
+        BKTree keys = BKTree.of(studioTree.iterator());
+        assertEquals(studioTree.findPostings("studio-1"),
+                SearchEngine.query(studioTree, keys, "studo-1~1").getResidual(0));
+    }
+
+    @org.junit.Test
+    public void splitRecords() throws IOException {
+        try (FileChannel channel = FileChannel.open(myFile.toPath(), StandardOpenOption.READ)) {
+            long[] bounds = MappedMovieReader.splitRecords(channel, 8);
+            assertEquals(9, bounds.length);
+            assertEquals(0, bounds[0]);
+            assertEquals(channel.size(), bounds[8]);
+            int records = 0;
+            int problems = 0;
+            for (int i = 0; i < 8; i++) {
+                assertTrue(bounds[i] < bounds[i + 1]);
+                MappedMovieReader reader = new MappedMovieReader(channel, bounds[i], bounds[i + 1],
+                        MappedMovieReader.DEFAULT_WINDOW);
+                while (true) {
+                    try {
+                        if (reader.next() == null) {
+                            break;
+                        }
+                        records++;
+                    } catch (MalformedRecordException e) {
+                        problems++;
+                    }
+                }
+            }
+            assertEquals(499, records);
+            assertEquals(1, problems);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.Iterator;
+
+/**
+ * Index from keys to the posting lists of their documents, as searched by
+ * SearchEngine. BSTree keeps its keys in order, which prefix queries can
+ * walk as a range; HashIndex finds an exact key in constant time;
+ * ConcurrentBSTree can be searched while another thread inserts.
+ */
+public interface SearchIndex<T> {
+
+    /**
+     * Add 'data' to the posting list of 'key', inserting the key first if
+     * it is not in the index yet
+     *
+     * @param key  Target key
+     * @param data Document to be added to key's posting list
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException If either key or data is null
+     */
+    boolean insertPosting(T key, T data);
+
+    /**
+     * Return the posting list of a key
+     *
+     * @param key Target key
+     * @return Posting list of the key, null if the key is not found or has
+     *         no postings
+     * @throws NullPointerException If key is null
+     */
+    PostingList findPostings(T key);
+
+    /**
+     * Return true if the 'key' is found in the index, false otherwise
+     *
+     * @param key To be searched
+     * @return True if the 'key' is found, false otherwise
+     * @throws NullPointerException If key is null
+     */
+    boolean findKey(T key);
+
+    /**
+     * Return the number of keys
+     *
+     * @return The number of keys
+     */
+    int getSize();
+
+    /**
+     * Return the dictionary that maps the document ids in the posting lists
+     * back to documents
+     *
+     * @return The document dictionary
+     */
+    DocumentDictionary<T> getDocuments();
+
+    /**
+     * Return a number that changes whenever the keys or postings change
+     *
+     * @return The current version
+     */
+    int getVersion();
+
+    /**
+     * Compress the posting list of every key
+     *
+     * @return Number of posting lists that were compressed
+     */
+    int compressPostings();
+
+    /**
+     * Return an iterator over the keys, in key order if the index is ordered
+     *
+     * @return Iterator over the keys
+     */
+    Iterator<T> iterator();
+}
@@ -0,0 +1,386 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Immutable dictionary of terms, such as the actors, studios, ratings and
+ * titles of a catalog, stored once for every index that uses it. The terms
+ * are sorted by their UTF-8 bytes, which is code point order, and a term's
+ * id is its rank, so ids compare like the terms and the terms starting
+ * with a prefix have consecutive ids.
+ *
+ * The terms are front-coded in one byte array in blocks of BLOCK_SIZE:
+ * the first term of a block is stored whole and every other one as the
+ * length of the prefix it shares with the term before it and the rest of
+ * its bytes, lengths as variable-byte integers. A lookup binary-searches
+ * the first terms of the blocks, then scans one block without decoding
+ * it, by tracking how much of the searched term the current term shares.
+ */
+public class TermDictionary extends DocumentDictionary<String> {
+    static final int BLOCK_SIZE = 16;
+
+    private final byte[] data; // front-coded terms
+    private final int[] blockOffsets; // offset in data of every block
+    private final long[] blockPrefixes; // first 8 bytes of every block, see prefix()
+    private final int size; // number of terms
+    private final int maxLength; // length in bytes of the longest term
+
+    /**
+     * A constructor that front-codes sorted terms.
+     *
+     * @param sorted Distinct terms as UTF-8, in increasing byte order
+     */
+    private TermDictionary(byte[][] sorted) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.size = sorted.length;
+        this.blockOffsets = new int[(sorted.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        this.blockPrefixes = new long[this.blockOffsets.length];
+        int maxLength = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            byte[] term = sorted[i];
+            maxLength = Math.max(maxLength, term.length);
+            int shared = 0;
+            if (i % BLOCK_SIZE == 0) {
+                this.blockOffsets[i / BLOCK_SIZE] = out.size();
+                this.blockPrefixes[i / BLOCK_SIZE] = prefix(term);
+            } else {
+                byte[] previous = sorted[i - 1];
+                while (shared < previous.length && shared < term.length
+                        && previous[shared] == term[shared]) {
+                    shared++;
+                }
+                writeVarint(out, shared);
+            }
+            writeVarint(out, term.length - shared);
+            out.write(term, shared, term.length - shared);
+        }
+        this.data = out.toByteArray();
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Build a dictionary of terms
+     *
+     * @param terms Terms, possibly repeated
+     * @return The dictionary
+     * @throws NullPointerException If a term is null
+     */
+    public static TermDictionary of(Collection<String> terms) {
+        HashSet<String> distinct = new HashSet<>(terms);
+        byte[][] sorted = new byte[distinct.size()][];
+        int i = 0;
+        for (String term : distinct) {
+            sorted[i++] = term.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(sorted, Arrays::compareUnsigned);
+        return new TermDictionary(sorted);
+    }
+
+    /**
+     * Build a dictionary of every actor, studio, rating and title of a
+     * movie data file. Malformed records are skipped silently, since
+     * populating the indexes reports them.
+     *
+     * @param fileName Name of the movie data file
+     * @return The dictionary
+     * @throws IOException If the file cannot be read
+     */
+    public static TermDictionary ofMovieData(String fileName) throws IOException {
+        HashSet<String> terms = new HashSet<>();
+        try (MovieRecordReader reader = MovieRecordReader.open(fileName)) {
+            while (true) {
+                MovieRecord record;
+                try {
+                    record = reader.next();
+                } catch (MalformedRecordException e) {
+                    continue;
+                }
+                if (record == null) {
+                    break;
+                }
+                terms.add(record.getTitle());
+                terms.addAll(Arrays.asList(record.getCast()));
+                terms.addAll(Arrays.asList(record.getStudios()));
+                terms.add(record.getRating());
+            }
+        }
+        return of(terms);
+    }
+
+    /**
+     * Return the first 8 bytes of a term as a long that compares, signed,
+     * like the bytes do unsigned. Shorter terms are padded with zeros, so
+     * equal prefixes only mean the terms may be equal.
+     *
+     * @param term Term as UTF-8
+     * @return The packed prefix
+     */
+    private static long prefix(byte[] term) {
+        long prefix = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            prefix = prefix << 8 | (i < term.length ? term[i] & 0xFF : 0);
+        }
+        return prefix ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Write a non-negative int in 7-bit groups, low group first
+     *
+     * @param out   Stream to write to
+     * @param value Value to write
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while (value >= 0x80) {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Return the number of bytes writeVarint writes for a value
+     *
+     * @param value Value written
+     * @return The number of bytes
+     */
+    private static int varintLength(int value) {
+        int length = 1;
+        while (value >= 0x80) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Read an int written by writeVarint
+     *
+     * @param pos Offset of the int in data
+     * @return The value
+     */
+    private int readVarint(int pos) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = this.data[pos++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Compare a term with the first term of a block
+     *
+     * @param term  Term as UTF-8
+     * @param block Block number
+     * @return A negative number, zero or a positive number as the term is
+     *         less than, equal to or greater than the first term of the block
+     */
+    private int compareToBlock(byte[] term, int block) {
+        int pos = this.blockOffsets[block];
+        int length = readVarint(pos);
+        pos += varintLength(length);
+        return Arrays.compareUnsigned(term, 0, term.length, this.data, pos, pos + length);
+    }
+
+    /**
+     * Find a term, or where it would be
+     *
+     * @param term Term as UTF-8
+     * @return The id of the term if it is in the dictionary, otherwise
+     *         (-(id of the first greater term) - 1), as Arrays.binarySearch
+     */
+    private int search(byte[] term) {
+        // last block whose first term is at most the term, comparing the
+        // packed prefixes first so most steps do not touch data
+        long prefix = prefix(term);
+        int low = 0;
+        int high = this.blockOffsets.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Long.compare(prefix, this.blockPrefixes[mid]);
+            if (cmp == 0) {
+                cmp = compareToBlock(term, mid);
+            }
+            if (cmp == 0) {
+                return mid * BLOCK_SIZE;
+            }
+            if (cmp > 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0) {
+            return -1;
+        }
+        // scan the block: 'matched' bytes of the term equal the previous
+        // term, which is less than the term
+        int pos = this.blockOffsets[high];
+        int length = readVarint(pos);
+        pos += varintLength(length);
+        int matched = mismatch(term, 0, pos, length);
+        pos += length;
+        int end = Math.min((high + 1) * BLOCK_SIZE, this.size);
+        for (int id = high * BLOCK_SIZE + 1; id < end; id++) {
+            int shared = readVarint(pos);
+            pos += varintLength(shared);
+            int suffix = readVarint(pos);
+            pos += varintLength(suffix);
+            if (shared < matched) {
+                // this term leaves the previous one where the term still
+                // followed it, with a greater byte
+                return -id - 1;
+            }
+            if (shared == matched) {
+                int more = mismatch(term, matched, pos, suffix);
+                if (matched + more == term.length && more == suffix) {
+                    return id;
+                }
+                if (matched + more == term.length || (more < suffix
+                        && (this.data[pos + more] & 0xFF) > (term[matched + more] & 0xFF))) {
+                    return -id - 1;
+                }
+                matched += more;
+            }
+            pos += suffix;
+        }
+        return -end - 1;
+    }
+
+    /**
+     * Return how many bytes of a term from an offset equal bytes of data
+     *
+     * @param term   Term as UTF-8
+     * @param from   First byte of the term compared
+     * @param pos    First byte of data compared
+     * @param length Number of bytes of data available
+     * @return The number of equal bytes
+     */
+    private int mismatch(byte[] term, int from, int pos, int length) {
+        int n = Math.min(term.length - from, length);
+        int i = Arrays.mismatch(term, from, from + n, this.data, pos, pos + n);
+        return i < 0 ? n : i;
+    }
+
+    /**
+     * Return the id of a term that is already in the dictionary, which
+     * cannot grow
+     *
+     * @param document Term to look up
+     * @return The id of the term
+     * @throws NullPointerException     If document is null
+     * @throws IllegalArgumentException If the term is not in the dictionary
+     */
+    @Override
+    public int intern(String document) {
+        int id = find(document);
+        if (id < 0) {
+            throw new IllegalArgumentException(document + " is not in the dictionary");
+        }
+        return id;
+    }
+
+    /**
+     * Return the id of a term
+     *
+     * @param document Term to look for
+     * @return The id of the term, -1 if it is not in the dictionary
+     * @throws NullPointerException If document is null
+     */
+    @Override
+    public int find(String document) {
+        int id = search(document.getBytes(StandardCharsets.UTF_8));
+        return id < 0 ? -1 : id;
+    }
+
+    /**
+     * Return the id of the smallest term that is at least 'term'
+     *
+     * @param term Lower bound
+     * @return The id, size() if every term is less than 'term'
+     * @throws NullPointerException If term is null
+     */
+    public int ceiling(String term) {
+        int id = search(term.getBytes(StandardCharsets.UTF_8));
+        return id < 0 ? -id - 1 : id;
+    }
+
+    /**
+     * Return the id after the last term starting with a prefix
+     *
+     * @param prefix Start of the terms
+     * @return The id of the first term after those starting with the
+     *         prefix, size() if there is none
+     * @throws NullPointerException If prefix is null
+     */
+    public int prefixEnd(String prefix) {
+        byte[] bound = prefix.getBytes(StandardCharsets.UTF_8);
+        // the smallest byte string greater than every one starting with bound
+        int end = bound.length;
+        while (end > 0 && bound[end - 1] == (byte) 0xFF) {
+            end--;
+        }
+        if (end == 0) {
+            return this.size;
+        }
+        bound = Arrays.copyOf(bound, end);
+        bound[end - 1]++;
+        int id = search(bound);
+        return id < 0 ? -id - 1 : id;
+    }
+
+    /**
+     * Return the term with id 'id'
+     *
+     * @param id Term id
+     * @return The term
+     * @throws IndexOutOfBoundsException If no term has this id
+     */
+    @Override
+    public String get(int id) {
+        if (id < 0 || id >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        byte[] term = new byte[this.maxLength];
+        int pos = this.blockOffsets[id / BLOCK_SIZE];
+        int length = readVarint(pos);
+        pos += varintLength(length);
+        System.arraycopy(this.data, pos, term, 0, length);
+        pos += length;
+        for (int i = id / BLOCK_SIZE * BLOCK_SIZE; i < id; i++) {
+            int shared = readVarint(pos);
+            pos += varintLength(shared);
+            int suffix = readVarint(pos);
+            pos += varintLength(suffix);
+            System.arraycopy(this.data, pos, term, shared, suffix);
+            pos += suffix;
+            length = shared + suffix;
+        }
+        return new String(term, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return the number of terms
+     *
+     * @return The number of terms
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Return the approximate heap footprint of the dictionary
+     *
+     * @return Bytes used by the arrays backing the dictionary
+     */
+    public long sizeInBytes() {
+        return 16 + this.data.length + 16 + 4L * this.blockOffsets.length
+                + 16 + 8L * this.blockPrefixes.length;
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class TermDictionaryTester {
+    List<String> myTerms;
+    TermDictionary myDictionary;
+
+    @org.junit.Before
+    public void setUp() throws Exception {
+        myTerms = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            myTerms.add("actor-" + i);
+            myTerms.add("actor-" + i); // repeated terms are kept once
+        }
+        myTerms.addAll(Arrays.asList("", "a", "ab", "abc", "b", "tom-holland", "tom-hanks",
+                "zo\u00eb-kravitz", "\u00e9lodie", "\u4e2d\u6587", "\ud83c\udfac-star"));
+        myDictionary = TermDictionary.of(myTerms);
+    }
+
+    /**
+     * Return the terms of myTerms in UTF-8 byte order, without repeats
+     */
+    private List<String> sortedTerms() {
+        TreeSet<String> sorted = new TreeSet<>((a, b) -> Arrays.compareUnsigned(
+                a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8)));
+        sorted.addAll(myTerms);
+        return new ArrayList<>(sorted);
+    }
+
+    @org.junit.Test
+    public void findAndGet() {
+        List<String> sorted = sortedTerms();
+        assertEquals(sorted.size(), myDictionary.size());
+        for (int id = 0; id < sorted.size(); id++) {
+            assertEquals(sorted.get(id), myDictionary.get(id));
+            assertEquals(id, myDictionary.find(sorted.get(id)));
+            assertEquals(id, myDictionary.intern(sorted.get(id)));
+        }
+        for (String missing : new String[] {"actor-", "actor-1000", "aa", "abcd", "tom",
+                "tom-holland2", "zz", "\u00e9", "\uffff"}) {
+            assertEquals(missing, -1, myDictionary.find(missing));
+        }
+    }
+
+    @org.junit.Test
+    public void ceilingAndPrefixEnd() {
+        List<String> sorted = sortedTerms();
+        for (String term : new String[] {"", "actor-", "actor-5", "actor-99", "ab", "abb",
+                "tom-h", "tom-i", "z", "\u00e9", "\u4e2d", "\uffff"}) {
+            int prefixEnd = myDictionary.ceiling(term);
+            while (prefixEnd < sorted.size() && sorted.get(prefixEnd).startsWith(term)) {
+                prefixEnd++;
+            }
+            assertEquals(term, prefixEnd, myDictionary.prefixEnd(term));
+            int expected = 0;
+            while (expected < sorted.size() && Arrays.compareUnsigned(
+                    sorted.get(expected).getBytes(StandardCharsets.UTF_8),
+                    term.getBytes(StandardCharsets.UTF_8)) < 0) {
+                expected++;
+            }
+            assertEquals(term, expected, myDictionary.ceiling(term));
+        }
+        assertEquals(0, myDictionary.ceiling(""));
+        assertEquals(myDictionary.size(), myDictionary.prefixEnd(""));
+        int from = myDictionary.ceiling("actor-99");
+        assertEquals(11, myDictionary.prefixEnd("actor-99") - from); // 99 and 990-999
+    }
+
+    @org.junit.Test
+    public void frontCoded() {
+        long raw = 0;
+        for (String term : sortedTerms()) {
+            raw += term.getBytes(StandardCharsets.UTF_8).length;
+        }
+        assertTrue(myDictionary.sizeInBytes() < raw);
+        assertEquals(0, TermDictionary.of(new ArrayList<>()).size());
+        assertEquals(-1, TermDictionary.of(new ArrayList<>()).find("a"));
+    }
+
+    @org.junit.Test (expected = IllegalArgumentException.class)
+    public void internMissing() {
+        myDictionary.intern("nobody");
+    }
+
+    @org.junit.Test (expected = IndexOutOfBoundsException.class)
+    public void getMissing() {
+        myDictionary.get(myDictionary.size());
+    }
+
+    /**
+     * Return what searchMyQuery prints for a query
+     */
+    private static String search(SearchIndex<String> index, String query) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SearchEngine.searchMyQuery(index, query, new PrintStream(out, true));
+        return out.toString();
+    }
+
+    @org.junit.Test
+    public void termIndexSearchesLikeBSTree() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            lines.add("movie-" + i);
+            lines.add("actor-" + i % 7 + " actor-" + i % 11 + " star-" + i % 13);
+            lines.add("studio-" + i % 5);
+            lines.add(i % 2 == 0 ? "PG" : "R");
+            lines.add("-");
+        }
+        File file = File.createTempFile("moviedata", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), lines);
+        TermDictionary terms = TermDictionary.ofMovieData(file.getPath());
+        List<SearchIndex<String>> trees = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            trees.add(new BSTree<>(true));
+        }
+        for (int t = 0; t < 3; t++) {
+            trees.add(new TermIndex(terms));
+        }
+        for (int first = 0; first < 6; first += 3) {
+            assertTrue(SearchEngine.populateSearchTrees(trees.get(first), trees.get(first + 1),
+                    trees.get(first + 2), file.getPath()));
+        }
+        String[] queries = {"actor-1", "actor-1 actor-2", "actor-3 nobody star-4", "star*",
+                "actor-1 star*", "actr-1~", "studio-2", "actor-6 actor-10", "nobody*"};
+        for (String query : queries) {
+            for (int t = 0; t < 3; t++) {
+                assertEquals(query, search(trees.get(t), query), search(trees.get(t + 3), query));
+            }
+        }
+        for (int t = 0; t < 3; t++) {
+            assertEquals(trees.get(t).getSize(), trees.get(t + 3).getSize());
+            Iterator<String> expected = trees.get(t).iterator();
+            Iterator<String> actual = trees.get(t + 3).iterator();
+            while (expected.hasNext()) {
+                assertEquals(expected.next(), actual.next());
+            }
+            assertFalse(actual.hasNext());
+        }
+    }
+
+    @org.junit.Test (expected = IllegalArgumentException.class)
+    public void termIndexInsertMissing() {
+        new TermIndex(myDictionary).insertPosting("actor-1", "nobody");
+    }
+}
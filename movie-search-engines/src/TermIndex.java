@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Ordered index from string keys to posting lists whose keys and documents
+ * are ids of a shared TermDictionary. Every index built over the same
+ * dictionary stores an actor, studio, rating or title once, as compact
+ * bytes, instead of one String per tree; the tree underneath only holds
+ * boxed ints, which are cached for small ids. Since term ids are in term
+ * order, the keys of a prefix are a range of ids.
+ *
+ * The dictionary is fixed, so every key and document must be in it.
+ */
+public class TermIndex implements SearchIndex<String> {
+    private final BSTree<Integer> tree; // term ids to postings of term ids
+    private final TermDictionary terms; // keys and documents of the index
+
+    /**
+     * Constructor that initializes an empty index over a dictionary
+     *
+     * @param terms Dictionary of every key and document of the index
+     * @throws NullPointerException If terms is null
+     */
+    public TermIndex(TermDictionary terms) {
+        if (terms == null) {
+            throw new NullPointerException();
+        }
+        this.terms = terms;
+        this.tree = new BSTree<>(true);
+    }
+
+    /**
+     * Add 'data' to the posting list of 'key', inserting the key first if
+     * it is not in the index yet
+     *
+     * @param key  Target key
+     * @param data Document to be added to key's posting list
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException     If either key or data is null
+     * @throws IllegalArgumentException If key or data is not in the dictionary
+     */
+    public boolean insertPosting(String key, String data) {
+        if (key == null || data == null) {
+            throw new NullPointerException();
+        }
+        return this.tree.insertPostingId(this.terms.intern(key), this.terms.intern(data));
+    }
+
+    /**
+     * Return the posting list of a key
+     *
+     * @param key Target key
+     * @return Posting list of the key, null if the key is not found or has
+     *         no postings
+     * @throws NullPointerException If key is null
+     */
+    public PostingList findPostings(String key) {
+        int id = this.terms.find(key);
+        return id < 0 ? null : this.tree.findPostings(id);
+    }
+
+    /**
+     * Return the union of the posting lists of every key starting with a
+     * prefix
+     *
+     * @param prefix Start of the keys
+     * @return The union, null if no key starts with the prefix
+     * @throws NullPointerException If prefix is null
+     */
+    public PostingList findPrefixPostings(String prefix) {
+        List<PostingList> lists = new ArrayList<>();
+        Iterator<BSTree<Integer>.BSTNode> nodes = this.tree.entryIterator(
+                this.terms.ceiling(prefix), this.terms.prefixEnd(prefix));
+        while (nodes.hasNext()) {
+            PostingList postings = nodes.next().getPostings();
+            if (postings != null) {
+                lists.add(postings);
+            }
+        }
+        return lists.isEmpty() ? null : PostingList.unionAll(lists);
+    }
+
+    /**
+     * Return true if the 'key' is found in the index, false otherwise
+     *
+     * @param key To be searched
+     * @return True if the 'key' is found, false otherwise
+     * @throws NullPointerException If key is null
+     */
+    public boolean findKey(String key) {
+        int id = this.terms.find(key);
+        return id >= 0 && this.tree.findKey(id);
+    }
+
+    /**
+     * Return the number of keys
+     *
+     * @return The number of keys
+     */
+    public int getSize() {
+        return this.tree.getSize();
+    }
+
+    /**
+     * Return the dictionary of the index, which maps the document ids in
+     * the posting lists back to documents
+     *
+     * @return The term dictionary
+     */
+    public DocumentDictionary<String> getDocuments() {
+        return this.terms;
+    }
+
+    /**
+     * Return the dictionary of the keys and documents of the index
+     *
+     * @return The term dictionary
+     */
+    public TermDictionary getTerms() {
+        return this.terms;
+    }
+
+    /**
+     * Return a number that changes whenever the keys or postings change
+     *
+     * @return The current version
+     */
+    public int getVersion() {
+        return this.tree.getVersion();
+    }
+
+    /**
+     * Compress the posting list of every key
+     *
+     * @return Number of posting lists that were compressed
+     */
+    public int compressPostings() {
+        return this.tree.compressPostings();
+    }
+
+    /**
+     * Return an iterator over the keys in term order
+     *
+     * @return Iterator over the keys
+     */
+    public Iterator<String> iterator() {
+        Iterator<Integer> ids = this.tree.iterator(null, null);
+        return new Iterator<String>() {
+            /**
+             * Checks if there is a next key
+             *
+             * @return whether there is a next key
+             */
+            public boolean hasNext() {
+                return ids.hasNext();
+            }
+
+            /**
+             * Returns the next key
+             *
+             * @return the next key
+             */
+            public String next() {
+                return terms.get(ids.next());
+            }
+        };
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Fixtures shared by the testers that compare the trees built by different
+ * load paths.
+ */
+class TestTrees {
+
+    /**
+     * Return every key of a tree with its resolved documents, in key order
+     * and then document id order
+     *
+     * @param tree Tree to be listed
+     * @return One "key document..." entry per key
+     */
+    static List<String> contents(BSTree<String> tree) {
+        List<String> contents = new ArrayList<>();
+        Iterator<BSTree<String>.BSTNode> nodes = tree.entryIterator();
+        while (nodes.hasNext()) {
+            BSTree<String>.BSTNode node = nodes.next();
+            StringBuilder entry = new StringBuilder(node.getKey());
+            for (int id : node.getPostings().toArray()) {
+                entry.append(' ').append(tree.getDocuments().get(id));
+            }
+            contents.add(entry.toString());
+        }
+        return contents;
+    }
+
+    /**
+     * Return every key of a tree with its resolved documents, in key order
+     * and then document order, which does not depend on the document ids
+     *
+     * @param tree Tree to be listed
+     * @return One "key [documents]" entry per key
+     */
+    static List<String> sortedContents(BSTree<String> tree) {
+        List<String> contents = new ArrayList<>();
+        Iterator<BSTree<String>.BSTNode> nodes = tree.entryIterator();
+        while (nodes.hasNext()) {
+            BSTree<String>.BSTNode node = nodes.next();
+            List<String> documents = new ArrayList<>();
+            for (int id : node.getPostings().toArray()) {
+                documents.add(tree.getDocuments().get(id));
+            }
+            documents.sort(null);
+            contents.add(node.getKey() + " " + documents);
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,335 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of posting insertions and removals on the movie, studio
+ * and rating trees, written ahead of acknowledging them so that they can
+ * be replayed after a crash. Every entry holds the operations of one
+ * change, framed by its length and CRC32, so a change is replayed whole
+ * or, if the process died while writing it, not at all.
+ *
+ * Entries are buffered by append and made durable by commit with group
+ * commit: the first committing thread writes and forces every entry
+ * appended so far, while threads that commit meanwhile wait and are
+ * covered by the next write. One fsync thus covers as many changes as
+ * arrive while the previous one runs.
+ *
+ * Replaying an operation that is already in the trees changes nothing, so
+ * a log may be replayed on top of a snapshot that already holds some of
+ * its entries.
+ */
+public class WriteAheadLog implements Closeable {
+    static final byte INSERT_POSTING = 1;
+    static final byte REMOVE_POSTING = 2;
+    private static final int FRAME_HEADER_BYTES = 8; // length and checksum
+
+    private final FileChannel channel;
+    // guarded by this
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(); // framed entries not written yet
+    private long size; // bytes written or pending
+    private long appended; // number of entries appended
+    private long durable; // number of entries known to be on disk
+    private boolean flushing; // whether a thread is writing and forcing
+    private IOException failure; // set once a write fails, the log is then unusable
+
+    /**
+     * Insertion or removal of one posting
+     */
+    public static class Operation {
+        private final byte type;
+        private final int tree;
+        private final String key;
+        private final String data;
+
+        /**
+         * A constructor that initializes an operation.
+         *
+         * @param type INSERT_POSTING or REMOVE_POSTING
+         * @param tree Index of the tree: 0 movie, 1 studio, 2 rating
+         * @param key  Key of the posting list
+         * @param data Document to insert or remove
+         * @throws IllegalArgumentException If type or tree is unknown
+         * @throws NullPointerException If key or data is null
+         */
+        public Operation(byte type, int tree, String key, String data) {
+            if ((type != INSERT_POSTING && type != REMOVE_POSTING) || tree < 0 || tree > 2) {
+                throw new IllegalArgumentException();
+            }
+            if (key == null || data == null) {
+                throw new NullPointerException();
+            }
+            this.type = type;
+            this.tree = tree;
+            this.key = key;
+            this.data = data;
+        }
+
+        /**
+         * Apply the operation
+         *
+         * @param trees Movie, studio and rating trees
+         */
+        void applyTo(List<BSTree<String>> trees) {
+            if (this.type == INSERT_POSTING) {
+                trees.get(this.tree).insertPosting(this.key, this.data);
+            } else {
+                trees.get(this.tree).removePosting(this.key, this.data);
+            }
+        }
+    }
+
+    /**
+     * A constructor that appends to an open channel.
+     *
+     * @param channel Channel positioned at the end of the valid entries
+     * @param size    Number of bytes of valid entries
+     */
+    private WriteAheadLog(FileChannel channel, long size) {
+        this.channel = channel;
+        this.size = size;
+    }
+
+    /**
+     * Open a log for appending, creating it if needed. A torn entry left at
+     * the end by a crash is cut off.
+     *
+     * @param fileName Name of the log file
+     * @return The log
+     * @throws IOException If the file cannot be opened or read
+     */
+    public static WriteAheadLog open(String fileName) throws IOException {
+        Path path = Paths.get(fileName);
+        long valid = Files.exists(path) ? replay(fileName, null) : 0;
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.truncate(valid);
+        channel.position(valid);
+        return new WriteAheadLog(channel, valid);
+    }
+
+    /**
+     * Apply the entries of a log to trees, up to the end of the log or the
+     * first torn or corrupt entry
+     *
+     * @param fileName Name of the log file
+     * @param trees    Movie, studio and rating trees, null to only check
+     *                 the entries
+     * @return Number of bytes of valid entries
+     * @throws IOException If the file cannot be read
+     */
+    public static long replay(String fileName, List<BSTree<String>> trees) throws IOException {
+        Path path = Paths.get(fileName);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32 crc = new CRC32();
+        while (in.remaining() >= FRAME_HEADER_BYTES) {
+            int start = in.position();
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                return start;
+            }
+            crc.reset();
+            crc.update(in.array(), in.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                return start;
+            }
+            ByteBuffer entry = in.slice();
+            entry.limit(length);
+            in.position(in.position() + length);
+            if (trees != null) {
+                try {
+                    int count = entry.getInt();
+                    for (int i = 0; i < count; i++) {
+                        new Operation(entry.get(), entry.get(), readString(entry),
+                                readString(entry)).applyTo(trees);
+                    }
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    throw new IOException(fileName + " has a corrupt entry at byte " + start);
+                }
+            }
+        }
+        return in.position();
+    }
+
+    /**
+     * Read a string written by writeString
+     *
+     * @param in Buffer to read from
+     * @return The string
+     */
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a string as its length and UTF-8 bytes
+     *
+     * @param s   String to write
+     * @param out Stream to write to
+     * @throws IOException Never, the stream writes to memory
+     */
+    private static void writeString(String s, DataOutputStream out) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Append the operations of one change. They are not durable until
+     * commit returns for the returned sequence number.
+     *
+     * @param operations Operations of the change
+     * @return Sequence number of the entry
+     * @throws IOException If an earlier write failed
+     */
+    public long append(List<Operation> operations) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(operations.size());
+        for (Operation operation : operations) {
+            out.writeByte(operation.type);
+            out.writeByte(operation.tree);
+            writeString(operation.key, out);
+            writeString(operation.data, out);
+        }
+        byte[] entry = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(entry);
+        synchronized (this) {
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            DataOutputStream frame = new DataOutputStream(this.pending);
+            frame.writeInt(entry.length);
+            frame.writeInt((int) crc.getValue());
+            frame.write(entry);
+            this.size += FRAME_HEADER_BYTES + entry.length;
+            return ++this.appended;
+        }
+    }
+
+    /**
+     * Wait until the entry with a sequence number, and every entry before
+     * it, is on disk
+     *
+     * @param sequence Sequence number returned by append
+     * @throws IOException If the entries cannot be written or forced
+     */
+    public void commit(long sequence) throws IOException {
+        ByteBuffer batch;
+        long upTo;
+        synchronized (this) {
+            while (this.durable < sequence && this.flushing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            if (this.durable >= sequence) {
+                return;
+            }
+            // lead the next group: take everything appended so far
+            this.flushing = true;
+            batch = ByteBuffer.wrap(this.pending.toByteArray());
+            this.pending = new ByteArrayOutputStream();
+            upTo = this.appended;
+        }
+        IOException error = null;
+        try {
+            while (batch.hasRemaining()) {
+                this.channel.write(batch);
+            }
+            this.channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            this.flushing = false;
+            if (error == null) {
+                this.durable = upTo;
+            } else {
+                this.failure = error;
+            }
+            notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Wait until every entry appended so far is on disk
+     *
+     * @throws IOException If the entries cannot be written or forced
+     */
+    public void commitAll() throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = this.appended;
+        }
+        commit(sequence);
+    }
+
+    /**
+     * Return the size of the log, counting entries not written yet
+     *
+     * @return The size in bytes
+     */
+    public synchronized long size() {
+        return this.size;
+    }
+
+    /**
+     * Empty the log once a snapshot holds all of its entries. The caller
+     * must make sure nothing is appended meanwhile.
+     *
+     * @throws IOException If the file cannot be truncated
+     */
+    public void reset() throws IOException {
+        commitAll();
+        synchronized (this) {
+            this.channel.truncate(0);
+            this.channel.position(0);
+            this.channel.force(true);
+            this.size = 0;
+        }
+    }
+
+    /**
+     * Commit every entry and close the file
+     *
+     * @throws IOException If the entries cannot be written or the file
+     *         cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            commitAll();
+        } finally {
+            this.channel.close();
+        }
+    }
+}